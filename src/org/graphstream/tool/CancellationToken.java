@@ -0,0 +1,181 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+/**
+ * Cooperative cancellation of a running tool. Tools check the token in their
+ * main loop and stop cleanly, closing their outputs, once it is cancelled.
+ * 
+ * A token is cancelled when {@link #cancel()} is called, when the thread
+ * running the tool is interrupted, when the timeout elapsed since
+ * {@link #start()} or when the tool has processed more events than the event
+ * limit. The token is thread-safe, it is usually cancelled from another thread
+ * than the one running the tool.
+ */
+public class CancellationToken {
+	/**
+	 * Why a token has been cancelled.
+	 */
+	public static enum Reason {
+		CANCELLED, INTERRUPTED, TIMEOUT, EVENT_LIMIT
+	}
+
+	/**
+	 * Reason of the cancellation, null while not cancelled.
+	 */
+	private volatile Reason reason;
+
+	/**
+	 * Wall-clock timeout in milliseconds, 0 if none.
+	 */
+	private volatile long timeout;
+
+	/**
+	 * Maximum count of events, 0 if none.
+	 */
+	private volatile long eventLimit;
+
+	/**
+	 * Time at which the timeout elapses, 0 if none.
+	 */
+	private volatile long deadline;
+
+	public CancellationToken() {
+		this(0, 0);
+	}
+
+	/**
+	 * Create a token with limits.
+	 * 
+	 * @param timeout
+	 *            wall-clock timeout in milliseconds, 0 if none
+	 * @param eventLimit
+	 *            maximum count of events, 0 if none
+	 */
+	public CancellationToken(long timeout, long eventLimit) {
+		this.reason = null;
+		this.timeout = timeout;
+		this.eventLimit = eventLimit;
+		this.deadline = 0;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Set the wall-clock timeout. It is taken into account at the next call to
+	 * {@link #start()}.
+	 * 
+	 * @param timeout
+	 *            timeout in milliseconds, 0 if none
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	public long getEventLimit() {
+		return eventLimit;
+	}
+
+	/**
+	 * Set the maximum count of events a tool can process.
+	 * 
+	 * @param eventLimit
+	 *            the limit, 0 if none
+	 */
+	public void setEventLimit(long eventLimit) {
+		this.eventLimit = eventLimit;
+	}
+
+	/**
+	 * Start the timeout countdown. This is called when the tool begins its
+	 * execution.
+	 */
+	public void start() {
+		deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+	}
+
+	/**
+	 * Cancel the token. This has no effect if the token is already cancelled.
+	 */
+	public void cancel() {
+		cancel(Reason.CANCELLED);
+	}
+
+	protected synchronized void cancel(Reason r) {
+		if (reason == null)
+			reason = r;
+	}
+
+	/**
+	 * Clear the cancellation so the token can be used again.
+	 */
+	public synchronized void reset() {
+		reason = null;
+		deadline = 0;
+	}
+
+	public boolean isCancelled() {
+		return reason != null;
+	}
+
+	/**
+	 * Reason of the cancellation.
+	 * 
+	 * @return the reason, or null if the token is not cancelled
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * Check if the tool has to stop. This is cheap enough to be called for
+	 * each event.
+	 * 
+	 * @param events
+	 *            count of events processed so far
+	 * @return the reason why the tool has to stop, or null if it can go on
+	 */
+	public Reason check(long events) {
+		if (reason == null) {
+			if (Thread.currentThread().isInterrupted())
+				cancel(Reason.INTERRUPTED);
+			else if (eventLimit > 0 && events >= eventLimit)
+				cancel(Reason.EVENT_LIMIT);
+			else if (deadline > 0 && System.currentTimeMillis() >= deadline)
+				cancel(Reason.TIMEOUT);
+		}
+
+		return reason;
+	}
+}
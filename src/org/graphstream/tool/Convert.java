@@ -31,9 +31,12 @@
  */
 package org.graphstream.tool;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.graphstream.stream.file.FileSink;
 import org.graphstream.stream.file.FileSource;
@@ -41,12 +44,33 @@ import org.graphstream.stream.file.FileSource;
 /**
  * A tool to convert from various formats to various formats...
  * 
+ * When both formats are DGS, without options, and both source and sink are
+ * files, the events are not parsed: the source is only checked line by line,
+ * its header is rewritten and its body is copied as is by the system.
+ * Progress is then reported in bytes, since events are not counted, and an
+ * event limit makes the events parsed so it can be enforced.
+ * 
+ * With the cache option, outputs are kept in a {@link ToolCache} and a
+ * conversion of the same input with the same options copies the previous
+ * output.
+ * 
  * @author Guilhelm Savin
  */
 public class Convert extends Tool {
+	/**
+	 * Bytes copied and size of the source when it is copied without being
+	 * parsed, -1 otherwise.
+	 */
+	protected volatile long copied, copyLength;
 
 	public Convert() {
 		super("convert", "", true, true);
+
+		copied = copyLength = -1;
+
+		addOption("copy", i18n("option:copy"), true,
+				ToolOption.OptionType.FLAG);
+		addCacheOption();
 	}
 
 	/*
@@ -57,26 +81,298 @@ public class Convert extends Tool {
 		return "org.graphstream.tool.i18n.convert";
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.graphstream.tool.Tool#getBytesRead()
+	 */
+	public long getBytesRead() {
+		return copyLength < 0 ? super.getBytesRead() : copied;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.graphstream.tool.Tool#getBytesTotal()
+	 */
+	public long getBytesTotal() {
+		return copyLength < 0 ? super.getBytesTotal() : copyLength;
+	}
+
 	public void run() throws ToolExecutionException {
+		if (restoreFromCache())
+			return;
+
+		if (!copyDGS())
+			convert();
+
+		saveToCache();
+	}
+
+	protected void convert() throws ToolExecutionException {
 		FileSource source = getSource(SourceFormat.DGS);
 		FileSink sink = getSink(SinkFormat.DGS);
-		Reader input = getInput();
-		Writer output = getOutput();
+		ToolCancelledException cancelled = null;
 
 		source.addSink(sink);
+		source.addSink(meter);
 
 		try {
-			sink.begin(output);
-			source.begin(input);
-			while (source.nextStep())
-				;
-			source.end();
+			boolean read = false;
+
+			beginSink(sink);
+
+			try {
+				beginSource(source);
+
+				//
+				// Events are pumped one by one rather than step by step, so a
+				// static graph read in one step can be cancelled too.
+				//
+				try {
+					while (source.nextEvents())
+						checkCancelled();
+				} catch (ToolCancelledException e) {
+					cancelled = e;
+				}
+
+				source.end();
+				read = true;
+			} finally {
+				if (!read)
+					endAfterFailure(sink);
+			}
+
 			sink.end();
 		} catch (IOException e) {
 			throw new ToolExecutionException(e, "%s", i18n("exception:io"));
+		} finally {
+			source.removeSink(meter);
+			source.removeSink(sink);
 		}
 
-		source.removeSink(sink);
+		if (cancelled != null)
+			throw cancelled;
+	}
+
+	/**
+	 * Size of the blocks read while checking a DGS source.
+	 */
+	protected static final int CHECK_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Max size of each copy, cancellation is checked between copies.
+	 */
+	protected static final long COPY_BLOCK_SIZE = 1 << 26;
+
+	/**
+	 * Copy a DGS source to a DGS sink without parsing events. This is only
+	 * done when asked with the "copy" option, when no other option would
+	 * change the events and both source and sink are files. Since only the
+	 * first token of each line is checked, malformed arguments that the
+	 * parser would reject are copied as they are.
+	 * 
+	 * @return false if the copy can not be done and events must be parsed
+	 */
+	protected boolean copyDGS() throws ToolExecutionException {
+		copied = copyLength = -1;
+
+		if (!options.contains("copy")
+				|| getSourceFormat(SourceFormat.DGS) != SourceFormat.DGS
+				|| getSinkFormat(SinkFormat.DGS) != SinkFormat.DGS
+				|| options.contains(SOURCE_OPTIONS_KEY)
+				|| options.contains(SINK_OPTIONS_KEY)
+				|| !options.contains(SOURCE_KEY) || !options.contains(SINK_KEY)
+				|| cancellation.getEventLimit() > 0)
+			return false;
+
+		File in = new File(resolvePath(options.get(SOURCE_KEY)));
+		File out = new File(resolvePath(options.get(SINK_KEY)));
+
+		try {
+			if (!in.isFile()
+					|| in.getCanonicalFile().equals(out.getCanonicalFile()))
+				return false;
+
+			RandomAccessFile input = new RandomAccessFile(in, "r");
+
+			try {
+				FileChannel channel = input.getChannel();
+				ByteBuffer header = ByteBuffer.allocate(CHECK_BUFFER_SIZE);
+				long body = checkDGS(channel, header);
+
+				if (body < 0)
+					return false;
+
+				FileOutputStream output = new FileOutputStream(out);
+
+				try {
+					FileChannel target = output.getChannel();
+
+					while (header.hasRemaining())
+						target.write(header);
+
+					long position = body;
+					long size = channel.size();
+
+					copied = position;
+					copyLength = size;
+
+					while (position < size) {
+						checkCancelled();
+						position += channel.transferTo(position,
+								Math.min(COPY_BLOCK_SIZE, size - position),
+								target);
+						copied = position;
+					}
+				} finally {
+					output.close();
+				}
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			throw new ToolExecutionException(e, "%s", i18n("exception:io"));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check that a DGS source is made of known events, without parsing them.
+	 * Each line must be empty, a comment, or start with an event. Only the
+	 * first token of lines is checked, the arguments of events are copied as
+	 * they are, malformed or not. A header which does not fit in the header
+	 * buffer makes the source parsed.
+	 * 
+	 * @param channel
+	 *            the source
+	 * @param header
+	 *            buffer receiving the header to write in the sink
+	 * @return position of the first event in the source, or -1 if the source
+	 *         has to be parsed
+	 */
+	protected long checkDGS(FileChannel channel, ByteBuffer header)
+			throws IOException, ToolCancelledException {
+		ByteBuffer buffer = ByteBuffer.allocate(CHECK_BUFFER_SIZE);
+		byte[] b = buffer.array();
+		long position = 0;
+		long body = -1;
+		int line = 0;
+		int state = LINE_START;
+		int token = 0, tokenLength = 0;
+
+		header.clear();
+
+		while (true) {
+			buffer.clear();
+
+			int r = channel.read(buffer, position);
+
+			if (r < 0)
+				break;
+
+			for (int i = 0; i < r; i++) {
+				int c = b[i] & 0xFF;
+
+				//
+				// The magic line and the header line are kept, with the end
+				// of lines normalized.
+				//
+				if (line < 2) {
+					if (c == '\n') {
+						if (line == 0 && !isMagic(header))
+							return -1;
+
+						if (!header.hasRemaining())
+							return -1;
+
+						header.put((byte) '\n');
+						line++;
+
+						if (line == 2)
+							body = position + i + 1;
+					} else if (c != '\r') {
+						if (!header.hasRemaining())
+							return -1;
+
+						header.put((byte) c);
+					}
+
+					continue;
+				}
+
+				switch (state) {
+				case LINE_START:
+					if (c == '#')
+						state = LINE_REST;
+					else if (c != '\n' && c != '\r' && c != ' ' && c != '\t') {
+						token = Character.toLowerCase(c);
+						tokenLength = 1;
+						state = LINE_TOKEN;
+					}
+					break;
+				case LINE_TOKEN:
+					if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+						if (tokenLength != 2 || !isEvent(token))
+							return -1;
+
+						state = c == '\n' ? LINE_START : LINE_REST;
+					} else if (tokenLength < 2) {
+						token = (token << 8) | Character.toLowerCase(c);
+						tokenLength++;
+					} else
+						return -1;
+					break;
+				case LINE_REST:
+					if (c == '\n')
+						state = LINE_START;
+					break;
+				}
+			}
+
+			position += r;
+			checkCancelled();
+		}
+
+		if (line < 2)
+			return -1;
+
+		if (state == LINE_TOKEN && (tokenLength != 2 || !isEvent(token)))
+			return -1;
+
+		header.flip();
+
+		return body;
+	}
+
+	private static final int LINE_START = 0;
+	private static final int LINE_TOKEN = 1;
+	private static final int LINE_REST = 2;
+
+	private static final String[] EVENTS = { "an", "cn", "dn", "ae", "ce",
+			"de", "cg", "st", "cl" };
+
+	protected static boolean isEvent(int token) {
+		for (String e : EVENTS)
+			if (token == ((e.charAt(0) << 8) | e.charAt(1)))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Only DGS004 is copied, older versions are converted by parsing them.
+	 */
+	protected static boolean isMagic(ByteBuffer header) {
+		byte[] magic = { 'D', 'G', 'S', '0', '0', '4' };
+
+		if (header.position() != magic.length)
+			return false;
+
+		for (int i = 0; i < magic.length; i++)
+			if (header.get(i) != magic[i])
+				return false;
+
+		return true;
 	}
 
 	public static void main(String... args) {
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.tool.stream.PartitionedState;
+import org.graphstream.tool.stream.PartitionedState.Element;
+
+/**
+ * A tool comparing two graphs and writing the events changing the first one
+ * into the second one. Dynamic graphs are compared at a given step, which is
+ * the state after all events of this step, or at their end.
+ *
+ * Graphs are never built. Each source is reduced to its state by a
+ * {@link PartitionedState}, which spills elements to partition files chosen by
+ * a hash of their identifier. Partitions are then loaded and compared one at a
+ * time, so the memory needed is about the size of one partition of each graph,
+ * plus the identifiers of the nodes.
+ *
+ * Events are written in an order a graph can replay: changes of the graph,
+ * added nodes and changes of nodes, removed edges, added edges and changes of
+ * edges, then removed nodes. Edges removed with their nodes are not written,
+ * unless their id is used by an added edge.
+ * Counts of changes are printed at the end.
+ *
+ * <pre>
+ * diff before.dgs after.dgs delta.dgs --step=100
+ * </pre>
+ */
+public class Diff extends Tool {
+	/**
+	 * Default count of partitions of each graph.
+	 */
+	public static final int DEFAULT_PARTITIONS = 16;
+
+	/**
+	 * Counts of changes.
+	 */
+	protected long nodesAdded, nodesRemoved, edgesAdded, edgesRemoved,
+			attributesAdded, attributesChanged, attributesRemoved;
+
+	/**
+	 * Time id of the written events.
+	 */
+	protected long timeId;
+
+	public Diff() {
+		super("diff", null, true, true);
+
+		addOption("other", i18n("option:other"), false,
+				ToolOption.OptionType.STRING);
+		addOption("otherFormat", i18n("option:other_format"), true,
+				SourceFormat.class);
+		addOption("step", i18n("option:step"), true, ToolOption.OptionType.REAL);
+		addOption("partitions", i18n("option:partitions"), true,
+				ToolOption.OptionType.INT);
+
+		setShortcuts(shortcuts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.Tool#getDomain()
+	 */
+	public String getDomain() {
+		return "org.graphstream.tool.i18n.diff";
+	}
+
+	public void check() throws ToolInitializationException {
+		super.check();
+
+		if (getIntOption("partitions", DEFAULT_PARTITIONS) < 1)
+			throw new ToolInitializationException(i18n("error:invalid_option",
+					"partitions"));
+	}
+
+	public void run() throws ToolExecutionException {
+		int partitions = getIntOption("partitions", DEFAULT_PARTITIONS);
+		double step = getRealOption("step", Double.NaN);
+
+		if (Double.isNaN(step))
+			step = Double.POSITIVE_INFINITY;
+
+		nodesAdded = nodesRemoved = edgesAdded = edgesRemoved = 0;
+		attributesAdded = attributesChanged = attributesRemoved = 0;
+		timeId = 0;
+
+		File directory = null;
+		PartitionedState a = null, b = null;
+
+		try {
+			directory = File.createTempFile("gs-diff", "");
+			directory.delete();
+
+			if (!directory.mkdir())
+				throw new IOException(directory.getPath());
+
+			a = new PartitionedState(directory, "a", partitions, step);
+			b = new PartitionedState(directory, "b", partitions, step);
+
+			FileSource source = getSource(SourceFormat.DGS);
+			beginSource(source);
+			read(source, a);
+
+			FileSource other = options.contains("otherFormat") ? Tools
+					.sourceFor(getEnumOption("otherFormat", SourceFormat.class,
+							SourceFormat.DGS), null) : getSource(SourceFormat.DGS);
+			other.begin(resolvePath(options.get("other")));
+			read(other, b);
+
+			FileSink sink = getSink(SinkFormat.DGS);
+			boolean compared = false;
+
+			beginSink(sink);
+
+			try {
+				compare(a, b, sink);
+				compared = true;
+			} finally {
+				if (!compared)
+					endAfterFailure(sink);
+			}
+
+			sink.end();
+		} catch (IOException e) {
+			throw new ToolExecutionException(e, "%s", i18n("exception:io"));
+		} finally {
+			if (a != null)
+				a.delete();
+
+			if (b != null)
+				b.delete();
+
+			if (directory != null)
+				directory.delete();
+		}
+
+		err.printf("%s\n", i18n("message:summary", Long.toString(nodesAdded),
+				Long.toString(nodesRemoved), Long.toString(edgesAdded),
+				Long.toString(edgesRemoved), Long.toString(attributesAdded),
+				Long.toString(attributesChanged),
+				Long.toString(attributesRemoved)));
+	}
+
+	/**
+	 * Reduce a source to its state.
+	 */
+	protected void read(FileSource source, PartitionedState state)
+			throws IOException, ToolCancelledException {
+		source.addSink(state);
+		source.addSink(meter);
+
+		try {
+			while (!state.isDone() && source.nextEvents())
+				checkCancelled();
+		} finally {
+			source.removeSink(meter);
+			source.removeSink(state);
+			source.end();
+			state.close();
+		}
+	}
+
+	/**
+	 * Write the events changing state a into state b.
+	 */
+	protected void compare(PartitionedState a, PartitionedState b,
+			FileSink sink) throws IOException, ToolCancelledException {
+		compareAttributes(null, a.getGraphAttributes(),
+				b.getGraphAttributes(), sink);
+
+		for (int p = 0; p < a.getPartitionCount(); p++) {
+			checkCancelled();
+
+			LinkedHashMap<String, Element> na = a.loadNodes(p);
+			LinkedHashMap<String, Element> nb = b.loadNodes(p);
+
+			for (Element n : nb.values()) {
+				Element old = na.get(n.id);
+
+				if (old == null) {
+					sink.nodeAdded(name, timeId++, n.id);
+					nodesAdded++;
+				}
+
+				compareAttributes(n, old == null ? null : old.attributes,
+						n.attributes, sink);
+			}
+		}
+
+		for (int p = 0; p < a.getPartitionCount(); p++) {
+			checkCancelled();
+
+			LinkedHashMap<String, Element> ea = a.loadEdges(p);
+			LinkedHashMap<String, Element> eb = b.loadEdges(p);
+
+			for (Element e : ea.values()) {
+				Element now = eb.get(e.id);
+
+				if (now != null && sameEnds(e, now))
+					continue;
+
+				//
+				// Edges of removed nodes are removed with them, unless their
+				// id is used again by an edge added below.
+				//
+				if (now != null || (b.hasNode(e.from) && b.hasNode(e.to)))
+					sink.edgeRemoved(name, timeId++, e.id);
+
+				edgesRemoved++;
+			}
+
+			for (Element e : eb.values()) {
+				Element old = ea.get(e.id);
+
+				if (old != null && !sameEnds(old, e))
+					old = null;
+
+				if (old == null) {
+					sink.edgeAdded(name, timeId++, e.id, e.from, e.to,
+							e.directed);
+					edgesAdded++;
+				}
+
+				compareAttributes(e, old == null ? null : old.attributes,
+						e.attributes, sink);
+			}
+		}
+
+		checkCancelled();
+
+		for (String id : a.getNodeIds()) {
+			if (!b.hasNode(id)) {
+				sink.nodeRemoved(name, timeId++, id);
+				nodesRemoved++;
+			}
+		}
+	}
+
+	protected static boolean sameEnds(Element e1, Element e2) {
+		return e1.from.equals(e2.from) && e1.to.equals(e2.to)
+				&& e1.directed == e2.directed;
+	}
+
+	/**
+	 * Write the changes of the attributes of an element, or of the graph if
+	 * the element is null.
+	 */
+	protected void compareAttributes(Element element, Map<String, Object> a,
+			Map<String, Object> b, FileSink sink) {
+		if (a != null) {
+			for (Map.Entry<String, Object> e : a.entrySet()) {
+				if (!b.containsKey(e.getKey())) {
+					attributeRemoved(element, e.getKey(), sink);
+					attributesRemoved++;
+				}
+			}
+		}
+
+		for (Map.Entry<String, Object> e : b.entrySet()) {
+			String key = e.getKey();
+
+			if (a == null || !a.containsKey(key)) {
+				attributeAdded(element, key, e.getValue(), sink);
+				attributesAdded++;
+			} else if (!PartitionedState.equals(a.get(key), e.getValue())) {
+				attributeChanged(element, key, a.get(key), e.getValue(), sink);
+				attributesChanged++;
+			}
+		}
+	}
+
+	protected void attributeAdded(Element element, String key, Object value,
+			FileSink sink) {
+		if (element == null)
+			sink.graphAttributeAdded(name, timeId++, key, value);
+		else if (element.from == null)
+			sink.nodeAttributeAdded(name, timeId++, element.id, key, value);
+		else
+			sink.edgeAttributeAdded(name, timeId++, element.id, key, value);
+	}
+
+	protected void attributeChanged(Element element, String key,
+			Object oldValue, Object newValue, FileSink sink) {
+		if (element == null)
+			sink.graphAttributeChanged(name, timeId++, key, oldValue, newValue);
+		else if (element.from == null)
+			sink.nodeAttributeChanged(name, timeId++, element.id, key,
+					oldValue, newValue);
+		else
+			sink.edgeAttributeChanged(name, timeId++, element.id, key,
+					oldValue, newValue);
+	}
+
+	protected void attributeRemoved(Element element, String key, FileSink sink) {
+		if (element == null)
+			sink.graphAttributeRemoved(name, timeId++, key);
+		else if (element.from == null)
+			sink.nodeAttributeRemoved(name, timeId++, element.id, key);
+		else
+			sink.edgeAttributeRemoved(name, timeId++, element.id, key);
+	}
+
+	private static final String[][] shortcuts = { { "#1", "--source=%s" },
+			{ "#2", "--other=%s" }, { "#3", "--sink=%s" } };
+
+	public static void main(String... args) {
+		Diff diff = new Diff();
+
+		ToolRunner runner = new ToolRunner(diff, args);
+		runner.addListener(diff);
+
+		try {
+			runner.start().waitEndOfExecution();
+		} catch (InterruptedException e) {
+			// Ignore
+		}
+	}
+}
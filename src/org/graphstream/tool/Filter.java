@@ -0,0 +1,189 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.io.IOException;
+
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.tool.stream.EventFilter;
+
+/**
+ * A tool reducing a stream to the events that are needed. Elements can be
+ * selected by id, attributes by key or value, and the stream can be cut to a
+ * range of steps. Events are filtered while they are read, so the stream is
+ * never loaded in memory.
+ *
+ * <pre>
+ * filter trace.dgs small.dgs --dropAttributes=debug\..* --nodes=router.*
+ * </pre>
+ *
+ * The same filters can be used as stages of the pipe tool.
+ *
+ * @see EventFilter
+ */
+public class Filter extends Tool {
+
+	public Filter() {
+		super("filter", null, true, true);
+
+		addOption("nodes", i18n("option:nodes"), true, ToolOption.OptionType.STRING);
+		addOption("edges", i18n("option:edges"), true, ToolOption.OptionType.STRING);
+		addOption("keepAttributes", i18n("option:keep_attributes"), true,
+				ToolOption.OptionType.STRING);
+		addOption("dropAttributes", i18n("option:drop_attributes"), true,
+				ToolOption.OptionType.STRING);
+		addOption("strip", i18n("option:strip"), true, ToolOption.OptionType.FLAG);
+		addOption("where", i18n("option:where"), true, ToolOption.OptionType.STRING);
+		addOption("from", i18n("option:from"), true, ToolOption.OptionType.REAL);
+		addOption("to", i18n("option:to"), true, ToolOption.OptionType.REAL);
+
+		setShortcuts(shortcuts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.Tool#getDomain()
+	 */
+	public String getDomain() {
+		return "org.graphstream.tool.i18n.filter";
+	}
+
+	public void check() throws ToolInitializationException {
+		super.check();
+		createFilter();
+	}
+
+	/**
+	 * Create the filter defined by the options.
+	 */
+	protected EventFilter createFilter() throws ToolInitializationException {
+		EventFilter filter = new EventFilter();
+		String current = null;
+
+		try {
+			current = "nodes";
+			filter.setNodes(options.get("nodes"));
+			current = "edges";
+			filter.setEdges(options.get("edges"));
+			current = "keepAttributes";
+			filter.setKeptAttributes(options.get("keepAttributes"));
+			current = "dropAttributes";
+			filter.setDroppedAttributes(options.get("dropAttributes"));
+			current = "where";
+			filter.setWhere(options.get("where"));
+		} catch (IllegalArgumentException e) {
+			//
+			// Invalid pattern or predicate.
+			//
+			throw new ToolInitializationException(i18n("error:invalid_option",
+					current));
+		}
+
+		filter.setStrip(getFlagOption("strip"));
+		filter.setStepRange(
+				getRealOption("from", Double.NEGATIVE_INFINITY),
+				getRealOption("to", Double.POSITIVE_INFINITY));
+
+		return filter;
+	}
+
+	public void run() throws ToolExecutionException {
+		FileSource source = getSource(SourceFormat.DGS);
+		FileSink sink = getSink(SinkFormat.DGS);
+
+		EventFilter filter;
+
+		try {
+			filter = createFilter();
+		} catch (ToolInitializationException e) {
+			throw new ToolExecutionException(e, "%s", e.getMessage());
+		}
+
+		ToolCancelledException cancelled = null;
+
+		source.addSink(meter);
+		source.addSink(filter);
+		filter.addSink(sink);
+
+		try {
+			boolean read = false;
+
+			beginSink(sink);
+
+			try {
+				beginSource(source);
+
+				try {
+					while (source.nextEvents())
+						checkCancelled();
+				} catch (ToolCancelledException e) {
+					cancelled = e;
+				}
+
+				source.end();
+				read = true;
+			} finally {
+				if (!read)
+					endAfterFailure(sink);
+			}
+
+			sink.end();
+		} catch (IOException e) {
+			throw new ToolExecutionException(e, "%s", i18n("exception:io"));
+		} finally {
+			filter.removeSink(sink);
+			source.removeSink(filter);
+			source.removeSink(meter);
+		}
+
+		if (cancelled != null)
+			throw cancelled;
+	}
+
+	private static final String[][] shortcuts = { { "#1", "--source=%s" },
+			{ "#2", "--sink=%s" } };
+
+	public static void main(String... args) {
+		Filter filter = new Filter();
+
+		ToolRunner runner = new ToolRunner(filter, args);
+		runner.addListener(filter);
+
+		try {
+			runner.start().waitEndOfExecution();
+		} catch (InterruptedException e) {
+			// Ignore
+		}
+	}
+}
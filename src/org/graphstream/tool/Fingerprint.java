@@ -0,0 +1,188 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.graphstream.stream.SinkAdapter;
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.tool.stream.GraphFingerprint;
+
+/**
+ * A tool printing a fingerprint of a graph, which depends only on the graph
+ * and not on the order of its events. It is computed in one pass by a
+ * {@link GraphFingerprint}, at the end of the stream and optionally at the end
+ * of some steps, so outputs of different conversions can be compared without
+ * comparing files.
+ *
+ * By default nodes and edges, with their identifiers, are included. Attributes
+ * can be included too, and edge identifiers ignored to compare formats which
+ * do not keep them.
+ *
+ * <pre>
+ * fingerprint graph.dgs --attributes --steps=10,20
+ * </pre>
+ *
+ * Each fingerprint is printed on a line with the name of the source, followed
+ * by the step for steps.
+ */
+public class Fingerprint extends Tool {
+
+	public Fingerprint() {
+		super("fingerprint", null, true, false);
+
+		addOption("attributes", i18n("option:attributes"), true,
+				ToolOption.OptionType.FLAG);
+		addOption("ignoreEdgeIds", i18n("option:ignore_edge_ids"), true,
+				ToolOption.OptionType.FLAG);
+		addOption("steps", i18n("option:steps"), true,
+				ToolOption.OptionType.STRING);
+
+		setShortcuts(shortcuts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.Tool#getDomain()
+	 */
+	public String getDomain() {
+		return "org.graphstream.tool.i18n.fingerprint";
+	}
+
+	public void check() throws ToolInitializationException {
+		super.check();
+
+		try {
+			getSteps();
+		} catch (NumberFormatException e) {
+			throw new ToolInitializationException(i18n("error:invalid_option",
+					"steps"));
+		}
+	}
+
+	/**
+	 * Steps given by the steps option, sorted.
+	 */
+	protected double[] getSteps() throws NumberFormatException {
+		if (!options.contains("steps"))
+			return new double[0];
+
+		String[] values = options.get("steps").split(",");
+		double[] steps = new double[values.length];
+
+		for (int i = 0; i < values.length; i++)
+			steps[i] = Double.parseDouble(values[i].trim());
+
+		Arrays.sort(steps);
+
+		return steps;
+	}
+
+	public void run() throws ToolExecutionException {
+		final String label = options.contains(SOURCE_KEY) ? options
+				.get(SOURCE_KEY) : "-";
+		final double[] steps = getSteps();
+		final GraphFingerprint fingerprint = new GraphFingerprint(
+				getFlagOption("attributes"), !getFlagOption("ignoreEdgeIds"));
+
+		//
+		// A step ends when the next one begins. Steps do not change the
+		// graph, so the fingerprint is the one of the ended steps.
+		//
+		SinkAdapter checkpoints = new SinkAdapter() {
+			int next = 0;
+
+			public void stepBegins(String sourceId, long timeId, double step) {
+				while (next < steps.length && steps[next] < step)
+					print(label, steps[next++], fingerprint);
+			}
+		};
+
+		FileSource source = getSource(SourceFormat.DGS);
+		ToolCancelledException cancelled = null;
+
+		source.addSink(fingerprint);
+		source.addSink(checkpoints);
+		source.addSink(meter);
+
+		try {
+			beginSource(source);
+
+			try {
+				while (source.nextEvents())
+					checkCancelled();
+			} catch (ToolCancelledException e) {
+				cancelled = e;
+			}
+
+			source.end();
+		} catch (IOException e) {
+			throw new ToolExecutionException(e, "%s", i18n("exception:io"));
+		} finally {
+			source.removeSink(meter);
+			source.removeSink(checkpoints);
+			source.removeSink(fingerprint);
+		}
+
+		if (cancelled != null)
+			throw cancelled;
+
+		//
+		// Steps not reached yet are the same as the end of the stream.
+		//
+		checkpoints.stepBegins(null, 0, Double.POSITIVE_INFINITY);
+		out.printf("%s  %s\n", fingerprint.getFingerprintString(), label);
+	}
+
+	protected void print(String label, double step, GraphFingerprint fingerprint) {
+		out.printf("%s  %s@%s\n", fingerprint.getFingerprintString(), label,
+				step == Math.rint(step) ? Long.toString((long) step) : Double
+						.toString(step));
+	}
+
+	private static final String[][] shortcuts = { { "#1", "--source=%s" } };
+
+	public static void main(String... args) {
+		Fingerprint fingerprint = new Fingerprint();
+
+		ToolRunner runner = new ToolRunner(fingerprint, args);
+		runner.addListener(fingerprint);
+
+		try {
+			runner.start().waitEndOfExecution();
+		} catch (InterruptedException e) {
+			// Ignore
+		}
+	}
+}
@@ -32,8 +32,8 @@
 package org.graphstream.tool;
 
 import java.io.IOException;
-import java.io.Writer;
 
+import org.graphstream.algorithm.generator.BaseGenerator;
 import org.graphstream.algorithm.generator.Generator;
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.implementations.DefaultGraph;
@@ -48,6 +48,13 @@ import org.graphstream.stream.file.FileSink;
  */
 public class Generate extends Tool implements ToolsCommon {
 
+	/**
+	 * Iterations done and nodes generated by the current execution, used to
+	 * report the progress.
+	 */
+	protected volatile int ite, size, iteration;
+	protected volatile ElementCounter counter;
+
 	public Generate() {
 		super("generate", null, false, true);
 
@@ -62,6 +69,9 @@ public class Generate extends Tool implements ToolsCommon {
 				ToolOption.OptionType.FLAG);
 		addOption("force", i18n("option:force"), true,
 				ToolOption.OptionType.FLAG);
+		addOption("seed", i18n("option:seed"), true, ToolOption.OptionType.INT);
+
+		addCacheOption();
 
 		setShortcuts(shortcuts);
 	}
@@ -92,10 +102,31 @@ public class Generate extends Tool implements ToolsCommon {
 					getSinkFormat(SinkFormat.DGS).name()));
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.Tool#getCompletion()
+	 */
+	public double getCompletion() {
+		double c = -1;
+
+		if (iteration > 0)
+			c = ite / (double) iteration;
+
+		if (size > 0 && counter != null)
+			c = Math.max(c, counter.getNodeCount() / (double) size);
+
+		return Math.min(c, 1.0);
+	}
+
 	public void run() throws ToolExecutionException {
-		int size = 0;
+		//
+		// Only seeded generations give the same graph each time.
+		//
+		if (options.contains("seed") && restoreFromCache())
+			return;
+
 		long delay = 0;
-		int iteration = 0;
 		boolean export = false;
 
 		size = getIntOption("size", 0);
@@ -104,15 +135,19 @@ public class Generate extends Tool implements ToolsCommon {
 		export = getFlagOption("export");
 
 		boolean loop = true;
-		int ite = 0;
+		ite = 0;
 
 		FileSink sink = getSink(SinkFormat.DGS);
-		Writer out = getOutput();
 		Generator gen = getGenerator(GeneratorType.BARABASI_ALBERT);
-		ElementCounter counter = new ElementCounter();
+
+		if (options.contains("seed") && gen instanceof BaseGenerator)
+			((BaseGenerator) gen).setRandomSeed(getIntOption("seed", 0));
+
+		counter = new ElementCounter();
 		Graph exportGraph = null;
 
 		gen.addElementSink(counter);
+		gen.addSink(meter);
 
 		if (export) {
 			exportGraph = new DefaultGraph("export");
@@ -121,15 +156,24 @@ public class Generate extends Tool implements ToolsCommon {
 			gen.addSink(sink);
 
 			try {
-				sink.begin(out);
+				beginSink(sink);
 			} catch (IOException e1) {
 				throw new ToolExecutionException(e1, i18n("exception:io"));
 			}
 		}
 
+		ToolCancelledException cancelled = null;
+
 		gen.begin();
 
 		do {
+			try {
+				checkCancelled();
+			} catch (ToolCancelledException e) {
+				cancelled = e;
+				break;
+			}
+
 			gen.nextEvents();
 
 			ite++;
@@ -148,7 +192,7 @@ public class Generate extends Tool implements ToolsCommon {
 				try {
 					Thread.sleep(delay);
 				} catch (InterruptedException e) {
-					loop = false;
+					Thread.currentThread().interrupt();
 				}
 			}
 		} while (loop);
@@ -157,13 +201,18 @@ public class Generate extends Tool implements ToolsCommon {
 
 		try {
 			if (export) {
-				sink.writeAll(exportGraph, out);
+				writeSink(sink, exportGraph);
 			} else {
 				sink.end();
 			}
 		} catch (IOException e) {
 			throw new ToolExecutionException(e, i18n("exception:io"));
 		}
+
+		if (cancelled != null)
+			throw cancelled;
+
+		saveToCache();
 	}
 
 	public static void main(String... args) {
@@ -191,9 +240,9 @@ public class Generate extends Tool implements ToolsCommon {
 			{ "-H", "--size=100" }, { "-K", "--size=1000" },
 			{ "-M", "--size=1000000" }, { "#1", "--sink=%s" } };
 
-	private static class ElementCounter implements ElementSink {
+	protected static class ElementCounter implements ElementSink {
 
-		int nodes = 0;
+		volatile int nodes = 0;
 
 		// int edges = 0;
 
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.io.IOException;
+
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSinkImages;
+import org.graphstream.tool.stream.AsyncFileSinkImages;
+
+/**
+ * Create the IMAGES sink, configured with the sink options. Frames are
+ * encoded on the stream thread, or by as many threads as the "encoders"
+ * option if it is given. With "elideDuplicates=true", frames identical to the
+ * previous one are not written and a manifest lists the file of each frame.
+ * Invalid options raise an {@link IllegalArgumentException}.
+ *
+ * @see FileSinkImages
+ */
+class ImagesSinkFactory implements LazyRegistry.Factory<FileSink> {
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.LazyRegistry.Factory#create(java.lang.String[][])
+	 */
+	public FileSink create(String[][] options) {
+		String prefix = "";
+		FileSinkImages.OutputType outputType = FileSinkImages.OutputType.JPG;
+		FileSinkImages.Resolution resolution = FileSinkImages.Resolutions.VGA;
+		FileSinkImages.OutputPolicy policy = FileSinkImages.OutputPolicy.BY_STEP;
+		FileSinkImages.Quality quality = FileSinkImages.Quality.MEDIUM;
+		FileSinkImages.LayoutPolicy layout = FileSinkImages.LayoutPolicy.NO_LAYOUT;
+		String stylesheet = null;
+		int spf = -1;
+		int sas = -1;
+		int encoders = 0;
+		boolean elide = false;
+
+		if (options != null) {
+			for (int i = 0; i < options.length; i++) {
+				if (options[i][0].equals("prefix")) {
+					prefix = options[i][1];
+				} else if (options[i][0].equals("outputType")) {
+					try {
+						outputType = FileSinkImages.OutputType
+								.valueOf(options[i][1]);
+					} catch (IllegalArgumentException e) {
+						throw invalid("outputType", options[i][1],
+								FileSinkImages.OutputType.values());
+					}
+				} else if (options[i][0].equals("resolution")) {
+					if (options[i][1].matches("\\d+x\\d+")) {
+						int width = Integer.parseInt(options[i][1]
+								.substring(0, options[i][1].indexOf('x')));
+						int height = Integer.parseInt(options[i][1]
+								.substring(options[i][1].indexOf('x') + 1));
+
+						resolution = new FileSinkImages.CustomResolution(
+								width, height);
+					} else {
+						try {
+							resolution = FileSinkImages.Resolutions
+									.valueOf(options[i][1]);
+						} catch (IllegalArgumentException e) {
+							throw invalid("resolution", options[i][1],
+									FileSinkImages.Resolutions.values());
+						}
+					}
+				} else if (options[i][0].equals("outputPolicy")) {
+					try {
+						policy = FileSinkImages.OutputPolicy
+								.valueOf(options[i][1]);
+					} catch (IllegalArgumentException e) {
+						throw invalid("outputPolicy", options[i][1],
+								FileSinkImages.OutputPolicy.values());
+					}
+				} else if (options[i][0].equals("layoutPolicy")) {
+					try {
+						layout = FileSinkImages.LayoutPolicy
+								.valueOf(options[i][1]);
+					} catch (IllegalArgumentException e) {
+						throw invalid("layoutPolicy", options[i][1],
+								FileSinkImages.LayoutPolicy.values());
+					}
+				} else if (options[i][0].equals("stylesheet")) {
+					try {
+						stylesheet = Tools.loadFileContent(options[i][1]);
+					} catch (IOException e) {
+						throw new IllegalArgumentException(String.format(
+								"Can not load stylesheet content : \"%s\"",
+								options[i][1]), e);
+					}
+				} else if (options[i][0].equals("layoutStepPerFrame")) {
+					if (options[i][1].matches("\\d+"))
+						spf = Integer.parseInt(options[i][1]);
+					else
+						throw new IllegalArgumentException(String.format(
+								"Bad stepPerFrame value : %s", options[i][1]));
+				} else if (options[i][0]
+						.equals("layoutStepAfterStabilization")) {
+					if (options[i][1].matches("\\d+"))
+						sas = Integer.parseInt(options[i][1]);
+					else
+						throw new IllegalArgumentException(String.format(
+								"Bad stepAfterStabilization value : %s",
+								options[i][1]));
+				} else if (options[i][0].equals("elideDuplicates")) {
+					elide = Boolean.parseBoolean(options[i][1]);
+				} else if (options[i][0].equals("encoders")) {
+					if (options[i][1].matches("\\d+"))
+						encoders = Integer.parseInt(options[i][1]);
+					else
+						throw new IllegalArgumentException(String.format(
+								"Bad encoders value : %s", options[i][1]));
+				}
+			}
+		}
+
+		FileSinkImages sink;
+
+		//
+		// Without encoders, the asynchronous sink encodes frames on the
+		// stream thread too, it is only needed to elide duplicates.
+		//
+		if (encoders > 0 || elide) {
+			AsyncFileSinkImages async = new AsyncFileSinkImages(prefix,
+					outputType, resolution, policy, encoders);
+			async.setElideDuplicates(elide);
+			sink = async;
+		} else
+			sink = new FileSinkImages(prefix, outputType, resolution, policy);
+
+		sink.setQuality(quality);
+		sink.setLayoutPolicy(layout);
+
+		if (stylesheet != null)
+			sink.setStyleSheet(stylesheet);
+
+		if (spf >= 0)
+			sink.setLayoutStepPerFrame(spf);
+
+		if (sas >= 0)
+			sink.setLayoutStepAfterStabilization(sas);
+
+		return sink;
+	}
+
+	/**
+	 * Error for a value which is not one of the allowed values. Bad options
+	 * do not exit, since the sink can be created in a shared JVM.
+	 */
+	protected static IllegalArgumentException invalid(String option,
+			String value, Object[] allowed) {
+		StringBuilder values = new StringBuilder();
+
+		for (int i = 0; i < allowed.length; i++)
+			values.append(i > 0 ? ", " : "").append(allowed[i]);
+
+		return new IllegalArgumentException(String.format(
+				"Invalid %s \"%s\", use one of : %s", option, value, values));
+	}
+}
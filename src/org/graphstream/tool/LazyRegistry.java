@@ -0,0 +1,253 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.EnumMap;
+
+/**
+ * Associates each constant of an enum with the class of the object it
+ * produces. Classes are given by name and only loaded the first time an
+ * object is requested, so registering every format or generator costs
+ * nothing until one of them is really used.
+ *
+ * The registered class can be the produced object itself, created with the
+ * constructor matching the registered args, or a {@link Factory} when the
+ * object has to be configured with the options given by the user.
+ *
+ * @param <K>
+ *            enum used as key
+ * @param <T>
+ *            type of the produced objects
+ */
+public class LazyRegistry<K extends Enum<K>, T> {
+	/**
+	 * Create objects configured with options.
+	 *
+	 * @param <T>
+	 *            type of the produced objects
+	 */
+	public static interface Factory<T> {
+		/**
+		 * Create a new object.
+		 *
+		 * @param options
+		 *            key/value options, can be null
+		 * @return the new object
+		 */
+		T create(String[][] options);
+	}
+
+	/**
+	 * Type of the produced objects.
+	 */
+	protected final Class<T> type;
+
+	/**
+	 * Entries of the registry.
+	 */
+	protected final EnumMap<K, Entry> entries;
+
+	public LazyRegistry(Class<K> keys, Class<T> type) {
+		this.type = type;
+		this.entries = new EnumMap<K, Entry>(keys);
+	}
+
+	/**
+	 * Register the class associated with a key. It replaces the previous
+	 * class, if any.
+	 *
+	 * @param key
+	 *            the key
+	 * @param className
+	 *            full name of the produced class or of a {@link Factory}
+	 * @param args
+	 *            args given to the constructor of the produced class
+	 */
+	public synchronized void register(K key, String className, Object... args) {
+		entries.put(key, new Entry(className, args));
+	}
+
+	/**
+	 * Register a factory associated with a key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param factory
+	 *            factory producing objects for this key
+	 */
+	public synchronized void register(K key, Factory<? extends T> factory) {
+		Entry e = new Entry(null, null);
+		e.factory = factory;
+
+		entries.put(key, e);
+	}
+
+	/**
+	 * Check if the class associated with a key has already been loaded.
+	 */
+	public synchronized boolean isLoaded(K key) {
+		Entry e = entries.get(key);
+		return e != null && (e.factory != null || e.constructor != null);
+	}
+
+	/**
+	 * Create an object for a key. The associated class is loaded if this is
+	 * the first request for this key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param options
+	 *            options given to the factory, if any
+	 * @return a new object or null if nothing is registered for this key
+	 * @throws IllegalArgumentException
+	 *             if the registered class can not be loaded or created
+	 */
+	public T create(K key, String[][] options) throws IllegalArgumentException {
+		Entry e;
+
+		synchronized (this) {
+			e = entries.get(key);
+
+			if (e == null)
+				return null;
+
+			if (e.factory == null && e.constructor == null)
+				resolve(e);
+		}
+
+		if (e.factory != null)
+			return e.factory.create(options);
+
+		try {
+			return type.cast(e.constructor.newInstance(e.args));
+		} catch (InstantiationException ex) {
+			throw new IllegalArgumentException(e.className, ex);
+		} catch (IllegalAccessException ex) {
+			throw new IllegalArgumentException(e.className, ex);
+		} catch (InvocationTargetException ex) {
+			throw new IllegalArgumentException(e.className, ex.getCause());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void resolve(Entry e) throws IllegalArgumentException {
+		Class<?> c;
+
+		try {
+			c = Class.forName(e.className, true, getClass().getClassLoader());
+		} catch (ClassNotFoundException ex) {
+			throw new IllegalArgumentException(e.className, ex);
+		}
+
+		if (Factory.class.isAssignableFrom(c)) {
+			try {
+				e.factory = (Factory<? extends T>) c.newInstance();
+			} catch (InstantiationException ex) {
+				throw new IllegalArgumentException(e.className, ex);
+			} catch (IllegalAccessException ex) {
+				throw new IllegalArgumentException(e.className, ex);
+			}
+		} else if (type.isAssignableFrom(c)) {
+			for (Constructor<?> ctor : c.getConstructors()) {
+				if (accept(ctor.getParameterTypes(), e.args)) {
+					e.constructor = ctor;
+					return;
+				}
+			}
+
+			throw new IllegalArgumentException(String.format(
+					"%s has no constructor matching %d args", e.className,
+					e.args.length));
+		} else
+			throw new IllegalArgumentException(String.format(
+					"%s is neither a %s nor a factory", e.className,
+					type.getName()));
+	}
+
+	/**
+	 * Check if args can be given to a constructor with these parameter types.
+	 */
+	protected static boolean accept(Class<?>[] types, Object[] args) {
+		if (types.length != args.length)
+			return false;
+
+		for (int i = 0; i < types.length; i++) {
+			if (args[i] == null) {
+				if (types[i].isPrimitive())
+					return false;
+			} else if (!wrap(types[i]).isInstance(args[i]))
+				return false;
+		}
+
+		return true;
+	}
+
+	protected static Class<?> wrap(Class<?> c) {
+		if (!c.isPrimitive())
+			return c;
+		if (c == Integer.TYPE)
+			return Integer.class;
+		if (c == Boolean.TYPE)
+			return Boolean.class;
+		if (c == Double.TYPE)
+			return Double.class;
+		if (c == Long.TYPE)
+			return Long.class;
+		if (c == Float.TYPE)
+			return Float.class;
+		if (c == Short.TYPE)
+			return Short.class;
+		if (c == Byte.TYPE)
+			return Byte.class;
+		if (c == Character.TYPE)
+			return Character.class;
+
+		return Void.class;
+	}
+
+	protected class Entry {
+		final String className;
+		final Object[] args;
+
+		Factory<? extends T> factory;
+		Constructor<?> constructor;
+
+		Entry(String className, Object[] args) {
+			this.className = className;
+			this.args = args == null ? new Object[0] : args;
+			this.factory = null;
+			this.constructor = null;
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.graphstream.algorithm.generator.Generator;
+import org.graphstream.stream.Pipe;
+import org.graphstream.stream.PipeBase;
+import org.graphstream.stream.Source;
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.tool.stream.EdgeReservoir;
+import org.graphstream.tool.stream.EventFilter;
+import org.graphstream.tool.stream.NodeSampler;
+import org.graphstream.tool.stream.SlidingWindow;
+import org.graphstream.tool.stream.StepCoalescer;
+import org.graphstream.tool.stream.StepDecimator;
+
+/**
+ * Chains a source, some stages and some sinks in one JVM. Chaining tools with
+ * pipes of the shell formats each event to DGS and parses it again at each
+ * tool. Here events go from one stage to the next through the sink interface,
+ * so they are only parsed when reading the source file and formatted when
+ * writing the sinks.
+ *
+ * The source is a file or a generator. Stages are given in order with the
+ * stages option, for example "--stages=window=100;coalesce=true". The main
+ * sink is given with the usual sink options and more sinks can be added with
+ * the tee option, for example "--tee=out.gml=GML;out.svg=SVG". The filters
+ * of the filter tool are available as stages too, for example
+ * "--stages=dropAttributes=debug.*;steps=10:20", and so are the samplings
+ * of the sample tool, for example "--stages=sample=0.1;decimate=10".
+ *
+ * <pre>
+ * pipe --generator-type=BARABASI_ALBERT --size=10000 --stages=coalesce=true
+ * 		--sink=ba.dgs --tee=ba.gml=GML
+ * </pre>
+ */
+public class Pipeline extends Tool {
+	/**
+	 * Stages of the current execution, in order.
+	 */
+	protected ArrayList<Pipe> stages;
+
+	/**
+	 * Extra sinks of the current execution, path and format.
+	 */
+	protected String[][] tees;
+
+	public Pipeline() {
+		super("pipe", null, true, true);
+
+		addGeneratorOption(true);
+
+		addOption("size", i18n("option:size"), true, ToolOption.OptionType.INT);
+		addOption("iteration", i18n("option:iteration"), true,
+				ToolOption.OptionType.INT);
+		addOption("stages", i18n("option:stages"), true,
+				ToolOption.OptionType.OPTIONS);
+		addOption("tee", i18n("option:tee"), true,
+				ToolOption.OptionType.OPTIONS);
+
+		setShortcuts(shortcuts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.Tool#getDomain()
+	 */
+	public String getDomain() {
+		return "org.graphstream.tool.i18n.pipe";
+	}
+
+	public void check() throws ToolInitializationException {
+		super.check();
+
+		if (options.contains(GENERATOR_TYPE_KEY)) {
+			if (options.contains(SOURCE_KEY))
+				throw new ToolInitializationException(
+						i18n("error:two_sources"));
+
+			if (getIntOption("size", 0) <= 0
+					&& getIntOption("iteration", 0) <= 0)
+				throw new ToolInitializationException(i18n("error:infinite"));
+		}
+
+		stages = new ArrayList<Pipe>();
+		String[][] spec = getOptionsOption("stages");
+
+		if (spec != null) {
+			for (int i = 0; i < spec.length; i++) {
+				Pipe stage = createStage(spec[i][0], spec[i][1]);
+
+				if (stage == null)
+					throw new ToolInitializationException(i18n(
+							"error:unknown_stage", spec[i][0]));
+
+				stages.add(stage);
+			}
+		}
+
+		tees = getOptionsOption("tee");
+
+		if (tees != null) {
+			for (int i = 0; i < tees.length; i++) {
+				try {
+					SinkFormat.valueOf(tees[i][1]);
+				} catch (IllegalArgumentException e) {
+					throw new ToolInitializationException(i18n(
+							"error:invalid_option", "tee"));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a stage of the pipeline.
+	 *
+	 * @param key
+	 *            name of the stage
+	 * @param value
+	 *            parameter of the stage
+	 * @return the stage, or null if there is no stage with this name
+	 * @throws ToolInitializationException
+	 *             if the parameter is not valid
+	 */
+	protected Pipe createStage(String key, String value)
+			throws ToolInitializationException {
+		try {
+			if (key.equals("coalesce"))
+				return Boolean.parseBoolean(value) ? new StepCoalescer(name)
+						: new PipeBase();
+			if (key.equals("window"))
+				return new SlidingWindow(name, Integer.parseInt(value),
+						Double.NaN);
+			if (key.equals("ttl"))
+				return new SlidingWindow(name, 0, Double.parseDouble(value));
+			if (key.equals("sample"))
+				return new NodeSampler(Double.parseDouble(value));
+			if (key.equals("decimate"))
+				return new StepDecimator(name, Integer.parseInt(value));
+			if (key.equals("reservoir"))
+				return new EdgeReservoir(name, Integer.parseInt(value),
+						new Random());
+			if (key.equals("nodes"))
+				return new EventFilter().setNodes(value);
+			if (key.equals("edges"))
+				return new EventFilter().setEdges(value);
+			if (key.equals("keepAttributes"))
+				return new EventFilter().setKeptAttributes(value);
+			if (key.equals("dropAttributes"))
+				return new EventFilter().setDroppedAttributes(value);
+			if (key.equals("strip"))
+				return new EventFilter().setStrip(Boolean.parseBoolean(value));
+			if (key.equals("where"))
+				return new EventFilter().setWhere(value);
+			if (key.equals("steps")) {
+				int i = value.indexOf(':');
+
+				if (i < 0)
+					throw new NumberFormatException(value);
+
+				return new EventFilter().setStepRange(
+						Double.parseDouble(value.substring(0, i)),
+						Double.parseDouble(value.substring(i + 1)));
+			}
+		} catch (IllegalArgumentException e) {
+			//
+			// Invalid number, pattern or predicate.
+			//
+			throw new ToolInitializationException(i18n("error:invalid_stage",
+					key, value));
+		}
+
+		return null;
+	}
+
+	public void run() throws ToolExecutionException {
+		ArrayList<FileSink> sinks = new ArrayList<FileSink>();
+		FileSource fileSource = null;
+		Generator generator = null;
+		Source source;
+
+		if (options.contains(GENERATOR_TYPE_KEY)) {
+			generator = getGenerator(GeneratorType.BARABASI_ALBERT);
+			source = generator;
+		} else {
+			fileSource = getSource(SourceFormat.DGS);
+			source = fileSource;
+		}
+
+		source.addSink(meter);
+
+		//
+		// Chain stages, each one being a sink of the previous.
+		//
+		Source last = source;
+
+		for (int i = 0; i < stages.size(); i++) {
+			last.addSink(stages.get(i));
+			last = stages.get(i);
+		}
+
+		ToolCancelledException cancelled = null;
+		int ended = 0;
+
+		try {
+			FileSink sink = getSink(SinkFormat.DGS);
+
+			beginSink(sink);
+			sinks.add(sink);
+
+			if (tees != null) {
+				for (int i = 0; i < tees.length; i++) {
+					FileSink tee = Tools.sinkFor(
+							SinkFormat.valueOf(tees[i][1]), null);
+					tee.begin(resolvePath(tees[i][0]));
+					sinks.add(tee);
+				}
+			}
+
+			for (FileSink s : sinks)
+				last.addSink(s);
+
+			try {
+				if (generator != null)
+					generate(generator);
+				else
+					read(fileSource);
+			} catch (ToolCancelledException e) {
+				cancelled = e;
+			}
+
+			//
+			// Stages buffering events release them before sinks are closed.
+			//
+			for (Pipe stage : stages) {
+				if (stage instanceof StepCoalescer)
+					((StepCoalescer) stage).flush();
+				else if (stage instanceof EdgeReservoir)
+					((EdgeReservoir) stage).flush();
+			}
+
+			if (generator != null)
+				generator.end();
+			else
+				fileSource.end();
+
+			for (FileSink s : sinks) {
+				ended++;
+				s.end();
+			}
+		} catch (IOException e) {
+			throw new ToolExecutionException(e, "%s", i18n("exception:io"));
+		} finally {
+			for (FileSink s : sinks)
+				last.removeSink(s);
+
+			//
+			// Sinks already begun when a later one, the source or a sink
+			// failed are ended, so partial outputs are closed.
+			//
+			for (int i = ended; i < sinks.size(); i++)
+				endAfterFailure(sinks.get(i));
+
+			source.removeSink(meter);
+		}
+
+		if (cancelled != null)
+			throw cancelled;
+	}
+
+	protected void read(FileSource source) throws IOException,
+			ToolExecutionException {
+		beginSource(source);
+
+		while (source.nextEvents())
+			checkCancelled();
+	}
+
+	protected void generate(Generator gen) throws ToolCancelledException {
+		int size = getIntOption("size", 0);
+		int iteration = getIntOption("iteration", 0);
+		int ite = 0;
+
+		Generate.ElementCounter counter = new Generate.ElementCounter();
+		gen.addElementSink(counter);
+
+		try {
+			gen.begin();
+
+			do {
+				checkCancelled();
+				gen.nextEvents();
+				ite++;
+			} while ((iteration <= 0 || ite < iteration)
+					&& (size <= 0 || counter.getNodeCount() < size));
+		} finally {
+			gen.removeElementSink(counter);
+		}
+	}
+
+	private static final String[][] shortcuts = { { "#1", "--source=%s" },
+			{ "#2", "--sink=%s" } };
+
+	public static void main(String... args) {
+		Pipeline pipe = new Pipeline();
+
+		ToolRunner runner = new ToolRunner(pipe, args);
+		runner.addListener(pipe);
+
+		try {
+			runner.start().waitEndOfExecution();
+		} catch (InterruptedException e) {
+			// Ignore
+		}
+	}
+}
@@ -31,14 +31,26 @@
  */
 package org.graphstream.tool;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
 
 import org.graphstream.graph.implementations.DefaultGraph;
+import org.graphstream.stream.Source;
 import org.graphstream.stream.file.FileSource;
+import org.graphstream.tool.stream.FileSourceSnapshot;
+import org.graphstream.tool.stream.FollowingInputStream;
+import org.graphstream.tool.stream.SlidingWindow;
+import org.graphstream.tool.stream.StepCoalescer;
 import org.graphstream.ui.swingViewer.Viewer;
 
 public class Player extends Tool {
+	/**
+	 * Merges the events of each step, if enabled.
+	 */
+	protected volatile StepCoalescer coalescer;
 
 	public Player() {
 		super("play", "", true, false);
@@ -55,6 +67,13 @@ public class Player extends Tool {
 				ToolOption.OptionType.INT);
 		addOption("autolayout", i18n("option:autolayout"), true,
 				ToolOption.OptionType.FLAG);
+		addOption("coalesce", i18n("option:coalesce"), true,
+				ToolOption.OptionType.FLAG);
+		addOption("follow", i18n("option:follow"), true,
+				ToolOption.OptionType.FLAG);
+		addOption("window", i18n("option:window"), true,
+				ToolOption.OptionType.INT);
+		addOption("ttl", i18n("option:ttl"), true, ToolOption.OptionType.REAL);
 
 		setShortcuts(shortcuts);
 	}
@@ -81,11 +100,24 @@ public class Player extends Tool {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.Tool#getQueueDepth()
+	 */
+	public long getQueueDepth() {
+		StepCoalescer c = coalescer;
+		return c == null ? 0 : c.getBufferedEventCount();
+	}
+
 	public void run() throws ToolExecutionException {
 		boolean quality;
 		boolean antialias;
 		boolean autolayout;
 		boolean scala;
+		boolean coalesce;
+		int window;
+		double ttl;
 		long stepDelay;
 		String stylesheet;
 		Next next;
@@ -94,6 +126,9 @@ public class Player extends Tool {
 		antialias = getFlagOption("antialiasing");
 		autolayout = getFlagOption("autolayout");
 		scala = getFlagOption("scala");
+		coalesce = getFlagOption("coalesce");
+		window = getIntOption("window", 0);
+		ttl = getRealOption("ttl", Double.NaN);
 		stepDelay = getIntOption("stepDelay", 10);
 		next = getEnumOption("nextAction", Next.class, Next.STEP);
 		stylesheet = getStyleSheet();
@@ -103,10 +138,32 @@ public class Player extends Tool {
 					"org.graphstream.ui.j2dviewer.J2DGraphRenderer");
 
 		FileSource source = getSource(SourceFormat.DGS);
-		Reader in = getInput();
+		Reader in = null;
+
+		//
+		// Snapshots are mapped from their file rather than read.
+		//
+		if (!(source instanceof FileSourceSnapshot))
+			in = getFlagOption("follow") ? getFollowingInput() : getInput();
+
 		DefaultGraph g = new DefaultGraph(name);
+		Source input = source;
+		coalescer = null;
+
+		if (window > 0 || !Double.isNaN(ttl)) {
+			SlidingWindow sw = new SlidingWindow(window, ttl);
+			input.addSink(sw);
+			input = sw;
+		}
+
+		if (coalesce) {
+			coalescer = new StepCoalescer(name);
+			input.addSink(coalescer);
+			input = coalescer;
+		}
 
-		source.addSink(g);
+		input.addSink(g);
+		source.addSink(meter);
 
 		if (quality)
 			g.addAttribute("ui.quality", true);
@@ -121,19 +178,37 @@ public class Player extends Tool {
 		v.setCloseFramePolicy(Viewer.CloseFramePolicy.CLOSE_VIEWER);
 
 		try {
-			source.begin(in);
+			if (in == null)
+				beginSource(source);
+			else
+				source.begin(in);
 		} catch (IOException e) {
 			throw new ToolExecutionException(e, "%s\n", i18n("exception:io"));
 		}
 
+		ToolCancelledException cancelled = null;
+
 		try {
 			while (next == Next.STEP ? source.nextStep() : source.nextEvents()) {
+				checkCancelled();
+
 				try {
 					Thread.sleep(stepDelay);
 				} catch (InterruptedException e1) {
-					// Ignore
+					Thread.currentThread().interrupt();
 				}
 			}
+
+			//
+			// A followed input ends when the tool is cancelled.
+			//
+			if (cancellation.isCancelled())
+				checkCancelled();
+
+			if (coalescer != null)
+				coalescer.flush();
+		} catch (ToolCancelledException e) {
+			cancelled = e;
 		} catch (IOException e) {
 			throw new ToolExecutionException(e, "%s\n", i18n("exception:io"));
 		}
@@ -144,6 +219,48 @@ public class Player extends Tool {
 			throw new ToolExecutionException(e, "%s\n", i18n("exception:io"));
 		}
 
+		if (cancelled != null)
+			throw cancelled;
+
+	}
+
+	/**
+	 * Get an input following the source file. Reading this input blocks at
+	 * the end of the file until new bytes are appended, so the source never
+	 * sees the end of the stream, unless the tool is cancelled. If no source
+	 * file has been given, the standard input is used as is since it already
+	 * blocks until the writer closes it.
+	 * 
+	 * @return the input of the program
+	 */
+	public Reader getFollowingInput() throws ToolExecutionException {
+		if (!options.contains(SOURCE_KEY))
+			return getInput();
+
+		String path = resolvePath(options.get(SOURCE_KEY));
+
+		try {
+			FollowingInputStream in = new FollowingInputStream(new File(path));
+			in.setCancellationToken(cancellation);
+
+			//
+			// Events of the current step are displayed while waiting for
+			// the next one, rather than when it begins.
+			//
+			in.setIdleListener(new Runnable() {
+				public void run() {
+					StepCoalescer c = coalescer;
+
+					if (c != null)
+						c.flush();
+				}
+			});
+
+			return new InputStreamReader(in);
+		} catch (FileNotFoundException e) {
+			throw new ToolExecutionException(e, i18n(
+					"exception:file_not_found", path));
+		}
 	}
 
 	public static enum Next {
@@ -151,9 +268,12 @@ public class Player extends Tool {
 	}
 
 	private static final String[][] shortcuts = { { "-q", "--quality" },
-			{ "-a", "--antialiasing" }, { "-dgs", "--format=DGS" },
-			{ "-dot", "--format=DOT" }, { "-gml", "--format=GML" },
-			{ "-edge", "--format=EDGE" }, { "-l", "--autolayout" },
+			{ "-a", "--antialiasing" },
+			{ "-dgs", "--source-format=DGS" },
+			{ "-dot", "--source-format=DOT" },
+			{ "-gml", "--source-format=GML" },
+			{ "-edge", "--source-format=EDGE" }, { "-l", "--autolayout" },
+			{ "-c", "--coalesce" }, { "-f", "--follow" },
 			{ "-h", "--help" }, { "-slow", "--step-delay=1000" },
 			{ "-fast", "--step-delay=50" }, { "-scala", "--scala-renderer" },
 			{ "#1", "--source=%s" } };
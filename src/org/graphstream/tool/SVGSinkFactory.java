@@ -0,0 +1,90 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSinkSVG;
+import org.graphstream.tool.stream.StreamingFileSinkSVG;
+
+/**
+ * Create the SVG sink, configured with the sink options. With
+ * "streaming=true", edges are written as they are received and only the
+ * positions of nodes are kept in memory.
+ *
+ * @see FileSinkSVG
+ * @see StreamingFileSinkSVG
+ */
+class SVGSinkFactory implements LazyRegistry.Factory<FileSink> {
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.LazyRegistry.Factory#create(java.lang.String[][])
+	 */
+	public FileSink create(String[][] options) {
+		boolean streaming = false;
+		String width = null, height = null;
+		double nodeSize = Double.NaN;
+
+		if (options != null) {
+			for (int o = 0; o < options.length; o++) {
+				if (options[o][0].equals("streaming")) {
+					streaming = Boolean.parseBoolean(options[o][1]);
+				} else if (options[o][0].equals("width")) {
+					width = options[o][1];
+				} else if (options[o][0].equals("height")) {
+					height = options[o][1];
+				} else if (options[o][0].equals("nodeSize")) {
+					try {
+						nodeSize = Double.parseDouble(options[o][1]);
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException(String.format(
+								"Bad nodeSize value : %s", options[o][1]));
+					}
+				}
+			}
+		}
+
+		if (!streaming)
+			return new FileSinkSVG();
+
+		StreamingFileSinkSVG sink = new StreamingFileSinkSVG();
+
+		if (width != null)
+			sink.setWidth(width);
+		if (height != null)
+			sink.setHeight(height);
+		if (!Double.isNaN(nodeSize))
+			sink.setNodeSize(nodeSize);
+
+		return sink;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.graphstream.stream.Source;
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.tool.stream.EdgeReservoir;
+import org.graphstream.tool.stream.NodeSampler;
+import org.graphstream.tool.stream.StepDecimator;
+
+/**
+ * A tool producing a small preview of a large dynamic graph, in one pass over
+ * the stream. Three samplings can be combined, applied in this order:
+ * <ul>
+ * <li>keep a fraction of the nodes, selected by a hash of their id, and the
+ * edges between them;</li>
+ * <li>keep one step out of N, changes of the other steps being merged;</li>
+ * <li>keep a uniform random sample of the edges.</li>
+ * </ul>
+ * The output can be played directly by the player.
+ *
+ * <pre>
+ * sample huge.dgs preview.dgs --fraction=0.05 --every=10
+ * </pre>
+ *
+ * @see NodeSampler
+ * @see StepDecimator
+ * @see EdgeReservoir
+ */
+public class Sample extends Tool {
+
+	public Sample() {
+		super("sample", null, true, true);
+
+		addOption("fraction", i18n("option:fraction"), true,
+				ToolOption.OptionType.REAL);
+		addOption("every", i18n("option:every"), true,
+				ToolOption.OptionType.INT);
+		addOption("edges", i18n("option:edges"), true,
+				ToolOption.OptionType.INT);
+		addOption("seed", i18n("option:seed"), true, ToolOption.OptionType.INT);
+
+		setShortcuts(shortcuts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.Tool#getDomain()
+	 */
+	public String getDomain() {
+		return "org.graphstream.tool.i18n.sample";
+	}
+
+	public void check() throws ToolInitializationException {
+		super.check();
+
+		double fraction = getRealOption("fraction", 1);
+
+		if (fraction <= 0 || fraction > 1)
+			throw new ToolInitializationException(i18n("error:invalid_option",
+					"fraction"));
+
+		if (getIntOption("every", 1) < 1)
+			throw new ToolInitializationException(i18n("error:invalid_option",
+					"every"));
+
+		if (getIntOption("edges", 1) < 1)
+			throw new ToolInitializationException(i18n("error:invalid_option",
+					"edges"));
+
+		if (!options.contains("fraction") && !options.contains("every")
+				&& !options.contains("edges"))
+			throw new ToolInitializationException(i18n("error:no_sampling"));
+	}
+
+	public void run() throws ToolExecutionException {
+		FileSource source = getSource(SourceFormat.DGS);
+		FileSink sink = getSink(SinkFormat.DGS);
+
+		int seed = getIntOption("seed", 0);
+		int every = getIntOption("every", 0);
+		int edges = getIntOption("edges", 0);
+
+		NodeSampler sampler = null;
+		StepDecimator decimator = null;
+		EdgeReservoir reservoir = null;
+		Source last = source;
+
+		if (options.contains("fraction")) {
+			sampler = new NodeSampler(getRealOption("fraction", 1), seed);
+			last.addSink(sampler);
+			last = sampler;
+		}
+
+		if (every > 1) {
+			decimator = new StepDecimator(name, every);
+			last.addSink(decimator);
+			last = decimator;
+		}
+
+		if (edges > 0) {
+			reservoir = new EdgeReservoir(name, edges, new Random(seed));
+			last.addSink(reservoir);
+			last = reservoir;
+		}
+
+		ToolCancelledException cancelled = null;
+
+		source.addSink(meter);
+		last.addSink(sink);
+
+		try {
+			boolean read = false;
+
+			beginSink(sink);
+
+			try {
+				beginSource(source);
+
+				try {
+					while (source.nextEvents())
+						checkCancelled();
+				} catch (ToolCancelledException e) {
+					cancelled = e;
+				}
+
+				if (decimator != null)
+					decimator.flush();
+
+				if (reservoir != null)
+					reservoir.flush();
+
+				source.end();
+				read = true;
+			} finally {
+				if (!read)
+					endAfterFailure(sink);
+			}
+
+			sink.end();
+		} catch (IOException e) {
+			throw new ToolExecutionException(e, "%s", i18n("exception:io"));
+		} finally {
+			last.removeSink(sink);
+			source.removeSink(meter);
+		}
+
+		if (cancelled != null)
+			throw cancelled;
+	}
+
+	private static final String[][] shortcuts = { { "#1", "--source=%s" },
+			{ "#2", "--sink=%s" } };
+
+	public static void main(String... args) {
+		Sample sample = new Sample();
+
+		ToolRunner runner = new ToolRunner(sample, args);
+		runner.addListener(sample);
+
+		try {
+			runner.start().waitEndOfExecution();
+		} catch (InterruptedException e) {
+			// Ignore
+		}
+	}
+}
@@ -32,10 +32,12 @@
 package org.graphstream.tool;
 
 import java.awt.BorderLayout;
+import java.awt.Graphics;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -51,6 +53,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
 import javax.swing.JToolBar;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.event.ChangeEvent;
@@ -58,10 +61,17 @@ import javax.swing.event.ChangeListener;
 
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.implementations.MultiGraph;
+import org.graphstream.stream.Source;
 import org.graphstream.stream.file.FileSource;
 import org.graphstream.stream.file.FileSourceFactory;
+import org.graphstream.stream.thread.ThreadProxyPipe;
+import org.graphstream.tool.stream.FileSourceSnapshot;
+import org.graphstream.tool.stream.FollowingInputStream;
+import org.graphstream.tool.stream.StepCoalescer;
+import org.graphstream.tool.stream.StreamMeter;
 import org.graphstream.ui.layout.Layout;
 import org.graphstream.ui.layout.Layouts;
+import org.graphstream.ui.swingViewer.DefaultView;
 import org.graphstream.ui.swingViewer.GraphRenderer;
 import org.graphstream.ui.swingViewer.Viewer;
 import org.util.Environment;
@@ -85,6 +95,30 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 	 */
 	protected int sleepMs = 100;
 
+	/**
+	 * Merge the events of each step before sending them to the graph, null if
+	 * disabled.
+	 */
+	protected StepCoalescer coalescer;
+
+	/**
+	 * Keep reading the file when its end is reached.
+	 */
+	protected boolean follow;
+
+	/**
+	 * When following a file, the reader runs in its own thread and its events
+	 * are pumped in the Swing thread through this pipe.
+	 */
+	protected ThreadProxyPipe proxy;
+
+	/**
+	 * When following a file, counts the events entering the proxy, in the
+	 * follow thread. The difference with the events counted by the meter is
+	 * the amount of events waiting in the proxy.
+	 */
+	protected StreamMeter followed;
+
 	/**
 	 * Name of the graph read.
 	 */
@@ -179,6 +213,39 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 	 */
 	protected int curStep;
 
+	// Performance
+
+	/**
+	 * Period of the status refresh in milliseconds.
+	 */
+	public static final int STATUS_PERIOD = 250;
+
+	/**
+	 * The timer refreshing the status.
+	 */
+	protected Timer statusTimer;
+
+	/**
+	 * Counts events coming from the reader.
+	 */
+	protected StreamMeter meter;
+
+	/**
+	 * Count of frames painted by the view.
+	 */
+	protected AtomicLong frames;
+
+	/**
+	 * The layout, null if disabled.
+	 */
+	protected Layout layout;
+
+	/**
+	 * Counter values at the last status refresh, used to compute rates.
+	 */
+	private long lastRefresh, lastEvents, lastSteps, lastFrames,
+			lastLayoutSteps;
+
 	// Constructors
 
 	public static void main(String args[]) {
@@ -202,9 +269,18 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 		fileName = env.getParameter("input");
 		fileName = askForGraphFileName(fileName);
 		timer = new Timer(sleepMs, this);
+		statusTimer = new Timer(STATUS_PERIOD, this);
+		meter = new StreamMeter();
+		frames = new AtomicLong(0);
 		graph = new MultiGraph(fileName);
 		doLayout = !env.getBooleanParameter("noLayout");
 		doAntialias = !env.getBooleanParameter("noAntialias");
+
+		follow = env.getBooleanParameter("follow");
+
+		if (env.getBooleanParameter("coalesce"))
+			coalescer = new StepCoalescer(fileName);
+
 		viewer = new Viewer(graph,
 				Viewer.ThreadingModel.GRAPH_IN_ANOTHER_THREAD);
 
@@ -215,7 +291,7 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 		buildUI();
 
 		if (doLayout) {
-			Layout layout = Layouts.newLayoutAlgorithm();
+			layout = Layouts.newLayoutAlgorithm();
 			viewer.enableAutoLayout(layout);
 		}
 		String css = env.getParameter("css");
@@ -230,6 +306,11 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 		timer.setCoalesce(true);
 		timer.setRepeats(true);
 		timer.start();
+
+		lastRefresh = System.currentTimeMillis();
+		statusTimer.setCoalesce(true);
+		statusTimer.setRepeats(true);
+		statusTimer.start();
 	}
 
 	protected void showHelp() {
@@ -243,6 +324,10 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 				.printf("    -noLayout .............. do not automatically layout the graph.%n");
 		System.out
 				.printf("    -noAntialias............ do not automatically switch antialiasing on.%n");
+		System.out
+				.printf("    -coalesce .............. only display the net changes of each step.%n");
+		System.out
+				.printf("    -follow ................ keep reading the file as it grows.%n");
 		System.out.printf("    -h or -help ............ this help message.%n");
 
 		System.exit(0);
@@ -415,9 +500,17 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 		// viewerRemote.setQuality( 4 );
 		// viewerRemote.setStepsVisible( true );
 		GraphRenderer renderer = Viewer.newGraphRenderer();
-		add(viewer.addView(
-				String.format("defaultView_%d", (long) (Math.random() * 10000)),
-				renderer, false), BorderLayout.CENTER);
+		DefaultView view = new DefaultView(viewer, String.format(
+				"defaultView_%d", (long) (Math.random() * 10000)), renderer) {
+			private static final long serialVersionUID = 1L;
+
+			public void paint(Graphics g) {
+				super.paint(g);
+				frames.incrementAndGet();
+			}
+		};
+		viewer.addView(view);
+		add(view, BorderLayout.CENTER);
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		setSize(400, 400);
 		setVisible(true);
@@ -425,12 +518,50 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 
 	protected void openGraph() {
 		try {
-			reader = FileSourceFactory.sourceFor(fileName);
+			boolean snapshot = FileSourceSnapshot.isSnapshot(fileName);
+
+			//
+			// A snapshot is loaded at once, it can not be followed.
+			//
+			if (follow && snapshot) {
+				System.err.printf(
+						"'%s' is a snapshot, it can not be followed.%n",
+						fileName);
+				follow = false;
+			}
+
+			reader = snapshot ? new FileSourceSnapshot() : FileSourceFactory
+					.sourceFor(fileName);
 			// GraphReaderListenerHelper helper = new GraphReaderListenerHelper(
 			// graph );
-			reader.addSink(graph);
+			Source input = reader;
+
+			if (follow) {
+				//
+				// Events are counted before entering the proxy, so they are
+				// never pumped before being counted.
+				//
+				followed = new StreamMeter();
+				proxy = new ThreadProxyPipe();
+				reader.addSink(followed);
+				reader.addSink(proxy);
+				input = proxy;
+			}
+
+			if (coalescer != null) {
+				input.addSink(coalescer);
+				coalescer.addSink(graph);
+			} else
+				input.addSink(graph);
+
+			input.addSink(meter);
+
+			if (follow) {
+				reader.begin(new FollowingInputStream(new File(fileName)));
+				startFollowing();
+			} else
+				reader.begin(fileName);
 
-			reader.begin(fileName);
 			updateStatus();
 		}
 		// catch( NotFoundException e )
@@ -463,21 +594,78 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 		// }
 	}
 
+	/**
+	 * Read the followed file in its own thread, since reads block until new
+	 * events are appended. Events are queued in the proxy and pumped by the
+	 * timer. A read failure is reported in the Swing thread, like the failures
+	 * of the other reads.
+	 */
+	protected void startFollowing() {
+		final FileSource source = reader;
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (source.nextStep())
+						;
+				} catch (final IOException e) {
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							followingFailed(e);
+						}
+					});
+				}
+			}
+		}, String.format("follow-%s", fileName));
+
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Stop following the file after a read error in the follow thread and
+	 * report it the same way as the errors of the timer reads.
+	 */
+	protected void followingFailed(IOException e) {
+		timer.stop();
+		JOptionPane.showMessageDialog(this, String.format(
+				"I/O error while reading graph '%s' (%s).", fileName,
+				e.getMessage()), "Error while reading graph",
+				JOptionPane.ERROR_MESSAGE);
+		System.exit(0);
+	}
+
 	protected void readGraphStep() {
+		if (proxy != null) {
+			proxy.pump();
+			curStep = (int) meter.getStepCount();
+
+			//
+			// Once the proxy is drained, the events of the current step are
+			// displayed rather than held until the next step begins.
+			//
+			if (coalescer != null
+					&& followed.getEventCount() == meter.getEventCount())
+				coalescer.flush();
+
+			return;
+		}
+
 		try {
 			if (reader != null) {
 				boolean hasNext = reader.nextStep();
 				curStep++;
 
 				if (!hasNext) {
+					if (coalescer != null)
+						coalescer.flush();
+
 					reader.end();
 					reader = null;
 					pausePlay.setEnabled(false);
 					speed.setEnabled(false);
 					timer.stop();
+					updateStatus();
 				}
-
-				updateStatus();
 			}
 		} catch (IOException e) {
 			JOptionPane.showMessageDialog(this, String.format(
@@ -499,10 +687,28 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 		// }
 	}
 
+	/**
+	 * Refresh the status bar. This is called periodically by the status timer
+	 * rather than at each step, so a fast trace does not spend its time
+	 * formatting the status. Rates are computed from the difference between
+	 * counters since the previous refresh.
+	 */
 	protected void updateStatus() {
+		long now = System.currentTimeMillis();
+		long events = meter.getEventCount();
+		long steps = meter.getStepCount();
+		long painted = frames.get();
+		long layoutSteps = layout == null ? 0 : layout.getSteps();
+		double elapsed = Math.max(now - lastRefresh, 1) / 1000.0;
+
 		int n = graph.getNodeCount();
 		int e = graph.getEdgeCount();
 
+		Runtime rt = Runtime.getRuntime();
+		long heap = (rt.totalMemory() - rt.freeMemory()) >> 20;
+		long maxHeap = rt.maxMemory() >> 20;
+		long queue = getQueueDepth();
+
 		String s;
 
 		if (reader != null) {
@@ -517,13 +723,40 @@ public class ShowGraph extends JFrame implements ActionListener, ChangeListener
 				s = "OK";
 		}
 
-		status.setText(String.format("%5d node%s  %5d edge%s  %s", n,
-				n == 1 ? "" : "s", e, e == 1 ? "" : "s", s));
+		status.setText(String.format(
+				"%5d node%s  %5d edge%s  %s  |  %.0f ev/s  %.1f st/s  "
+						+ "%.0f fps  %.0f layout/s  |  heap %d/%d MB  "
+						+ "queue %d", n, n == 1 ? "" : "s", e, e == 1 ? ""
+						: "s", s, (events - lastEvents) / elapsed,
+				(steps - lastSteps) / elapsed, (painted - lastFrames)
+						/ elapsed, (layoutSteps - lastLayoutSteps) / elapsed,
+				heap, maxHeap, queue));
+
+		lastRefresh = now;
+		lastEvents = events;
+		lastSteps = steps;
+		lastFrames = painted;
+		lastLayoutSteps = layoutSteps;
+	}
+
+	/**
+	 * Count of events read but not displayed yet, waiting in the proxy when
+	 * the file is followed, or buffered by the coalescer.
+	 */
+	protected long getQueueDepth() {
+		long queue = coalescer == null ? 0 : coalescer.getBufferedEventCount();
+
+		if (followed != null)
+			queue += followed.getEventCount() - meter.getEventCount();
+
+		return queue;
 	}
 
 	public void actionPerformed(ActionEvent e) {
 		if (e.getSource() == timer) {
 			readGraphStep();
+		} else if (e.getSource() == statusTimer) {
+			updateStatus();
 		} else if (e.getSource() == clearCssMenuItem) {
 			graph.removeAttribute("stylesheet");
 		} else if (e.getSource() == addCssMenuItem) {
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSinkTikZ;
+
+/**
+ * Create the TIKZ sink, configured with the sink options.
+ *
+ * @see FileSinkTikZ
+ */
+class TikZSinkFactory implements LazyRegistry.Factory<FileSink> {
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.LazyRegistry.Factory#create(java.lang.String[][])
+	 */
+	public FileSink create(String[][] options) {
+		FileSinkTikZ sink = new FileSinkTikZ();
+
+		boolean layout = false;
+		double width = Double.NaN, height = Double.NaN;
+		String css = null;
+
+		if (options != null) {
+			for (int o = 0; o < options.length; o++) {
+				if (options[o][0].equals("layout")) {
+					layout = Boolean.parseBoolean(options[o][1]);
+				} else if (options[o][0].equals("stylesheet")) {
+					css = Tools.getCSS(options[o][1]);
+				} else if (options[o][0].equals("width")) {
+					width = Double.parseDouble(options[o][1]);
+				} else if (options[o][0].equals("height")) {
+					height = Double.parseDouble(options[o][1]);
+				}
+			}
+		}
+
+		sink.setLayout(layout);
+
+		if (!Double.isNaN(width))
+			sink.setWidth(width);
+		if (!Double.isNaN(height))
+			sink.setHeight(height);
+
+		sink.setCSS(css);
+
+		return sink;
+	}
+}
@@ -31,10 +31,13 @@
  */
 package org.graphstream.tool;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.Reader;
@@ -45,11 +48,17 @@ import java.util.Locale;
 import java.util.ResourceBundle;
 
 import org.graphstream.algorithm.generator.Generator;
+import org.graphstream.graph.Graph;
 import org.graphstream.stream.file.FileSink;
 import org.graphstream.stream.file.FileSource;
 import org.graphstream.tool.ToolOption.ToolEnumOption;
 import org.graphstream.tool.i18n.I18n;
 import org.graphstream.tool.i18n.I18nSupport;
+import org.graphstream.tool.stream.CountingInputStream;
+import org.graphstream.tool.stream.CountingOutputStream;
+import org.graphstream.tool.stream.FileSinkSnapshot;
+import org.graphstream.tool.stream.FileSourceSnapshot;
+import org.graphstream.tool.stream.StreamMeter;
 
 /**
  * Defines the base for tool. Tools just need to add their own option using the
@@ -106,6 +115,17 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 	 */
 	protected PrintStream err;
 
+	/**
+	 * Stream used to print usage and help.
+	 */
+	protected PrintStream out;
+
+	/**
+	 * Directory against which relative paths are resolved, null to use the
+	 * current directory of the process.
+	 */
+	protected File workingDirectory;
+
 	/**
 	 * The i18n bundle used in this tool.
 	 */
@@ -125,18 +145,63 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 	 */
 	protected Writer defaultOutput;
 
+	/**
+	 * Token checked by the tool to know if it has to stop.
+	 */
+	protected CancellationToken cancellation;
+
+	/**
+	 * Counts events processed by the tool. Tools add it as a sink of the
+	 * source they pump.
+	 */
+	protected StreamMeter meter;
+
+	/**
+	 * Counts bytes read from the input file, if any.
+	 */
+	protected CountingInputStream inputCounter;
+
+	/**
+	 * Size of the input file, if any.
+	 */
+	protected long inputLength;
+
+	/**
+	 * Counts bytes written to the output file, if any.
+	 */
+	protected CountingOutputStream outputCounter;
+
+	/**
+	 * Key of the output of the current execution in the cache, null if the
+	 * cache is not used.
+	 */
+	protected String cacheKey;
+
+	/**
+	 * The runner executing the tool, notified of the progress.
+	 */
+	ToolRunner runner;
+
 	public Tool(String name, String description, boolean input, boolean output) {
 		this.name = name;
 		this.description = description;
 		this.hasInput = input;
 		this.hasOutput = output;
 		this.err = System.err;
+		this.out = System.out;
+		this.workingDirectory = null;
 		this.nonOptions = 0;
 		this.allowedOptions = new HashMap<String, ToolOption>();
 		this.locale = Locale.getDefault();
 		this.i18n = I18n.load(this);
 		this.defaultInput = new InputStreamReader(System.in);
 		this.defaultOutput = new OutputStreamWriter(System.out);
+		this.cancellation = new CancellationToken();
+		this.meter = new StreamMeter();
+		this.inputCounter = null;
+		this.inputLength = -1;
+		this.outputCounter = null;
+		this.runner = null;
 
 		if (input)
 			addSourceOption();
@@ -227,6 +292,145 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 		return I18n._(i18n, key, objects);
 	}
 
+	/**
+	 * Get the token checked by the tool to know if it has to stop.
+	 * 
+	 * @return the cancellation token
+	 */
+	public CancellationToken getCancellationToken() {
+		return cancellation;
+	}
+
+	/**
+	 * Set the token checked by the tool. A token can be shared by many tools
+	 * to cancel them at once.
+	 * 
+	 * @param token
+	 *            the new cancellation token
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		this.cancellation = token;
+	}
+
+	/**
+	 * Ask the tool to stop. The tool stops at its next check of the
+	 * cancellation token, after having closed its outputs.
+	 */
+	public void cancel() {
+		cancellation.cancel();
+	}
+
+	/**
+	 * Get the meter counting events processed by the tool during its current
+	 * or last execution.
+	 * 
+	 * @return the meter
+	 */
+	public StreamMeter getMeter() {
+		return meter;
+	}
+
+	/**
+	 * Check the cancellation token. Tools call this in their main loop.
+	 * 
+	 * @throws ToolCancelledException
+	 *             if the tool has to stop
+	 */
+	protected void checkCancelled() throws ToolCancelledException {
+		checkToken();
+
+		if (runner != null)
+			runner.checkProgress();
+	}
+
+	/**
+	 * Check the cancellation token without reporting progress. Threads of
+	 * the tool other than the one running it call this rather than
+	 * {@link #checkCancelled()}.
+	 * 
+	 * @throws ToolCancelledException
+	 *             if the tool has to stop
+	 */
+	protected void checkToken() throws ToolCancelledException {
+		CancellationToken.Reason reason = cancellation.check(meter
+				.getEventCount());
+
+		if (reason != null) {
+			String msg;
+
+			switch (reason) {
+			case INTERRUPTED:
+				msg = i18n("exception:interrupted");
+				break;
+			case TIMEOUT:
+				msg = i18n("exception:timeout");
+				break;
+			case EVENT_LIMIT:
+				msg = i18n("exception:event_limit");
+				break;
+			default:
+				msg = i18n("exception:cancelled");
+				break;
+			}
+
+			throw new ToolCancelledException(reason, "%s", msg);
+		}
+	}
+
+	/**
+	 * Count of bytes read from the input file.
+	 * 
+	 * @return the count, or -1 if the input is not a file
+	 */
+	public long getBytesRead() {
+		CountingInputStream c = inputCounter;
+		return c == null ? -1 : c.getCount();
+	}
+
+	/**
+	 * Size of the input file.
+	 * 
+	 * @return the size, or -1 if the input is not a file
+	 */
+	public long getBytesTotal() {
+		return inputCounter == null ? -1 : inputLength;
+	}
+
+	/**
+	 * Count of bytes written to the output file.
+	 * 
+	 * @return the count, or -1 if the output is not a file
+	 */
+	public long getBytesWritten() {
+		CountingOutputStream c = outputCounter;
+		return c == null ? -1 : c.getCount();
+	}
+
+	/**
+	 * Count of events received by the tool but not processed yet. Tools
+	 * buffering events override this.
+	 * 
+	 * @return the count of pending events
+	 */
+	public long getQueueDepth() {
+		return 0;
+	}
+
+	/**
+	 * Part of the work already done. By default, this is the part of the
+	 * input file that has been read. Tools with no input override this.
+	 * 
+	 * @return a value between 0 and 1, or -1 if unknown
+	 */
+	public double getCompletion() {
+		long total = getBytesTotal();
+
+		if (total <= 0)
+			return -1;
+
+		return Math.min(1.0, getBytesRead() / (double) total);
+	}
+
 	/**
 	 * Set the error stream of the tool.
 	 * 
@@ -241,6 +445,50 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 		return err;
 	}
 
+	/**
+	 * Set the stream used to print usage and help.
+	 * 
+	 * @param out
+	 *            the new output stream
+	 */
+	public void setOut(PrintStream out) {
+		this.out = out;
+	}
+
+	public PrintStream getOut() {
+		return out;
+	}
+
+	/**
+	 * Set the directory against which relative paths given in options are
+	 * resolved.
+	 * 
+	 * @param dir
+	 *            the directory, or null to use the current directory
+	 */
+	public void setWorkingDirectory(File dir) {
+		this.workingDirectory = dir;
+	}
+
+	public File getWorkingDirectory() {
+		return workingDirectory;
+	}
+
+	/**
+	 * Resolve a path given in options against the working directory.
+	 * 
+	 * @param path
+	 *            the path
+	 * @return the resolved path, or the path itself if it is absolute or if
+	 *         there is no working directory
+	 */
+	public String resolvePath(String path) {
+		if (workingDirectory == null || new File(path).isAbsolute())
+			return path;
+
+		return new File(workingDirectory, path).getPath();
+	}
+
 	/**
 	 * Set the shortcuts of this tool. When parsing options, args are first
 	 * iterate. If one arg is equals to a shortcut, its value is replaced.
@@ -311,6 +559,15 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 		addOption(LOCALE_KEY, i18n(LOCALE_DESCRIPTION), true, OptionType.STRING);
 	}
 
+	/**
+	 * Add the options of the cache of outputs.
+	 */
+	protected void addCacheOption() {
+		addOption(CACHE_KEY, i18n(CACHE_DESCRIPTION), true, OptionType.STRING);
+		addOption(CACHE_SIZE_KEY, i18n(CACHE_SIZE_DESCRIPTION), true,
+				OptionType.INT);
+	}
+
 	/**
 	 * Add a new option. Options have the form <code>--key[=value]</code> where
 	 * key is a unique identifier. value can be a string, int, real, bool,
@@ -362,6 +619,11 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 	 */
 	public void init(String... args) throws ToolInitializationException {
 		options = new ToolOption.ParsedOptions();
+		meter.reset();
+		inputCounter = null;
+		inputLength = -1;
+		outputCounter = null;
+		cacheKey = null;
 
 		if (shortcuts != null)
 			Tools.removeShortcuts(args, shortcuts);
@@ -394,8 +656,8 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 		}
 
 		if (options.isHelpNeeded()) {
-			usage(System.out);
-			System.exit(0);
+			usage(out);
+			throw new ToolHelpException();
 		}
 
 		check();
@@ -452,11 +714,43 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 		String[][] sinkOptions = null;
 
 		if (options.contains(SINK_OPTIONS_KEY))
-			sinkOptions = Tools.getKeyValue(options.get(SINK_OPTIONS_KEY));
+			sinkOptions = resolveSinkOptions(Tools.getKeyValue(options
+					.get(SINK_OPTIONS_KEY)));
 
 		return Tools.sinkFor(format, sinkOptions);
 	}
 
+	/**
+	 * Resolve the path-valued sink options against the working directory, so
+	 * that files are written and read where the client of a daemon runs. The
+	 * "prefix" of images is always resolved, keeping its trailing separator.
+	 * A "stylesheet" is resolved only if it names an existing file, since it
+	 * can also be a sheet or an URL.
+	 * 
+	 * @param sinkOptions
+	 *            the sink options
+	 * @return the options, with paths resolved
+	 */
+	protected String[][] resolveSinkOptions(String[][] sinkOptions) {
+		if (workingDirectory == null)
+			return sinkOptions;
+
+		for (String[] option : sinkOptions) {
+			if (option[0].equals("prefix")) {
+				if (!new File(option[1]).isAbsolute())
+					option[1] = workingDirectory.getPath() + File.separator
+							+ option[1];
+			} else if (option[0].equals("stylesheet")) {
+				String path = resolvePath(option[1]);
+
+				if (new File(path).exists())
+					option[1] = path;
+			}
+		}
+
+		return sinkOptions;
+	}
+
 	/**
 	 * Get the sink format.
 	 * 
@@ -502,6 +796,23 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 			String url = options.get(SOURCE_KEY);
 
 			try {
+				File f = new File(resolvePath(url));
+
+				//
+				// Input files are read through a counter, so the progress
+				// of the tool can be reported.
+				//
+				if (f.exists()) {
+					inputLength = f.length();
+					inputCounter = new CountingInputStream(
+							new FileInputStream(f));
+
+					return new InputStreamReader(inputCounter);
+				}
+
+				//
+				// Not a file, this may be a resource.
+				//
 				Reader in = Tools.getFileOrUrlAsStream(url);
 				return in;
 			} catch (FileNotFoundException e) {
@@ -524,16 +835,15 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 	 */
 	public Writer getOutput() throws ToolExecutionException {
 		if (options.contains(SINK_KEY)) {
-			String path = options.get(SINK_KEY);
+			String path = resolvePath(options.get(SINK_KEY));
 
 			try {
-				return new FileWriter(path);
+				outputCounter = new CountingOutputStream(new FileOutputStream(
+						path));
+				return new OutputStreamWriter(outputCounter);
 			} catch (FileNotFoundException e) {
 				throw new ToolExecutionException(e, i18n(
 						"exception:file_not_found", path));
-			} catch (IOException e) {
-				throw new ToolExecutionException(e, i18n(
-						"exception:io"));
 			}
 		}
 
@@ -544,6 +854,221 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 		this.defaultOutput = output;
 	}
 
+	/**
+	 * Get the output of the program as bytes, for binary sinks. Unlike
+	 * {@link #getOutput()}, a sink file is needed.
+	 * 
+	 * @return the output of the program.
+	 */
+	public OutputStream getOutputStream() throws ToolExecutionException {
+		if (!options.contains(SINK_KEY))
+			throw new ToolExecutionException(i18n("error:binary_output"));
+
+		String path = resolvePath(options.get(SINK_KEY));
+
+		try {
+			outputCounter = new CountingOutputStream(new FileOutputStream(path));
+			return outputCounter;
+		} catch (FileNotFoundException e) {
+			throw new ToolExecutionException(e, i18n(
+					"exception:file_not_found", path));
+		}
+	}
+
+	/**
+	 * Begin to read the input of the program with a source. Snapshots are
+	 * given the path of the source file, so they can map it rather than read
+	 * it.
+	 * 
+	 * @param source
+	 *            the source
+	 */
+	public void beginSource(FileSource source) throws ToolExecutionException,
+			IOException {
+		if (source instanceof FileSourceSnapshot) {
+			File f = null;
+
+			if (options.contains(SOURCE_KEY))
+				f = new File(resolvePath(options.get(SOURCE_KEY)));
+
+			if (f == null || !f.exists())
+				throw new ToolExecutionException(i18n("error:binary_input"));
+
+			source.begin(f.getPath());
+			return;
+		}
+
+		source.begin(getInput());
+	}
+
+	/**
+	 * Begin to write the output of the program with a sink. Binary sinks are
+	 * given the output as bytes.
+	 * 
+	 * @param sink
+	 *            the sink
+	 */
+	public void beginSink(FileSink sink) throws ToolExecutionException,
+			IOException {
+		if (sink instanceof FileSinkSnapshot)
+			sink.begin(getOutputStream());
+		else
+			sink.begin(getOutput());
+	}
+
+	/**
+	 * End a sink after a failure, so its partial output is closed. Errors are
+	 * ignored, the failure is the one to report.
+	 * 
+	 * @param sink
+	 *            the sink
+	 */
+	protected static void endAfterFailure(FileSink sink) {
+		try {
+			sink.end();
+		} catch (IOException e) {
+			// Ignore
+		}
+	}
+
+	/**
+	 * Write a whole graph to the output of the program with a sink. Binary
+	 * sinks are given the output as bytes.
+	 * 
+	 * @param sink
+	 *            the sink
+	 * @param graph
+	 *            the graph to write
+	 */
+	public void writeSink(FileSink sink, Graph graph)
+			throws ToolExecutionException, IOException {
+		if (sink instanceof FileSinkSnapshot)
+			sink.writeAll(graph, getOutputStream());
+		else
+			sink.writeAll(graph, getOutput());
+	}
+
+	/**
+	 * Look for the output of the current execution in the cache, if the cache
+	 * option is given. The output has to be a file, and so has the input if
+	 * the tool has one. If the output is found, it is copied to the sink file
+	 * and the tool has nothing more to do. Otherwise, the tool should call
+	 * {@link #saveToCache()} once its output is complete.
+	 * 
+	 * Errors of the cache are reported but do not stop the tool.
+	 * 
+	 * @return true if the output has been restored from the cache
+	 */
+	protected boolean restoreFromCache() {
+		cacheKey = null;
+
+		if (!options.contains(CACHE_KEY) || !options.contains(SINK_KEY)
+				|| getSinkFormat(SinkFormat.DGS) == SinkFormat.IMAGES)
+			return false;
+
+		File input = null;
+
+		if (hasInput) {
+			if (!options.contains(SOURCE_KEY))
+				return false;
+
+			input = new File(resolvePath(options.get(SOURCE_KEY)));
+
+			if (!input.isFile())
+				return false;
+		}
+
+		//
+		// Paths of the input and the output do not change the output, the
+		// content of the input is hashed instead.
+		//
+		HashMap<String, String> key = new HashMap<String, String>();
+
+		for (String k : options) {
+			if (!k.equals(SOURCE_KEY) && !k.equals(SINK_KEY)
+					&& !k.equals(CACHE_KEY) && !k.equals(CACHE_SIZE_KEY))
+				key.put(k, options.get(k));
+		}
+
+		try {
+			String k = ToolCache.key(name, key, input, getReferencedFiles());
+
+			if (getCache().fetch(k,
+					new File(resolvePath(options.get(SINK_KEY)))))
+				return true;
+
+			cacheKey = k;
+		} catch (IOException e) {
+			err.printf("%s : %s\n", i18n("error:cache"), e.getMessage());
+		}
+
+		return false;
+	}
+
+	/**
+	 * Store the output of the current execution in the cache, if
+	 * {@link #restoreFromCache()} has not found it.
+	 */
+	protected void saveToCache() {
+		if (cacheKey == null)
+			return;
+
+		try {
+			getCache().store(cacheKey,
+					new File(resolvePath(options.get(SINK_KEY))));
+		} catch (IOException e) {
+			err.printf("%s : %s\n", i18n("error:cache"), e.getMessage());
+		}
+
+		cacheKey = null;
+	}
+
+	/**
+	 * Files named by options whose content changes the output, by option.
+	 * These are the stylesheet option and the stylesheets given in source or
+	 * sink options, when they are existing files.
+	 * 
+	 * @return the files, by option
+	 */
+	protected HashMap<String, File> getReferencedFiles() {
+		HashMap<String, File> files = new HashMap<String, File>();
+
+		if (options.contains(STYLESHEET_KEY))
+			addReferencedFile(files, STYLESHEET_KEY,
+					options.get(STYLESHEET_KEY));
+
+		for (String k : new String[] { SOURCE_OPTIONS_KEY, SINK_OPTIONS_KEY }) {
+			if (!options.contains(k))
+				continue;
+
+			try {
+				for (String[] option : Tools.getKeyValue(options.get(k)))
+					if (option[0].equals("stylesheet"))
+						addReferencedFile(files, k + ":" + option[0],
+								option[1]);
+			} catch (IllegalArgumentException e) {
+				//
+				// Reported when the source or the sink is created.
+				//
+			}
+		}
+
+		return files;
+	}
+
+	private void addReferencedFile(HashMap<String, File> files, String key,
+			String path) {
+		File f = new File(resolvePath(path));
+
+		if (f.isFile())
+			files.put(key, f);
+	}
+
+	protected ToolCache getCache() {
+		return new ToolCache(new File(resolvePath(options.get(CACHE_KEY))),
+				getIntOption(CACHE_SIZE_KEY, 1024) * (1L << 20));
+	}
+
 	/**
 	 * Get the stylesheet. If no sheet defined, returns the empty string.
 	 * 
@@ -554,7 +1079,9 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 			String css = options.get(STYLESHEET_KEY);
 
 			try {
-				String content = Tools.loadFileContent(css);
+				String path = resolvePath(css);
+				String content = Tools.loadFileContent(new File(path)
+						.exists() ? path : css);
 				return content;
 			} catch (FileNotFoundException e) {
 				// Ignore
@@ -683,9 +1210,9 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 						"error:missing_option", opt.key));
 			case HELP:
 				if (opt instanceof ToolEnumOption)
-					Tools.printChoice(System.out,
+					Tools.printChoice(out,
 							((ToolEnumOption<?>) opt).choices, "");
-				System.exit(0);
+				throw new ToolHelpException();
 			}
 		}
 
@@ -693,6 +1220,18 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 			usage(err);
 			throw new ToolInitializationException(i18n("error:bad_arg_count"));
 		}
+
+		//
+		// Snapshots are binary, they can not go through the standard input
+		// or output.
+		//
+		if (options.contains(SOURCE_FORMAT_KEY) && !options.contains(SOURCE_KEY)
+				&& getSourceFormat(null) == SourceFormat.SNAPSHOT)
+			throw new ToolInitializationException(i18n("error:binary_input"));
+
+		if (options.contains(SINK_FORMAT_KEY) && !options.contains(SINK_KEY)
+				&& getSinkFormat(null) == SinkFormat.SNAPSHOT)
+			throw new ToolInitializationException(i18n("error:binary_output"));
 	}
 
 	/**
@@ -740,8 +1279,11 @@ public abstract class Tool implements ToolsCommon, I18nSupport,
 	public void executionStart(Tool t) {
 		// Nothing to do.
 	}
-	
+
 	public void initializationFailed(Tool t, ToolInitializationException e) {
+		if (e instanceof ToolHelpException)
+			System.exit(0);
+
 		err.printf("%s.\n", e.getMessage());
 		System.exit(1);
 	}
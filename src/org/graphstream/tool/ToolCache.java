@@ -0,0 +1,350 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A local cache of tool outputs, addressed by their content. The key of an
+ * output is a SHA-256 hash of the name of the tool, of its options sorted by
+ * name, of the bytes of its input and of the files named by its options, so a
+ * tool run again with the same input and options can copy its previous output
+ * rather than compute it.
+ *
+ * Outputs are first written to a temporary file of the cache directory and
+ * then renamed, so other processes sharing the directory never see a partial
+ * output. Each hit touches the entry, and when the cache grows over its max
+ * size, least recently used entries are deleted. Temporary files left by
+ * interrupted stores are deleted once they are old enough.
+ *
+ * <pre>
+ * convert big.dgs big.gml --sink-format=GML --cache=/var/cache/gs
+ * </pre>
+ */
+public class ToolCache {
+	/**
+	 * Version of the keys, changed when outputs of a same key may differ.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Suffix of cached outputs.
+	 */
+	protected static final String SUFFIX = ".out";
+
+	/**
+	 * Prefix of temporary files.
+	 */
+	protected static final String TMP_PREFIX = "tmp-";
+
+	/**
+	 * Age after which a temporary file is considered left by an interrupted
+	 * store, in milliseconds.
+	 */
+	protected static final long TMP_MAX_AGE = 60 * 60 * 1000;
+
+	protected final File directory;
+	protected final long maxSize;
+
+	/**
+	 * @param directory
+	 *            the cache directory, created if needed
+	 * @param maxSize
+	 *            max size of the cache in bytes
+	 */
+	public ToolCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Compute the key of an output.
+	 *
+	 * @param tool
+	 *            name of the tool
+	 * @param options
+	 *            options changing the output, by name
+	 * @param input
+	 *            input of the tool, or null if it has no input
+	 * @return the key, in hexadecimal
+	 */
+	public static String key(String tool, Map<String, String> options,
+			File input) throws IOException {
+		return key(tool, options, input, null);
+	}
+
+	/**
+	 * Compute the key of an output which also depends on files named by
+	 * options, such as stylesheets.
+	 *
+	 * @param tool
+	 *            name of the tool
+	 * @param options
+	 *            options changing the output, by name
+	 * @param input
+	 *            input of the tool, or null if it has no input
+	 * @param files
+	 *            files named by options, by option, or null if none
+	 * @return the key, in hexadecimal
+	 */
+	public static String key(String tool, Map<String, String> options,
+			File input, Map<String, File> files) throws IOException {
+		MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			IOException ioe = new IOException(e.getMessage());
+			ioe.initCause(e);
+			throw ioe;
+		}
+
+		update(digest, Integer.toString(VERSION));
+		update(digest, tool);
+
+		for (Map.Entry<String, String> e : new TreeMap<String, String>(
+				options).entrySet()) {
+			update(digest, e.getKey());
+			update(digest, e.getValue() == null ? "" : e.getValue());
+		}
+
+		if (input != null)
+			update(digest, input);
+
+		if (files != null) {
+			for (Map.Entry<String, File> e : new TreeMap<String, File>(files)
+					.entrySet()) {
+				update(digest, e.getKey());
+				update(digest, Long.toString(e.getValue().length()));
+				update(digest, e.getValue());
+			}
+		}
+
+		StringBuilder key = new StringBuilder();
+
+		for (byte b : digest.digest())
+			key.append(String.format("%02x", b & 0xFF));
+
+		return key.toString();
+	}
+
+	/**
+	 * Strings are written with their length, so two lists of strings never
+	 * give the same bytes.
+	 */
+	protected static void update(MessageDigest digest, String s)
+			throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+
+		digest.update((byte) (bytes.length >>> 24));
+		digest.update((byte) (bytes.length >>> 16));
+		digest.update((byte) (bytes.length >>> 8));
+		digest.update((byte) bytes.length);
+		digest.update(bytes);
+	}
+
+	protected static void update(MessageDigest digest, File file)
+			throws IOException {
+		InputStream in = new FileInputStream(file);
+		byte[] buffer = new byte[1 << 16];
+		int r;
+
+		try {
+			while ((r = in.read(buffer)) >= 0)
+				digest.update(buffer, 0, r);
+		} finally {
+			in.close();
+		}
+	}
+
+	protected File entry(String key) {
+		return new File(directory, key + SUFFIX);
+	}
+
+	/**
+	 * Copy a cached output.
+	 *
+	 * @param key
+	 *            key of the output
+	 * @param target
+	 *            file receiving the output
+	 * @return false if the output is not in the cache
+	 */
+	public boolean fetch(String key, File target) throws IOException {
+		File entry = entry(key);
+
+		if (!entry.isFile())
+			return false;
+
+		entry.setLastModified(System.currentTimeMillis());
+
+		try {
+			copy(entry, target);
+		} catch (IOException e) {
+			//
+			// The entry may have been evicted by another process.
+			//
+			if (!entry.isFile())
+				return false;
+
+			throw e;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Store an output and evict old entries if the cache is too large.
+	 *
+	 * @param key
+	 *            key of the output
+	 * @param output
+	 *            file containing the output
+	 */
+	public void store(String key, File output) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("cannot create " + directory);
+
+		File tmp = File.createTempFile(TMP_PREFIX, null, directory);
+
+		try {
+			copy(output, tmp);
+
+			File entry = entry(key);
+
+			if (!tmp.renameTo(entry)) {
+				//
+				// Some systems do not replace existing files.
+				//
+				entry.delete();
+
+				if (!tmp.renameTo(entry))
+					throw new IOException("cannot publish " + entry);
+			}
+		} finally {
+			tmp.delete();
+		}
+
+		evict();
+	}
+
+	/**
+	 * Delete least recently used entries until the cache is not larger than
+	 * its max size, and temporary files left by interrupted stores.
+	 */
+	public void evict() {
+		File[] entries = directory.listFiles();
+
+		if (entries == null)
+			return;
+
+		long size = 0;
+		long now = System.currentTimeMillis();
+		ArrayList<File> outputs = new ArrayList<File>();
+
+		for (File f : entries) {
+			if (f.getName().endsWith(SUFFIX)) {
+				outputs.add(f);
+				size += f.length();
+			} else if (f.getName().startsWith(TMP_PREFIX)
+					&& now - f.lastModified() > TMP_MAX_AGE) {
+				//
+				// Recent ones may be written by another process.
+				//
+				f.delete();
+			}
+		}
+
+		if (size <= maxSize)
+			return;
+
+		File[] lru = outputs.toArray(new File[outputs.size()]);
+		final long[] times = new long[lru.length];
+
+		for (int i = 0; i < lru.length; i++)
+			times[i] = lru[i].lastModified();
+
+		Integer[] order = new Integer[lru.length];
+
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return times[a] < times[b] ? -1 : (times[a] > times[b] ? 1 : 0);
+			}
+		});
+
+		for (int i = 0; i < order.length && size > maxSize; i++) {
+			File f = lru[order[i]];
+			long length = f.length();
+
+			if (f.delete())
+				size -= length;
+		}
+	}
+
+	protected static void copy(File from, File to) throws IOException {
+		FileInputStream in = new FileInputStream(from);
+
+		try {
+			FileOutputStream out = new FileOutputStream(to);
+
+			try {
+				FileChannel source = in.getChannel();
+				FileChannel target = out.getChannel();
+				long size = source.size();
+				long position = 0;
+
+				while (position < size)
+					position += source.transferTo(position, size - position,
+							target);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many tools concurrently. Each submitted job is a tool with its args, it
+ * is executed by a {@link ToolRunner} in a pool of threads whose size is the
+ * maximum concurrency. Jobs submitted while all threads are busy wait in a
+ * queue.
+ *
+ * Listeners of the executor are notified of the execution steps of each job,
+ * the tool given to the callbacks identifies the job. Since a tool keeps its
+ * options, a tool instance should not be submitted again before its previous
+ * job is done.
+ *
+ * <pre>
+ * ToolExecutor executor = new ToolExecutor(8);
+ * Future&lt;Tool&gt; f = executor.submit(new Convert(), &quot;--source=in.dgs&quot;,
+ * 		&quot;--sink=out.gml&quot;, &quot;--sink-format=GML&quot;);
+ * ...
+ * executor.shutdown();
+ * executor.awaitTermination(1, TimeUnit.MINUTES);
+ * </pre>
+ */
+public class ToolExecutor {
+	/**
+	 * Listeners notified of the execution of each job.
+	 */
+	protected final CopyOnWriteArrayList<ToolRunnerListener> listeners;
+
+	/**
+	 * The pool running the jobs.
+	 */
+	protected final ThreadPoolExecutor executor;
+
+	/**
+	 * Create an executor running at most maxConcurrency tools at the same
+	 * time.
+	 *
+	 * @param maxConcurrency
+	 *            maximum count of tools running at the same time
+	 */
+	public ToolExecutor(int maxConcurrency) {
+		if (maxConcurrency < 1)
+			throw new IllegalArgumentException("maxConcurrency < 1");
+
+		listeners = new CopyOnWriteArrayList<ToolRunnerListener>();
+		executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60L,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new RunnerThreadFactory());
+	}
+
+	/**
+	 * Create an executor running at most as many tools as there are available
+	 * processors.
+	 */
+	public ToolExecutor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public int getMaxConcurrency() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Change the maximum count of tools running at the same time. Running
+	 * tools are not affected.
+	 *
+	 * @param maxConcurrency
+	 *            the new maximum
+	 */
+	public void setMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency < 1)
+			throw new IllegalArgumentException("maxConcurrency < 1");
+
+		if (maxConcurrency > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(maxConcurrency);
+			executor.setCorePoolSize(maxConcurrency);
+		} else {
+			executor.setCorePoolSize(maxConcurrency);
+			executor.setMaximumPoolSize(maxConcurrency);
+		}
+	}
+
+	/**
+	 * Count of tools currently running.
+	 */
+	public int getRunningCount() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * Count of jobs waiting for a thread.
+	 */
+	public int getPendingCount() {
+		return executor.getQueue().size();
+	}
+
+	public void addListener(ToolRunnerListener l) {
+		listeners.add(l);
+	}
+
+	public void removeListener(ToolRunnerListener l) {
+		listeners.remove(l);
+	}
+
+	/**
+	 * Submit a job. The future gives the tool once it has been successfully
+	 * executed. If initialization or execution failed, the future throws an
+	 * ExecutionException whose cause is the ToolInitializationException or
+	 * the ToolExecutionException.
+	 *
+	 * @param tool
+	 *            the tool to run
+	 * @param args
+	 *            args of the tool
+	 * @return the future of this job
+	 */
+	public Future<Tool> submit(Tool tool, String... args) {
+		return executor.submit(createRunner(tool, args));
+	}
+
+	/**
+	 * Submit a job for each runner. Listeners of the runners are notified
+	 * along with listeners of this executor.
+	 *
+	 * @param runners
+	 *            runners to execute
+	 * @return futures of the jobs, in the same order
+	 */
+	public List<Future<Tool>> submitAll(Iterable<ToolRunner> runners) {
+		LinkedList<Future<Tool>> futures = new LinkedList<Future<Tool>>();
+
+		for (ToolRunner runner : runners) {
+			for (ToolRunnerListener l : listeners)
+				runner.addListener(l);
+
+			futures.add(executor.submit(runner));
+		}
+
+		return futures;
+	}
+
+	/**
+	 * Stop accepting new jobs. Submitted jobs are still executed.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Stop accepting new jobs, drop pending jobs and interrupt running tools.
+	 *
+	 * @return count of jobs that have never been started
+	 */
+	public int shutdownNow() {
+		return executor.shutdownNow().size();
+	}
+
+	/**
+	 * Wait until all jobs are done after a shutdown.
+	 *
+	 * @return true if all jobs are done, false if timeout elapsed before
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+
+	public boolean isTerminated() {
+		return executor.isTerminated();
+	}
+
+	protected ToolRunner createRunner(Tool tool, String... args) {
+		ToolRunner runner = new ToolRunner(tool, args);
+
+		for (ToolRunnerListener l : listeners)
+			runner.addListener(l);
+
+		return runner;
+	}
+
+	private static class RunnerThreadFactory implements ThreadFactory {
+		private static final AtomicInteger POOL_COUNT = new AtomicInteger(0);
+
+		private final int pool;
+		private final AtomicInteger threadCount;
+
+		RunnerThreadFactory() {
+			pool = POOL_COUNT.incrementAndGet();
+			threadCount = new AtomicInteger(0);
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, String.format("tool-executor-%d-%d", pool,
+					threadCount.incrementAndGet()));
+			t.setDaemon(false);
+
+			return t;
+		}
+	}
+}
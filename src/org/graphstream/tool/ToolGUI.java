@@ -75,7 +75,7 @@ import static org.graphstream.tool.gui.Resources.getImage;
 // -Dsun.java2d.opengl=true -Dawt.useSystemAAFontSettings=on|lcd
 
 public class ToolGUI extends MainTitledPanel implements ToolsCommon,
-		ToolRunnerListener, I18nSupport {
+		ToolProgressListener, I18nSupport {
 	/**
 	 * 
 	 */
@@ -323,6 +323,31 @@ public class ToolGUI extends MainTitledPanel implements ToolsCommon,
 		setToolGUIEnabled(false);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.tool.ToolProgressListener#executionProgress(org.graphstream
+	 * .tool.Tool, org.graphstream.tool.ToolProgress)
+	 */
+	public void executionProgress(Tool t, ToolProgress progress) {
+		final String title;
+
+		if (progress.getCompletion() >= 0)
+			title = String.format("GraphStream : %s (%d%%, %ds left)",
+					tool.getName(), (int) (progress.getCompletion() * 100),
+					progress.getEstimatedTimeLeft() / 1000);
+		else
+			title = String.format("GraphStream : %s (%d events)",
+					tool.getName(), progress.getEventCount());
+
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				frame.setTitle(title);
+			}
+		});
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -359,6 +384,9 @@ public class ToolGUI extends MainTitledPanel implements ToolsCommon,
 	}
 
 	protected void setToolGUIEnabled(boolean on) {
+		if (on)
+			frame.setTitle(String.format("GraphStream : %s", tool.getName()));
+
 		setEnabled(on);
 		LinkedList<Component> components = new LinkedList<Component>();
 		components.add(this);
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+/**
+ * Snapshot of the progress of a tool, given to
+ * {@link ToolProgressListener#executionProgress(Tool, ToolProgress)}.
+ *
+ * Values that can not be known, like the size of an input read from the
+ * standard input, are negative.
+ */
+public class ToolProgress {
+	protected final long elapsed;
+	protected final long bytesRead;
+	protected final long bytesTotal;
+	protected final long events;
+	protected final long steps;
+	protected final double eventRate;
+	protected final double completion;
+
+	public ToolProgress(long elapsed, long bytesRead, long bytesTotal,
+			long events, long steps, double eventRate, double completion) {
+		this.elapsed = elapsed;
+		this.bytesRead = bytesRead;
+		this.bytesTotal = bytesTotal;
+		this.events = events;
+		this.steps = steps;
+		this.eventRate = eventRate;
+		this.completion = completion;
+	}
+
+	/**
+	 * Time elapsed since the start of the execution, in milliseconds.
+	 */
+	public long getElapsedTime() {
+		return elapsed;
+	}
+
+	/**
+	 * Count of bytes consumed from the input, or -1 if unknown.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Size of the input in bytes, or -1 if unknown.
+	 */
+	public long getBytesTotal() {
+		return bytesTotal;
+	}
+
+	/**
+	 * Count of events processed by the tool.
+	 */
+	public long getEventCount() {
+		return events;
+	}
+
+	/**
+	 * Count of steps processed by the tool.
+	 */
+	public long getStepCount() {
+		return steps;
+	}
+
+	/**
+	 * Events processed per second since the previous report.
+	 */
+	public double getEventRate() {
+		return eventRate;
+	}
+
+	/**
+	 * Part of the work done, between 0 and 1, or -1 if unknown.
+	 */
+	public double getCompletion() {
+		return completion;
+	}
+
+	/**
+	 * Estimated time before the end of the execution, in milliseconds. This
+	 * assumes the remaining work is done at the average speed observed so
+	 * far.
+	 *
+	 * @return the estimated time, or -1 if completion is unknown
+	 */
+	public long getEstimatedTimeLeft() {
+		if (completion <= 0)
+			return -1;
+
+		return (long) (elapsed * (1 - completion) / completion);
+	}
+}
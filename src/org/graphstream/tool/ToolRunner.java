@@ -31,18 +31,128 @@
  */
 package org.graphstream.tool;
 
-import java.util.LinkedList;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class ToolRunner {
-	protected LinkedList<ToolRunnerListener> listeners;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Runs a tool with some args, notifying listeners of the execution steps. The
+ * tool can be run in a new thread using {@link #start()}, or the runner can be
+ * called directly, for example by a {@link ToolExecutor}.
+ */
+public class ToolRunner implements Callable<Tool>, ToolRunnerMBean {
+	/**
+	 * States of the execution.
+	 */
+	public static enum State {
+		CREATED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+	}
+
+	/**
+	 * Domain of the names of runner MBeans.
+	 */
+	public static final String JMX_DOMAIN = "org.graphstream.tool";
+
+	/**
+	 * System property disabling the registration of MBeans when set to false.
+	 */
+	public static final String JMX_PROPERTY = "gs.tool.jmx";
+
+	private static final AtomicInteger RUNNER_COUNT = new AtomicInteger(0);
+
+	/**
+	 * Default delay between two progress reports, in milliseconds.
+	 */
+	public static final long DEFAULT_PROGRESS_INTERVAL = 1000;
+
+	protected CopyOnWriteArrayList<ToolRunnerListener> listeners;
 	protected Tool tool;
 	protected String[] args;
+	protected CancellationToken token;
+	protected long progressInterval;
+	protected volatile State state;
 	private Thread t;
+	private final int id;
+
+	private long startTime;
+	private long lastProgressTime;
+	private long lastProgressEvents;
 
 	public ToolRunner(Tool tool, String... args) {
 		this.tool = tool;
 		this.args = args;
-		this.listeners = new LinkedList<ToolRunnerListener>();
+		this.listeners = new CopyOnWriteArrayList<ToolRunnerListener>();
+		this.token = new CancellationToken();
+		this.progressInterval = DEFAULT_PROGRESS_INTERVAL;
+		this.state = State.CREATED;
+		this.id = RUNNER_COUNT.incrementAndGet();
+	}
+
+	/**
+	 * Set the delay between two progress reports sent to listeners.
+	 * 
+	 * @param interval
+	 *            delay in milliseconds, 0 to disable progress reports
+	 */
+	public ToolRunner setProgressInterval(long interval) {
+		this.progressInterval = interval;
+		return this;
+	}
+
+	public long getProgressInterval() {
+		return progressInterval;
+	}
+
+	/**
+	 * Set a wall-clock timeout on the execution of the tool. The tool is
+	 * cancelled once the timeout elapsed.
+	 * 
+	 * @param timeout
+	 *            timeout in milliseconds, 0 if none
+	 */
+	public ToolRunner setTimeout(long timeout) {
+		token.setTimeout(timeout);
+		return this;
+	}
+
+	/**
+	 * Set the maximum count of events the tool can process before being
+	 * cancelled.
+	 * 
+	 * @param eventLimit
+	 *            the limit, 0 if none
+	 */
+	public ToolRunner setEventLimit(long eventLimit) {
+		token.setEventLimit(eventLimit);
+		return this;
+	}
+
+	public CancellationToken getCancellationToken() {
+		return token;
+	}
+
+	/**
+	 * Set the token given to the tool when it is executed. This replaces the
+	 * current token, timeout and event limit included.
+	 * 
+	 * @param token
+	 *            the new token
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		this.token = token;
+	}
+
+	/**
+	 * Ask the tool to stop. If the tool has not started yet, it stops at its
+	 * first check.
+	 */
+	public void cancel() {
+		token.cancel();
 	}
 
 	public ToolRunner start() {
@@ -67,6 +177,10 @@ public class ToolRunner {
 			t.join();
 	}
 
+	public Tool getTool() {
+		return tool;
+	}
+
 	public void addListener(ToolRunnerListener l) {
 		listeners.add(l);
 	}
@@ -76,44 +190,291 @@ public class ToolRunner {
 	}
 	
 	private void executionStart() {
-		for(int i=0; i<listeners.size(); i++)
-			listeners.get(i).executionStart(tool);
+		for (ToolRunnerListener l : listeners)
+			l.executionStart(tool);
 	}
 	
+	private void executionProgress(ToolProgress p) {
+		for (ToolRunnerListener l : listeners)
+			if (l instanceof ToolProgressListener)
+				((ToolProgressListener) l).executionProgress(tool, p);
+	}
+
 	private void initializationFailed(ToolInitializationException e) {
-		for(int i=0; i<listeners.size(); i++)
-			listeners.get(i).initializationFailed(tool, e);
+		for (ToolRunnerListener l : listeners)
+			l.initializationFailed(tool, e);
 	}
 
 	private void executionFailed(ToolExecutionException e) {
-		for(int i=0; i<listeners.size(); i++)
-			listeners.get(i).executionFailed(tool, e);
+		for (ToolRunnerListener l : listeners)
+			l.executionFailed(tool, e);
 	}
 
 	private void executionSuccess() {
-		for(int i=0; i<listeners.size(); i++)
-			listeners.get(i).executionSuccess(tool);
+		for (ToolRunnerListener l : listeners)
+			l.executionSuccess(tool);
 	}
 
-	private class ToolRunnable implements Runnable {
-		public void run() {
+	/**
+	 * Init and run the tool in the current thread. Listeners are notified
+	 * before the exception, if any, is thrown.
+	 * 
+	 * @return the tool
+	 * @throws ToolInitializationException
+	 *             if the tool can not be initialized
+	 * @throws ToolExecutionException
+	 *             if the execution of the tool failed
+	 */
+	public Tool call() throws ToolInitializationException,
+			ToolExecutionException {
+		tool.setCancellationToken(token);
+		tool.runner = this;
+		token.start();
+
+		startTime = lastProgressTime = System.currentTimeMillis();
+		lastProgressEvents = 0;
+		state = State.RUNNING;
+
+		ObjectName mbean = registerMBean();
+
+		try {
 			executionStart();
-			
+
 			try {
 				tool.init(args);
 			} catch (ToolInitializationException e) {
+				state = State.FAILED;
 				initializationFailed(e);
-				return;
+				throw e;
+			} catch (RuntimeException e) {
+				ToolInitializationException failure = new ToolInitializationException(
+						e, "%s", e.getMessage() != null ? e.getMessage() : e
+								.toString());
+				state = State.FAILED;
+				initializationFailed(failure);
+				throw failure;
 			}
 
 			try {
 				tool.run();
 			} catch (ToolExecutionException e) {
+				state = e instanceof ToolCancelledException ? State.CANCELLED
+						: State.FAILED;
 				executionFailed(e);
-				return;
+				throw e;
+			} catch (RuntimeException e) {
+				//
+				// Sources and sinks reject bad options with an
+				// IllegalArgumentException, other errors are bugs which must
+				// not leave the runner running either.
+				//
+				ToolExecutionException failure = new ToolExecutionException(e,
+						"%s", e.getMessage() != null ? e.getMessage() : e
+								.toString());
+				state = State.FAILED;
+				executionFailed(failure);
+				throw failure;
 			}
 
+			state = State.SUCCEEDED;
 			executionSuccess();
+		} finally {
+			unregisterMBean(mbean);
+		}
+
+		return tool;
+	}
+
+	/**
+	 * Register this runner on the platform MBean server.
+	 * 
+	 * @return the name of the MBean, or null if it has not been registered
+	 */
+	protected ObjectName registerMBean() {
+		if (!Boolean.parseBoolean(System.getProperty(JMX_PROPERTY, "true")))
+			return null;
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(String.format(
+					"%s:type=ToolRunner,tool=%s,id=%d", JMX_DOMAIN,
+					ObjectName.quote(tool.getName()), id));
+
+			server.registerMBean(this, name);
+			return name;
+		} catch (JMException e) {
+			//
+			// Monitoring is optional, the tool is executed anyway.
+			//
+			return null;
+		}
+	}
+
+	protected void unregisterMBean(ObjectName name) {
+		if (name == null)
+			return;
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			// Ignore
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getToolName()
+	 */
+	public String getToolName() {
+		return tool.getName();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getArgs()
+	 */
+	public String[] getArgs() {
+		return args.clone();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getState()
+	 */
+	public String getState() {
+		return state.name();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getElapsedTime()
+	 */
+	public long getElapsedTime() {
+		return state == State.CREATED ? 0 : System.currentTimeMillis()
+				- startTime;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getEventCount()
+	 */
+	public long getEventCount() {
+		return tool.meter.getEventCount();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getStepCount()
+	 */
+	public long getStepCount() {
+		return tool.meter.getStepCount();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getCurrentStep()
+	 */
+	public double getCurrentStep() {
+		return tool.meter.getCurrentStep();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getEventRate()
+	 */
+	public double getEventRate() {
+		long elapsed = getElapsedTime();
+		return elapsed > 0 ? getEventCount() * 1000.0 / elapsed : 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getBytesRead()
+	 */
+	public long getBytesRead() {
+		return tool.getBytesRead();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getBytesTotal()
+	 */
+	public long getBytesTotal() {
+		return tool.getBytesTotal();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getBytesWritten()
+	 */
+	public long getBytesWritten() {
+		return tool.getBytesWritten();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getQueueDepth()
+	 */
+	public long getQueueDepth() {
+		return tool.getQueueDepth();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.tool.ToolRunnerMBean#getCompletion()
+	 */
+	public double getCompletion() {
+		return tool.getCompletion();
+	}
+
+	/**
+	 * Called by the tool each time it checks its cancellation token. A report
+	 * is sent to listeners if the progress interval elapsed since the last
+	 * one, so this is cheap enough to be called for each event.
+	 */
+	void checkProgress() {
+		if (progressInterval <= 0)
+			return;
+
+		long now = System.currentTimeMillis();
+
+		if (now - lastProgressTime < progressInterval)
+			return;
+
+		long events = tool.meter.getEventCount();
+		double rate = (events - lastProgressEvents) * 1000.0
+				/ (now - lastProgressTime);
+
+		lastProgressTime = now;
+		lastProgressEvents = events;
+
+		executionProgress(new ToolProgress(now - startTime,
+				tool.getBytesRead(), tool.getBytesTotal(), events,
+				tool.meter.getStepCount(), rate, tool.getCompletion()));
+	}
+
+	private class ToolRunnable implements Runnable {
+		public void run() {
+			try {
+				call();
+			} catch (ToolInitializationException e) {
+				// Listeners have been notified
+			} catch (ToolExecutionException e) {
+				// Listeners have been notified
+			}
 		}
 	}
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+/**
+ * Management interface of a {@link ToolRunner}. Each runner registers itself
+ * on the platform MBean server while its tool is executed, under the name
+ * <code>org.graphstream.tool:type=ToolRunner,tool=&lt;name&gt;,id=&lt;n&gt;</code>,
+ * so running tools can be monitored and cancelled with JMX tools like
+ * jconsole.
+ */
+public interface ToolRunnerMBean {
+	/**
+	 * Name of the executed tool.
+	 */
+	String getToolName();
+
+	/**
+	 * Args given to the tool.
+	 */
+	String[] getArgs();
+
+	/**
+	 * State of the execution, one of {@link ToolRunner.State}.
+	 */
+	String getState();
+
+	/**
+	 * Time elapsed since the start of the execution, in milliseconds.
+	 */
+	long getElapsedTime();
+
+	/**
+	 * Count of events processed by the tool.
+	 */
+	long getEventCount();
+
+	/**
+	 * Count of steps processed by the tool.
+	 */
+	long getStepCount();
+
+	/**
+	 * The last step processed by the tool.
+	 */
+	double getCurrentStep();
+
+	/**
+	 * Average count of events processed per second since the start.
+	 */
+	double getEventRate();
+
+	/**
+	 * Bytes read from the input file, -1 if the input is not a file.
+	 */
+	long getBytesRead();
+
+	/**
+	 * Size of the input file, -1 if the input is not a file.
+	 */
+	long getBytesTotal();
+
+	/**
+	 * Bytes written to the output file, -1 if the output is not a file.
+	 */
+	long getBytesWritten();
+
+	/**
+	 * Count of events buffered by the tool and not processed yet.
+	 */
+	long getQueueDepth();
+
+	/**
+	 * Part of the work done, between 0 and 1, or -1 if unknown.
+	 */
+	double getCompletion();
+
+	/**
+	 * Ask the tool to stop.
+	 */
+	void cancel();
+}
@@ -42,63 +42,9 @@ import java.io.PrintStream;
 import java.io.Reader;
 import java.util.LinkedList;
 
-import org.graphstream.algorithm.generator.BarabasiAlbertGenerator;
-import org.graphstream.algorithm.generator.ChvatalGenerator;
-import org.graphstream.algorithm.generator.DorogovtsevMendesGenerator;
-import org.graphstream.algorithm.generator.FlowerSnarkGenerator;
-import org.graphstream.algorithm.generator.FullGenerator;
 import org.graphstream.algorithm.generator.Generator;
-import org.graphstream.algorithm.generator.GridGenerator;
-import org.graphstream.algorithm.generator.IncompleteGridGenerator;
-import org.graphstream.algorithm.generator.LCFGenerator;
-import org.graphstream.algorithm.generator.LobsterGenerator;
-import org.graphstream.algorithm.generator.PetersenGraphGenerator;
-import org.graphstream.algorithm.generator.PointsOfInterestGenerator;
-import org.graphstream.algorithm.generator.PreferentialAttachmentGenerator;
-import org.graphstream.algorithm.generator.RandomEuclideanGenerator;
-import org.graphstream.algorithm.generator.RandomFixedDegreeDynamicGraphGenerator;
-import org.graphstream.algorithm.generator.RandomGenerator;
-import org.graphstream.algorithm.generator.lcf.Balaban10CageGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.Balaban11CageGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.BidiakisCubeGenerator;
-import org.graphstream.algorithm.generator.lcf.BiggsSmithGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.CubicalGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.DesarguesGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.DodecahedralGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.DyckGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.F26AGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.FosterGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.FranklinGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.FruchtGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.GrayGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.HarriesGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.HarriesWongGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.HeawoodGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.LjubljanaGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.McGeeGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.MobiusKantorGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.NauruGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.PappusGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.TetrahedralGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.TruncatedCubicalGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.TruncatedDodecahedralGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.TruncatedOctahedralGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.TruncatedTetrahedralGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.Tutte12CageGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.TutteCoxeterGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.UtilityGraphGenerator;
-import org.graphstream.algorithm.generator.lcf.WagnerGraphGenerator;
 import org.graphstream.stream.file.FileSink;
-import org.graphstream.stream.file.FileSinkDGS;
-import org.graphstream.stream.file.FileSinkDOT;
-import org.graphstream.stream.file.FileSinkGML;
-import org.graphstream.stream.file.FileSinkImages;
-import org.graphstream.stream.file.FileSinkSVG;
-import org.graphstream.stream.file.FileSinkTikZ;
 import org.graphstream.stream.file.FileSource;
-import org.graphstream.stream.file.FileSourceDGS;
-import org.graphstream.stream.file.FileSourceDOT;
-import org.graphstream.stream.file.FileSourceGML;
 
 public class Tools implements ToolsCommon {
 	public static final int MAJOR_VERSION_NUMBER = 0;
@@ -109,25 +55,141 @@ public class Tools implements ToolsCommon {
 				MINOR_VERSION_NUMBER);
 	}
 
+	/**
+	 * Sources of each format. Classes are loaded when a source of their format
+	 * is requested for the first time, so a tool only loads the formats it
+	 * uses.
+	 */
+	public static final LazyRegistry<SourceFormat, FileSource> SOURCES = new LazyRegistry<SourceFormat, FileSource>(
+			SourceFormat.class, FileSource.class);
+
+	/**
+	 * Sinks of each format.
+	 */
+	public static final LazyRegistry<SinkFormat, FileSink> SINKS = new LazyRegistry<SinkFormat, FileSink>(
+			SinkFormat.class, FileSink.class);
+
+	/**
+	 * Generators of each type.
+	 */
+	public static final LazyRegistry<GeneratorType, Generator> GENERATORS = new LazyRegistry<GeneratorType, Generator>(
+			GeneratorType.class, Generator.class);
+
+	static {
+		final String file = "org.graphstream.stream.file.";
+
+		SOURCES.register(SourceFormat.DGS, file + "FileSourceDGS");
+		SOURCES.register(SourceFormat.DOT, file + "FileSourceDOT");
+		SOURCES.register(SourceFormat.GML, file + "FileSourceGML");
+		SOURCES.register(SourceFormat.EDGE,
+				"org.graphstream.tool.EdgeSourceFactory");
+		SOURCES.register(SourceFormat.NDJSON,
+				"org.graphstream.tool.stream.FileSourceNDJSON");
+		SOURCES.register(SourceFormat.SNAPSHOT,
+				"org.graphstream.tool.stream.FileSourceSnapshot");
+
+		SINKS.register(SinkFormat.DGS, file + "FileSinkDGS");
+		SINKS.register(SinkFormat.DOT, file + "FileSinkDOT");
+		SINKS.register(SinkFormat.GML, file + "FileSinkGML");
+		SINKS.register(SinkFormat.SVG, "org.graphstream.tool.SVGSinkFactory");
+		SINKS.register(SinkFormat.IMAGES,
+				"org.graphstream.tool.ImagesSinkFactory");
+		SINKS.register(SinkFormat.TIKZ, "org.graphstream.tool.TikZSinkFactory");
+		SINKS.register(SinkFormat.EDGE, "org.graphstream.tool.EdgeSinkFactory");
+		SINKS.register(SinkFormat.CSV, "org.graphstream.tool.CSVSinkFactory");
+		SINKS.register(SinkFormat.NDJSON,
+				"org.graphstream.tool.stream.FileSinkNDJSON");
+		SINKS.register(SinkFormat.SNAPSHOT,
+				"org.graphstream.tool.stream.FileSinkSnapshot");
+
+		final String gen = "org.graphstream.algorithm.generator.";
+		final String lcf = gen + "lcf.";
+
+		GENERATORS.register(GeneratorType.PREFERENTIAL_ATTACHMENT, gen
+				+ "PreferentialAttachmentGenerator");
+		GENERATORS.register(GeneratorType.DOROGOVTSEV_MENDES, gen
+				+ "DorogovtsevMendesGenerator");
+		GENERATORS.register(GeneratorType.GRID, gen + "GridGenerator");
+		GENERATORS.register(GeneratorType.INCOMPLETE_GRID, gen
+				+ "IncompleteGridGenerator");
+		GENERATORS.register(GeneratorType.RANDOM, gen + "RandomGenerator");
+		GENERATORS.register(GeneratorType.RANDOM_EUCLIDEAN, gen
+				+ "RandomEuclideanGenerator");
+		GENERATORS.register(GeneratorType.RANDOM_FIXED_DEGREE_DYNAMIC_GRAPH,
+				gen + "RandomFixedDegreeDynamicGraphGenerator");
+		GENERATORS.register(GeneratorType.FULL, gen + "FullGenerator");
+		GENERATORS.register(GeneratorType.POINTS_OF_INTEREST, gen
+				+ "PointsOfInterestGenerator");
+		GENERATORS.register(GeneratorType.BARABASI_ALBERT, gen
+				+ "BarabasiAlbertGenerator");
+		GENERATORS.register(GeneratorType.CHVATAL, gen + "ChvatalGenerator");
+		GENERATORS.register(GeneratorType.FLOWER_SNARK, gen
+				+ "FlowerSnarkGenerator");
+		GENERATORS.register(GeneratorType.LCF, gen + "LCFGenerator", null, 0,
+				false);
+		GENERATORS.register(GeneratorType.LOBSTER, gen + "LobsterGenerator", 2);
+		GENERATORS.register(GeneratorType.CATERPILLAR, gen
+				+ "LobsterGenerator", 1);
+		GENERATORS.register(GeneratorType.PETERSEN, gen
+				+ "PetersenGraphGenerator");
+		GENERATORS.register(GeneratorType.BALABAN_10_CAGE, lcf
+				+ "Balaban10CageGraphGenerator");
+		GENERATORS.register(GeneratorType.BALABAN_11_CAGE, lcf
+				+ "Balaban11CageGraphGenerator");
+		GENERATORS.register(GeneratorType.BIDIAKIS_CUBE, lcf
+				+ "BidiakisCubeGenerator");
+		GENERATORS.register(GeneratorType.BIGGS_SMITH, lcf
+				+ "BiggsSmithGraphGenerator");
+		GENERATORS.register(GeneratorType.CUBICAL, lcf
+				+ "CubicalGraphGenerator");
+		GENERATORS.register(GeneratorType.DESARGUES, lcf
+				+ "DesarguesGraphGenerator");
+		GENERATORS.register(GeneratorType.DODECAHEDRAL, lcf
+				+ "DodecahedralGraphGenerator");
+		GENERATORS.register(GeneratorType.DYCK, lcf + "DyckGraphGenerator");
+		GENERATORS.register(GeneratorType.F26A, lcf + "F26AGraphGenerator");
+		GENERATORS.register(GeneratorType.FOSTER, lcf + "FosterGraphGenerator");
+		GENERATORS.register(GeneratorType.FRANKLIN, lcf
+				+ "FranklinGraphGenerator");
+		GENERATORS.register(GeneratorType.FRUCHT, lcf + "FruchtGraphGenerator");
+		GENERATORS.register(GeneratorType.GRAY, lcf + "GrayGraphGenerator");
+		GENERATORS.register(GeneratorType.HARRIES, lcf
+				+ "HarriesGraphGenerator");
+		GENERATORS.register(GeneratorType.HARRIES_WONG, lcf
+				+ "HarriesWongGraphGenerator");
+		GENERATORS.register(GeneratorType.HEAWOOD, lcf
+				+ "HeawoodGraphGenerator");
+		GENERATORS.register(GeneratorType.LJUBLJANA, lcf
+				+ "LjubljanaGraphGenerator");
+		GENERATORS.register(GeneratorType.MCGEE, lcf + "McGeeGraphGenerator");
+		GENERATORS.register(GeneratorType.MOBIUS_KANTOR, lcf
+				+ "MobiusKantorGraphGenerator");
+		GENERATORS.register(GeneratorType.NAURU, lcf + "NauruGraphGenerator");
+		GENERATORS.register(GeneratorType.PAPPUS, lcf + "PappusGraphGenerator");
+		GENERATORS.register(GeneratorType.TETRAHEDRAL, lcf
+				+ "TetrahedralGraphGenerator");
+		GENERATORS.register(GeneratorType.TRUNCATED_CUBICAL, lcf
+				+ "TruncatedCubicalGraphGenerator");
+		GENERATORS.register(GeneratorType.TRUNCATED_DODECAHEDRAL, lcf
+				+ "TruncatedDodecahedralGraphGenerator");
+		GENERATORS.register(GeneratorType.TRUNCATED_OCTAHEDRAL, lcf
+				+ "TruncatedOctahedralGraphGenerator");
+		GENERATORS.register(GeneratorType.TRUNCATED_TETRAHEDRAL, lcf
+				+ "TruncatedTetrahedralGraphGenerator");
+		GENERATORS.register(GeneratorType.TUTTE_12_CAGE, lcf
+				+ "Tutte12CageGraphGenerator");
+		GENERATORS.register(GeneratorType.TUTTE_COXETER, lcf
+				+ "TutteCoxeterGraphGenerator");
+		GENERATORS.register(GeneratorType.UTILITY, lcf
+				+ "UtilityGraphGenerator");
+		GENERATORS.register(GeneratorType.WAGNER, lcf + "WagnerGraphGenerator");
+	}
+
 	/**
 	 * Get a source of format with given options.
 	 */
 	public static FileSource sourceFor(SourceFormat format, String[][] options) {
-		FileSource source = null;
-
-		switch (format) {
-		case DGS:
-			source = new FileSourceDGS();
-			break;
-		case DOT:
-			source = new FileSourceDOT();
-			break;
-		case GML:
-			source = new FileSourceGML();
-			break;
-		}
-
-		return source;
+		return SOURCES.create(format, options);
 	}
 
 	/**
@@ -141,175 +203,7 @@ public class Tools implements ToolsCommon {
 	 */
 	public static FileSink sinkFor(SinkFormat format, String[][] options)
 			throws IllegalArgumentException {
-		FileSink sink = null;
-
-		switch (format) {
-		case DGS:
-			sink = new FileSinkDGS();
-			break;
-		case DOT:
-			sink = new FileSinkDOT();
-			break;
-		case GML:
-			sink = new FileSinkGML();
-			break;
-		case IMAGES: {
-			String prefix = "";
-			FileSinkImages.OutputType outputType = FileSinkImages.OutputType.JPG;
-			FileSinkImages.Resolution resolution = FileSinkImages.Resolutions.VGA;
-			FileSinkImages.OutputPolicy policy = FileSinkImages.OutputPolicy.BY_STEP;
-			FileSinkImages.Quality quality = FileSinkImages.Quality.MEDIUM;
-			FileSinkImages.LayoutPolicy layout = FileSinkImages.LayoutPolicy.NO_LAYOUT;
-			String stylesheet = null;
-			int spf = -1;
-			int sas = -1;
-
-			if (options != null) {
-				for (int i = 0; i < options.length; i++) {
-					if (options[i][0].equals("prefix")) {
-						prefix = options[i][1];
-					} else if (options[i][0].equals("outputType")) {
-						try {
-							outputType = FileSinkImages.OutputType
-									.valueOf(options[i][1]);
-						} catch (IllegalArgumentException e) {
-							System.err
-									.printf("Invalid outputType. Use one of:\n");
-							for (FileSinkImages.OutputType t : FileSinkImages.OutputType
-									.values())
-								System.err.printf("- %s\n", t);
-							System.exit(1);
-						}
-					} else if (options[i][0].equals("resolution")) {
-						if (options[i][1].matches("\\d+x\\d+")) {
-							int width = Integer.parseInt(options[i][1]
-									.substring(0, options[i][1].indexOf('x')));
-							int height = Integer.parseInt(options[i][1]
-									.substring(options[i][1].indexOf('x') + 1));
-
-							resolution = new FileSinkImages.CustomResolution(
-									width, height);
-						} else {
-							try {
-								resolution = FileSinkImages.Resolutions
-										.valueOf(options[i][1]);
-							} catch (IllegalArgumentException e) {
-								System.err
-										.printf("Invalid outputType. Use \"withxheight\" or one of:\n");
-								for (FileSinkImages.Resolutions t : FileSinkImages.Resolutions
-										.values())
-									System.err.printf("- %s\n", t);
-								System.exit(1);
-							}
-						}
-					} else if (options[i][0].equals("outputPolicy")) {
-						try {
-							policy = FileSinkImages.OutputPolicy
-									.valueOf(options[i][1]);
-						} catch (IllegalArgumentException e) {
-							System.err.printf("Invalid policy. Use one of:\n");
-							for (FileSinkImages.OutputPolicy t : FileSinkImages.OutputPolicy
-									.values())
-								System.err.printf("- %s\n", t);
-							System.exit(1);
-						}
-					} else if (options[i][0].equals("layoutPolicy")) {
-						try {
-							layout = FileSinkImages.LayoutPolicy
-									.valueOf(options[i][1]);
-						} catch (IllegalArgumentException e) {
-							System.err
-									.printf("Invalid layout policy. Use one of:\n");
-							for (FileSinkImages.LayoutPolicy t : FileSinkImages.LayoutPolicy
-									.values())
-								System.err.printf("- %s\n", t);
-							System.exit(1);
-						}
-					} else if (options[i][0].equals("stylesheet")) {
-						try {
-							stylesheet = loadFileContent(options[i][1]);
-						} catch (IOException e) {
-							System.err
-									.printf("Can not load stylesheet content : \"%s\".\n",
-											options[i][1]);
-							System.err.printf("Error is %s : %s\n", e
-									.getClass().getName(), e.getMessage());
-							System.exit(1);
-						}
-					} else if (options[i][0].equals("layoutStepPerFrame")) {
-						if (options[i][1].matches("\\d+"))
-							spf = Integer.parseInt(options[i][1]);
-						else {
-							System.err.printf("Bad stepPerFrame value : %s\n",
-									options[i][1]);
-							System.exit(1);
-						}
-					} else if (options[i][0]
-							.equals("layoutStepAfterStabilization")) {
-						if (options[i][1].matches("\\d+"))
-							sas = Integer.parseInt(options[i][1]);
-						else {
-							System.err.printf(
-									"Bad stepAfterStabilization value : %s\n",
-									options[i][1]);
-							System.exit(1);
-						}
-					}
-				}
-			}
-
-			sink = new FileSinkImages(prefix, outputType, resolution, policy);
-
-			((FileSinkImages) sink).setQuality(quality);
-			((FileSinkImages) sink).setLayoutPolicy(layout);
-
-			if (stylesheet != null)
-				((FileSinkImages) sink).setStyleSheet(stylesheet);
-
-			if (spf >= 0)
-				((FileSinkImages) sink).setLayoutStepPerFrame(spf);
-
-			if (sas >= 0)
-				((FileSinkImages) sink).setLayoutStepAfterStabilization(sas);
-		}
-			break;
-		case SVG:
-			sink = new FileSinkSVG();
-			break;
-		case TIKZ: {
-			sink = new FileSinkTikZ();
-
-			boolean layout = false;
-			double width = Double.NaN, height = Double.NaN;
-			String css = null;
-
-			if (options != null) {
-				for (int o = 0; o < options.length; o++) {
-					if (options[o][0].equals("layout")) {
-						layout = Boolean.parseBoolean(options[o][1]);
-					} else if (options[o][0].equals("stylesheet")) {
-						css = getCSS(options[o][1]);
-					} else if (options[o][0].equals("width")) {
-						width = Double.parseDouble(options[o][1]);
-					} else if (options[o][0].equals("height")) {
-						height = Double.parseDouble(options[o][1]);
-					}
-				}
-			}
-
-			((FileSinkTikZ) sink).setLayout(layout);
-
-			if (!Double.isNaN(width))
-				((FileSinkTikZ) sink).setWidth(width);
-			if (!Double.isNaN(height))
-				((FileSinkTikZ) sink).setHeight(height);
-
-			((FileSinkTikZ) sink).setCSS(css);
-		}
-			break;
-		}
-
-		return sink;
+		return SINKS.create(format, options);
 	}
 
 	/**
@@ -322,150 +216,7 @@ public class Tools implements ToolsCommon {
 	 * @return a generator
 	 */
 	public static Generator generatorFor(GeneratorType type, String[][] options) {
-		Generator gen = null;
-
-		switch (type) {
-		case PREFERENTIAL_ATTACHMENT:
-			gen = new PreferentialAttachmentGenerator();
-			break;
-		case DOROGOVTSEV_MENDES:
-			gen = new DorogovtsevMendesGenerator();
-			break;
-		case GRID:
-			gen = new GridGenerator();
-			break;
-		case INCOMPLETE_GRID:
-			gen = new IncompleteGridGenerator();
-			break;
-		case RANDOM:
-			gen = new RandomGenerator();
-			break;
-		case RANDOM_EUCLIDEAN:
-			gen = new RandomEuclideanGenerator();
-			break;
-		case RANDOM_FIXED_DEGREE_DYNAMIC_GRAPH:
-			gen = new RandomFixedDegreeDynamicGraphGenerator();
-			break;
-		case FULL:
-			gen = new FullGenerator();
-			break;
-		case POINTS_OF_INTEREST:
-			gen = new PointsOfInterestGenerator();
-			break;
-		case BARABASI_ALBERT:
-			gen = new BarabasiAlbertGenerator();
-			break;
-		case CHVATAL:
-			gen = new ChvatalGenerator();
-			break;
-		case FLOWER_SNARK:
-			gen = new FlowerSnarkGenerator();
-			break;
-		case LCF:
-			gen = new LCFGenerator(null, 0, false);
-			break;
-		case LOBSTER:
-			gen = new LobsterGenerator(2);
-			break;
-		case CATERPILLAR:
-			gen = new LobsterGenerator(1);
-			break;
-		case PETERSEN:
-			gen = new PetersenGraphGenerator();
-			break;
-		case BALABAN_10_CAGE:
-			gen = new Balaban10CageGraphGenerator();
-			break;
-		case BALABAN_11_CAGE:
-			gen = new Balaban11CageGraphGenerator();
-			break;
-		case BIDIAKIS_CUBE:
-			gen = new BidiakisCubeGenerator();
-			break;
-		case BIGGS_SMITH:
-			gen = new BiggsSmithGraphGenerator();
-			break;
-		case CUBICAL:
-			gen = new CubicalGraphGenerator();
-			break;
-		case DESARGUES:
-			gen = new DesarguesGraphGenerator();
-			break;
-		case DODECAHEDRAL:
-			gen = new DodecahedralGraphGenerator();
-			break;
-		case DYCK:
-			gen = new DyckGraphGenerator();
-			break;
-		case F26A:
-			gen = new F26AGraphGenerator();
-			break;
-		case FOSTER:
-			gen = new FosterGraphGenerator();
-			break;
-		case FRANKLIN:
-			gen = new FranklinGraphGenerator();
-			break;
-		case FRUCHT:
-			gen = new FruchtGraphGenerator();
-			break;
-		case GRAY:
-			gen = new GrayGraphGenerator();
-			break;
-		case HARRIES:
-			gen = new HarriesGraphGenerator();
-			break;
-		case HARRIES_WONG:
-			gen = new HarriesWongGraphGenerator();
-			break;
-		case HEAWOOD:
-			gen = new HeawoodGraphGenerator();
-			break;
-		case LJUBLJANA:
-			gen = new LjubljanaGraphGenerator();
-			break;
-		case MCGEE:
-			gen = new McGeeGraphGenerator();
-			break;
-		case MOBIUS_KANTOR:
-			gen = new MobiusKantorGraphGenerator();
-			break;
-		case NAURU:
-			gen = new NauruGraphGenerator();
-			break;
-		case PAPPUS:
-			gen = new PappusGraphGenerator();
-			break;
-		case TETRAHEDRAL:
-			gen = new TetrahedralGraphGenerator();
-			break;
-		case TRUNCATED_CUBICAL:
-			gen = new TruncatedCubicalGraphGenerator();
-			break;
-		case TRUNCATED_DODECAHEDRAL:
-			gen = new TruncatedDodecahedralGraphGenerator();
-			break;
-		case TRUNCATED_OCTAHEDRAL:
-			gen = new TruncatedOctahedralGraphGenerator();
-			break;
-		case TRUNCATED_TETRAHEDRAL:
-			gen = new TruncatedTetrahedralGraphGenerator();
-			break;
-		case TUTTE_12_CAGE:
-			gen = new Tutte12CageGraphGenerator();
-			break;
-		case TUTTE_COXETER:
-			gen = new TutteCoxeterGraphGenerator();
-			break;
-		case UTILITY:
-			gen = new UtilityGraphGenerator();
-			break;
-		case WAGNER:
-			gen = new WagnerGraphGenerator();
-			break;
-		}
-
-		return gen;
+		return GENERATORS.create(type, options);
 	}
 
 	public static String getCSS(String url) {
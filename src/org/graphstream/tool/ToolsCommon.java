@@ -134,10 +134,13 @@ public interface ToolsCommon {
 	 */
 	public static enum SinkFormat implements Optionable {
 		DGS(true), TIKZ(false, "width", "height", "stylesheet", "layout"), DOT(
-				true), GML(false), SVG(false), IMAGES(true, "prefix",
+				true), GML(false), SVG(false, "streaming", "width",
+				"height", "nodeSize"), IMAGES(true, "prefix",
 				"outputType", "outputPolicy", "resolution", "layoutPolicy",
 				"quality", "stylesheet", "layoutStepPerFrame",
-				"layoutStepAfterStabilization")
+				"layoutStepAfterStabilization", "encoders",
+				"elideDuplicates"), EDGE(false, "nodes"), CSV(false,
+				"attributes"), NDJSON(true), SNAPSHOT(false)
 
 		;
 
@@ -206,7 +209,8 @@ public interface ToolsCommon {
 	 * 
 	 */
 	public static enum SourceFormat implements Optionable {
-		DGS(true), GML(false), DOT(false)
+		DGS(true), GML(false), DOT(false), EDGE(false, "directed", "threads"),
+		NDJSON(true), SNAPSHOT(false)
 
 		;
 
@@ -296,10 +300,15 @@ public interface ToolsCommon {
 	public static final String LOCALE_KEY = "locale";
 	public static final String LOCALE_DESCRIPTION = "option:locale";
 
+	public static final String CACHE_KEY = "cache";
+	public static final String CACHE_SIZE_KEY = "cache-size";
+	public static final String CACHE_DESCRIPTION = "option:cache";
+	public static final String CACHE_SIZE_DESCRIPTION = "option:cache_size";
+
 	public static final String INT_MATCHER = "\\d+";
 	public static final String REAL_MATCHER = "\\d+([.]\\d+)?";
 	public static final String BOOL_MATCHER = "true|false";
-	public static final String OPTIONS_MATCHER = "([^=]+=[^=]+(;[^=]+=[^=])*)?";
+	public static final String OPTIONS_MATCHER = "([^=;]+=[^;]*(;[^=;]+=[^;]*)*)?";
 
 	public static enum CheckResult {
 		VALID, MISSING, INVALID, HELP
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.stream.file.FileSourceFactory;
+import org.graphstream.tool.stream.StructureValidator;
+
+/**
+ * A tool checking graph files before they are played or converted. Each file
+ * is read once and its events are checked by a {@link StructureValidator}, so
+ * no graph is built and large files can be checked with little memory.
+ *
+ * It reports syntax errors, duplicate nodes and edges, edges whose nodes do
+ * not exist, removals or attribute changes of unknown elements and steps going
+ * back in time. Many files can be given, separated by the path separator, and
+ * they are checked in parallel. The format of each file is guessed unless a
+ * source format is given.
+ *
+ * <pre>
+ * validate big.dgs:other.gml --jobs=4
+ * </pre>
+ *
+ * The execution fails if a file is not valid, so it can be used in scripts.
+ */
+public class Validate extends Tool {
+
+	/**
+	 * Delay between two checks of the tool while waiting for workers, in
+	 * milliseconds.
+	 */
+	protected static final long WAIT_INTERVAL = 100;
+
+	public Validate() {
+		super("validate", null, true, false);
+
+		addOption("jobs", i18n("option:jobs"), true, ToolOption.OptionType.INT);
+		addOption("reports", i18n("option:reports"), true,
+				ToolOption.OptionType.INT);
+
+		setShortcuts(shortcuts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.Tool#getDomain()
+	 */
+	public String getDomain() {
+		return "org.graphstream.tool.i18n.validate";
+	}
+
+	public void check() throws ToolInitializationException {
+		super.check();
+
+		if (getIntOption("jobs", 1) < 1)
+			throw new ToolInitializationException(i18n("error:invalid_option",
+					"jobs"));
+
+		if (getIntOption("reports", 0) < 0)
+			throw new ToolInitializationException(i18n("error:invalid_option",
+					"reports"));
+	}
+
+	/**
+	 * Result of the check of a file.
+	 */
+	protected static class Result {
+		final String name;
+		final StructureValidator validator;
+		String error;
+
+		Result(String name, StructureValidator validator) {
+			this.name = name;
+			this.validator = validator;
+			this.error = null;
+		}
+
+		boolean isValid() {
+			return error == null && validator.getProblemCount() == 0;
+		}
+	}
+
+	public void run() throws ToolExecutionException {
+		ArrayList<Result> results = new ArrayList<Result>();
+
+		if (options.contains(SOURCE_KEY))
+			checkFiles(options.get(SOURCE_KEY).split(File.pathSeparator),
+					results);
+		else
+			results.add(checkInput());
+
+		int invalid = 0;
+
+		for (Result r : results) {
+			print(r);
+
+			if (!r.isValid())
+				invalid++;
+		}
+
+		if (invalid > 0)
+			throw new ToolExecutionException("%s", i18n("error:invalid_files",
+					Integer.toString(invalid),
+					Integer.toString(results.size())));
+	}
+
+	/**
+	 * Check the files, at most jobs files at the same time. Results are in the
+	 * order of the files.
+	 */
+	protected void checkFiles(String[] files, ArrayList<Result> results)
+			throws ToolExecutionException {
+		int jobs = Math.min(files.length, getIntOption("jobs", Runtime
+				.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(jobs, 1));
+		ArrayList<Future<Result>> futures = new ArrayList<Future<Result>>();
+
+		try {
+			for (final String file : files) {
+				futures.add(pool.submit(new Callable<Result>() {
+					public Result call() throws ToolExecutionException {
+						return checkFile(file);
+					}
+				}));
+			}
+
+			//
+			// Workers only check the cancellation token, progress is
+			// reported from this thread while waiting for them.
+			//
+			for (Future<Result> f : futures) {
+				Result r = null;
+
+				while (r == null) {
+					try {
+						r = f.get(WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException e) {
+						checkCancelled();
+					}
+				}
+
+				results.add(r);
+			}
+		} catch (InterruptedException e) {
+			cancel();
+			throw new ToolCancelledException(
+					CancellationToken.Reason.INTERRUPTED, "%s",
+					i18n("exception:interrupted"));
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ToolExecutionException)
+				throw (ToolExecutionException) e.getCause();
+
+			throw new ToolExecutionException(e.getCause(), "%s",
+					i18n("exception:io"));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	protected Result checkFile(String file) throws ToolExecutionException {
+		String path = resolvePath(file);
+		Result result = new Result(file, new StructureValidator(getIntOption(
+				"reports", 10)));
+		FileSource source;
+
+		try {
+			if (options.contains(SOURCE_FORMAT_KEY))
+				source = getSource(SourceFormat.DGS);
+			else
+				source = FileSourceFactory.sourceFor(path);
+		} catch (IOException e) {
+			result.error = e.getMessage();
+			return result;
+		}
+
+		if (source == null) {
+			result.error = i18n("error:unknown_format");
+			return result;
+		}
+
+		try {
+			source.begin(path);
+			read(source, result, true);
+		} catch (IOException e) {
+			result.error = e.getMessage();
+		}
+
+		return result;
+	}
+
+	protected Result checkInput() throws ToolExecutionException {
+		Result result = new Result("-", new StructureValidator(getIntOption(
+				"reports", 10)));
+		FileSource source = getSource(SourceFormat.DGS);
+
+		try {
+			beginSource(source);
+			read(source, result, false);
+		} catch (IOException e) {
+			result.error = e.getMessage();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Read a source through the validator of a result.
+	 * 
+	 * @param worker
+	 *            true if called from a worker thread, which must not report
+	 *            progress
+	 */
+	protected void read(FileSource source, Result result, boolean worker)
+			throws IOException, ToolCancelledException {
+		source.addSink(result.validator);
+		source.addSink(meter);
+
+		try {
+			while (source.nextEvents()) {
+				if (worker)
+					checkToken();
+				else
+					checkCancelled();
+			}
+		} finally {
+			source.removeSink(meter);
+			source.removeSink(result.validator);
+
+			source.end();
+		}
+	}
+
+	protected void print(Result r) {
+		StructureValidator v = r.validator;
+
+		if (r.isValid()) {
+			out.printf("%s: %s\n", r.name, i18n("message:valid",
+					Long.toString(v.getEventCount())));
+			return;
+		}
+
+		if (r.error != null)
+			out.printf("%s: %s\n", r.name, i18n("message:syntax",
+					Long.toString(v.getEventCount()), r.error));
+
+		if (v.getProblemCount() > 0) {
+			out.printf("%s: %s\n", r.name, i18n("message:invalid",
+					Long.toString(v.getProblemCount()),
+					Long.toString(v.getEventCount())));
+
+			for (StructureValidator.Problem p : StructureValidator.Problem
+					.values()) {
+				if (v.getCount(p) > 0)
+					out.printf("    %s: %d\n", i18n("problem:" + p.name()),
+							v.getCount(p));
+			}
+
+			for (StructureValidator.Report report : v.getReports())
+				out.printf("    %s\n", i18n("message:report",
+						Long.toString(report.event),
+						i18n("problem:" + report.problem.name()), report.id));
+		}
+	}
+
+	private static final String[][] shortcuts = { { "#1", "--source=%s" } };
+
+	public static void main(String... args) {
+		Validate validate = new Validate();
+
+		ToolRunner runner = new ToolRunner(validate, args);
+		runner.addListener(validate);
+
+		try {
+			runner.start().waitEndOfExecution();
+		} catch (InterruptedException e) {
+			// Ignore
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.daemon;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Protocol between the daemon and its clients.
+ *
+ * The client sends a request header: magic number, protocol version, secret,
+ * name of the tool, working directory, count of args and args, all written
+ * with {@link java.io.DataOutputStream}. Then the standard input of the client
+ * follows as raw bytes, until the client shuts down its output.
+ *
+ * The daemon answers with frames. A frame is a type byte, then for
+ * {@link #OUT} and {@link #ERR} frames the length of the data and the data,
+ * for the {@link #EXIT} frame the exit status of the tool. The exit frame is
+ * the last one.
+ *
+ * The secret is a random string created by the daemon when it starts, in a
+ * file of the home directory that only its owner can read. Connections that
+ * do not send it are closed, so other users of the host can not run tools, and
+ * so read or write files, on behalf of the owner of the daemon.
+ */
+public final class DaemonProtocol {
+	public static final int MAGIC = 0x47535444;
+	public static final int VERSION = 2;
+
+	/**
+	 * Port used if none is given.
+	 */
+	public static final int DEFAULT_PORT = 4617;
+
+	/**
+	 * System property defining the port used by the client.
+	 */
+	public static final String PORT_PROPERTY = "gs.tool.daemon.port";
+
+	/**
+	 * Delay given to a client to send its request header, in milliseconds.
+	 */
+	public static final int HEADER_TIMEOUT = 10000;
+
+	public static final byte OUT = 1;
+	public static final byte ERR = 2;
+	public static final byte EXIT = 3;
+
+	public static final int EXIT_SUCCESS = 0;
+	public static final int EXIT_EXECUTION_FAILED = 1;
+	public static final int EXIT_INITIALIZATION_FAILED = 2;
+
+	private DaemonProtocol() {
+	}
+
+	/**
+	 * File holding the secret of the daemon listening on a port.
+	 */
+	public static File getSecretFile(int port) {
+		return new File(System.getProperty("user.home"), ".gs-tool-daemon."
+				+ port);
+	}
+
+	/**
+	 * Create a new secret and write it in a file readable by its owner only.
+	 * The previous file, if any, is replaced.
+	 *
+	 * @param file
+	 *            the secret file
+	 * @return the new secret
+	 * @throws IOException
+	 *             if the file can not be created or protected
+	 */
+	public static String createSecret(File file) throws IOException {
+		byte[] bytes = new byte[32];
+		new SecureRandom().nextBytes(bytes);
+
+		StringBuilder secret = new StringBuilder();
+
+		for (byte b : bytes)
+			secret.append(String.format("%02x", b & 0xFF));
+
+		if (file.exists() && !file.delete())
+			throw new IOException("can not replace " + file);
+
+		if (!file.createNewFile())
+			throw new IOException("can not create " + file);
+
+		//
+		// Permissions are restricted before the secret is written.
+		//
+		if (!protect(file)) {
+			file.delete();
+			throw new IOException("can not protect " + file);
+		}
+
+		Writer out = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+
+		try {
+			out.write(secret.toString());
+			out.write('\n');
+		} finally {
+			out.close();
+		}
+
+		return secret.toString();
+	}
+
+	/**
+	 * Make a file readable and writable by its owner only. Java 5 can not
+	 * change permissions, so the methods added to File by Java 6 are used
+	 * when they exist, and chmod otherwise.
+	 *
+	 * @return true if the permissions have been set
+	 */
+	protected static boolean protect(File file) {
+		Method readable, writable, executable;
+
+		try {
+			readable = File.class.getMethod("setReadable", boolean.class,
+					boolean.class);
+			writable = File.class.getMethod("setWritable", boolean.class,
+					boolean.class);
+			executable = File.class.getMethod("setExecutable", boolean.class,
+					boolean.class);
+		} catch (NoSuchMethodException e) {
+			try {
+				return Runtime.getRuntime().exec(
+						new String[] { "chmod", "600", file.getPath() })
+						.waitFor() == 0;
+			} catch (IOException e1) {
+				return false;
+			} catch (InterruptedException e1) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		return set(readable, file, false, false)
+				&& set(readable, file, true, true)
+				&& set(writable, file, false, false)
+				&& set(writable, file, true, true)
+				&& set(executable, file, false, false);
+	}
+
+	private static boolean set(Method m, File file, boolean allowed,
+			boolean ownerOnly) {
+		try {
+			return (Boolean) m.invoke(file, allowed, ownerOnly);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Read the secret of a daemon.
+	 *
+	 * @param file
+	 *            the secret file
+	 * @return the secret
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static String readSecret(File file) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+
+		try {
+			String secret = in.readLine();
+			return secret == null ? "" : secret.trim();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Compare two secrets in a time which does not depend on their content.
+	 */
+	public static boolean isSameSecret(String expected, String received)
+			throws IOException {
+		return MessageDigest.isEqual(expected.getBytes("UTF-8"),
+				received.getBytes("UTF-8"));
+	}
+
+	/**
+	 * An output stream sending data in frames of a given type. Many frame
+	 * streams can share the same underlying stream. Closing a frame stream
+	 * only flushes it, so the connection stays open when a sink closes its
+	 * output.
+	 */
+	public static class FrameOutputStream extends OutputStream {
+		protected final DataOutputStream out;
+		protected final byte type;
+
+		public FrameOutputStream(DataOutputStream out, byte type) {
+			this.out = out;
+			this.type = type;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.OutputStream#write(int)
+		 */
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.OutputStream#write(byte[], int, int)
+		 */
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return;
+
+			synchronized (out) {
+				out.writeByte(type);
+				out.writeInt(len);
+				out.write(b, off, len);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.OutputStream#flush()
+		 */
+		public void flush() throws IOException {
+			synchronized (out) {
+				out.flush();
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.OutputStream#close()
+		 */
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
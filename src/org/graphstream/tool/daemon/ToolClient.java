@@ -0,0 +1,257 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.graphstream.tool.Tool;
+import org.graphstream.tool.ToolExecutionException;
+import org.graphstream.tool.ToolInitializationException;
+import org.graphstream.tool.ToolRunner;
+
+/**
+ * Thin client of {@link ToolDaemon}. It sends the name of the tool, its args
+ * and the working directory to the daemon, forwards its standard input and
+ * prints what the daemon sends back on its standard and error outputs. The
+ * exit status of the client is the one of the tool.
+ *
+ * The client authenticates with the secret the daemon wrote in the home
+ * directory of its owner, see {@link DaemonProtocol}. If no daemon is
+ * listening or if its secret can not be read, the tool is executed in this
+ * JVM, so scripts using the client work in both cases.
+ *
+ * <pre>
+ * java org.graphstream.tool.daemon.ToolClient convert in.dgs out.gml
+ * </pre>
+ */
+public class ToolClient {
+	protected final int port;
+
+	public ToolClient(int port) {
+		this.port = port;
+	}
+
+	public ToolClient() {
+		this(Integer.getInteger(DaemonProtocol.PORT_PROPERTY,
+				DaemonProtocol.DEFAULT_PORT));
+	}
+
+	/**
+	 * Execute a tool on the daemon.
+	 *
+	 * @param toolName
+	 *            name of the tool
+	 * @param args
+	 *            args of the tool
+	 * @param in
+	 *            input forwarded to the tool
+	 * @param out
+	 *            receives the output of the tool
+	 * @param err
+	 *            receives the errors of the tool
+	 * @return the exit status of the tool
+	 * @throws ConnectException
+	 *             if no daemon is listening or if its secret can not be read
+	 * @throws IOException
+	 *             if the connection to the daemon fails
+	 */
+	public int execute(String toolName, String[] args, InputStream in,
+			OutputStream out, OutputStream err) throws IOException {
+		File secretFile = DaemonProtocol.getSecretFile(port);
+		String secret;
+
+		try {
+			secret = DaemonProtocol.readSecret(secretFile);
+		} catch (IOException e) {
+			throw new ConnectException(String.format("%s : %s", secretFile,
+					e.getMessage()));
+		}
+
+		Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+					socket.getOutputStream()));
+
+			dos.writeInt(DaemonProtocol.MAGIC);
+			dos.writeInt(DaemonProtocol.VERSION);
+			dos.writeUTF(secret);
+			dos.writeUTF(toolName);
+			dos.writeUTF(System.getProperty("user.dir"));
+			dos.writeInt(args.length);
+
+			for (String arg : args)
+				dos.writeUTF(arg);
+
+			dos.flush();
+
+			Thread pump = new Thread(new InputPump(in, socket, dos),
+					"tool-client-input");
+			pump.setDaemon(true);
+			pump.start();
+
+			return readFrames(new DataInputStream(new BufferedInputStream(
+					socket.getInputStream())), out, err);
+		} finally {
+			socket.close();
+		}
+	}
+
+	protected int readFrames(DataInputStream in, OutputStream out,
+			OutputStream err) throws IOException {
+		byte[] buffer = new byte[8192];
+
+		while (true) {
+			byte type;
+
+			try {
+				type = in.readByte();
+			} catch (EOFException e) {
+				return DaemonProtocol.EXIT_EXECUTION_FAILED;
+			}
+
+			if (type == DaemonProtocol.EXIT) {
+				out.flush();
+				err.flush();
+				return in.readInt();
+			}
+
+			OutputStream target = type == DaemonProtocol.ERR ? err : out;
+			int len = in.readInt();
+
+			while (len > 0) {
+				int r = in.read(buffer, 0, Math.min(len, buffer.length));
+
+				if (r < 0)
+					throw new EOFException();
+
+				target.write(buffer, 0, r);
+				len -= r;
+			}
+
+			if (type == DaemonProtocol.ERR || in.available() == 0)
+				target.flush();
+		}
+	}
+
+	/**
+	 * Forward the input to the daemon and shut down the output of the socket
+	 * when the input ends.
+	 */
+	private static class InputPump implements Runnable {
+		private final InputStream in;
+		private final Socket socket;
+		private final OutputStream out;
+
+		InputPump(InputStream in, Socket socket, OutputStream out) {
+			this.in = in;
+			this.socket = socket;
+			this.out = out;
+		}
+
+		public void run() {
+			byte[] buffer = new byte[8192];
+			int r;
+
+			try {
+				while ((r = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, r);
+					out.flush();
+				}
+
+				socket.shutdownOutput();
+			} catch (IOException e) {
+				// Tool has ended or connection is closed
+			}
+		}
+	}
+
+	/**
+	 * Run the tool in this JVM, used when no daemon is listening.
+	 */
+	protected static int executeLocally(String toolName, String[] args) {
+		Tool tool = ToolDaemon.createTool(toolName);
+
+		if (tool == null) {
+			System.err.printf("Unknown tool \"%s\".\n", toolName);
+			return DaemonProtocol.EXIT_INITIALIZATION_FAILED;
+		}
+
+		ToolRunner runner = new ToolRunner(tool, args);
+		runner.addListener(tool);
+
+		try {
+			runner.call();
+			return DaemonProtocol.EXIT_SUCCESS;
+		} catch (ToolInitializationException e) {
+			return DaemonProtocol.EXIT_INITIALIZATION_FAILED;
+		} catch (ToolExecutionException e) {
+			return DaemonProtocol.EXIT_EXECUTION_FAILED;
+		}
+	}
+
+	public static void main(String... args) {
+		if (args.length == 0) {
+			System.err.printf("usage: ToolClient tool [args...]\n");
+			System.exit(DaemonProtocol.EXIT_INITIALIZATION_FAILED);
+		}
+
+		String toolName = args[0];
+		String[] toolArgs = new String[args.length - 1];
+		System.arraycopy(args, 1, toolArgs, 0, toolArgs.length);
+
+		int status;
+
+		try {
+			status = new ToolClient().execute(toolName, toolArgs, System.in,
+					System.out, System.err);
+		} catch (ConnectException e) {
+			status = executeLocally(toolName, toolArgs);
+		} catch (IOException e) {
+			System.err.printf("%s.\n", e.getMessage());
+			status = DaemonProtocol.EXIT_EXECUTION_FAILED;
+		}
+
+		System.exit(status);
+	}
+}
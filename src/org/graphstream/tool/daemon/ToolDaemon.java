@@ -0,0 +1,383 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.daemon;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.graphstream.tool.Convert;
+import org.graphstream.tool.Diff;
+import org.graphstream.tool.Filter;
+import org.graphstream.tool.Fingerprint;
+import org.graphstream.tool.Generate;
+import org.graphstream.tool.Pipeline;
+import org.graphstream.tool.Sample;
+import org.graphstream.tool.Tool;
+import org.graphstream.tool.ToolCancelledException;
+import org.graphstream.tool.ToolExecutionException;
+import org.graphstream.tool.ToolExecutor;
+import org.graphstream.tool.ToolHelpException;
+import org.graphstream.tool.ToolInitializationException;
+import org.graphstream.tool.ToolOption;
+import org.graphstream.tool.ToolRunner;
+import org.graphstream.tool.Validate;
+
+/**
+ * A resident JVM running tools on behalf of {@link ToolClient}. Each call of a
+ * tool from the command line pays the start of a JVM, the loading of classes
+ * and i18n bundles and the warm-up of the JIT. For small graphs, this takes
+ * longer than the work itself. The daemon pays it once and then serves
+ * invocations received on a loopback socket.
+ *
+ * Each invocation gets a new instance of the tool, with its own input, output
+ * and error streams forwarded from and to the client, and relative paths
+ * resolved against the working directory of the client. Tools are executed by
+ * a {@link ToolExecutor}, so the amount of tools running at the same time is
+ * bounded. Only clients knowing the secret of the daemon are served, see
+ * {@link DaemonProtocol}.
+ *
+ * Tools opening windows, such as the player, are not served: their windows
+ * would belong to the daemon and not to the client.
+ */
+public class ToolDaemon extends Tool {
+	/**
+	 * Tools that can be invoked, by name.
+	 */
+	private static final LinkedHashMap<String, Class<? extends Tool>> tools = new LinkedHashMap<String, Class<? extends Tool>>();
+
+	static {
+		registerTool("convert", Convert.class);
+		registerTool("generate", Generate.class);
+		registerTool("pipe", Pipeline.class);
+		registerTool("filter", Filter.class);
+		registerTool("sample", Sample.class);
+		registerTool("validate", Validate.class);
+		registerTool("diff", Diff.class);
+		registerTool("fingerprint", Fingerprint.class);
+	}
+
+	/**
+	 * Make a tool available to clients.
+	 *
+	 * @param name
+	 *            name used by clients to invoke the tool
+	 * @param toolClass
+	 *            class of the tool, it needs a public constructor without
+	 *            argument
+	 */
+	public static synchronized void registerTool(String name,
+			Class<? extends Tool> toolClass) {
+		tools.put(name, toolClass);
+	}
+
+	/**
+	 * Create a new instance of a tool.
+	 *
+	 * @param name
+	 *            name of the tool
+	 * @return the tool, or null if no tool has this name
+	 */
+	public static synchronized Tool createTool(String name) {
+		Class<? extends Tool> toolClass = tools.get(name);
+
+		if (toolClass == null)
+			return null;
+
+		try {
+			return toolClass.newInstance();
+		} catch (InstantiationException e) {
+			throw new IllegalStateException(e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Names of the tools that can be invoked.
+	 */
+	public static synchronized String[] getToolNames() {
+		return tools.keySet().toArray(new String[tools.size()]);
+	}
+
+	/**
+	 * Delay between two checks of the cancellation while waiting for clients.
+	 */
+	protected static final int ACCEPT_TIMEOUT = 1000;
+
+	/**
+	 * Secret that clients have to send.
+	 */
+	protected String secret;
+
+	public ToolDaemon() {
+		super("daemon", null, false, false);
+
+		addOption("port", i18n("option:port"), true, ToolOption.OptionType.INT);
+		addOption("jobs", i18n("option:jobs"), true, ToolOption.OptionType.INT);
+
+		setShortcuts(shortcuts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.Tool#getDomain()
+	 */
+	public String getDomain() {
+		return "org.graphstream.tool.i18n.daemon";
+	}
+
+	public void run() throws ToolExecutionException {
+		int port = getIntOption("port", DaemonProtocol.DEFAULT_PORT);
+		int jobs = getIntOption("jobs", Runtime.getRuntime()
+				.availableProcessors());
+
+		ServerSocket server;
+
+		try {
+			server = new ServerSocket(port, 50,
+					InetAddress.getByName("127.0.0.1"));
+			server.setSoTimeout(ACCEPT_TIMEOUT);
+		} catch (IOException e) {
+			throw new ToolExecutionException(e, "%s",
+					i18n("error:listen", Integer.toString(port)));
+		}
+
+		File secretFile = DaemonProtocol.getSecretFile(port);
+
+		try {
+			secret = DaemonProtocol.createSecret(secretFile);
+		} catch (IOException e) {
+			try {
+				server.close();
+			} catch (IOException e2) {
+				// Ignore
+			}
+
+			throw new ToolExecutionException(e, "%s", i18n("error:secret",
+					secretFile.getPath()));
+		}
+
+		warmUp();
+
+		ToolExecutor executor = new ToolExecutor(Math.max(jobs, 1));
+		ExecutorService connections = Executors.newCachedThreadPool();
+
+		out.printf("%s\n", i18n("message:listening", Integer.toString(port)));
+
+		try {
+			while (true) {
+				checkCancelled();
+
+				try {
+					Socket socket = server.accept();
+					connections.execute(new Connection(socket, executor));
+				} catch (SocketTimeoutException e) {
+					// Check cancellation and wait again
+				}
+			}
+		} catch (ToolCancelledException e) {
+			// Stop serving
+		} catch (IOException e) {
+			throw new ToolExecutionException(e, "%s", i18n("exception:io"));
+		} finally {
+			try {
+				server.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+
+			connections.shutdown();
+			executor.shutdown();
+			secretFile.delete();
+		}
+	}
+
+	/**
+	 * Load classes and i18n bundles of the registered tools, so the first
+	 * invocations do not pay it.
+	 */
+	protected void warmUp() {
+		for (String name : getToolNames())
+			createTool(name);
+	}
+
+	/**
+	 * Serves one invocation.
+	 */
+	protected class Connection implements Runnable {
+		protected final Socket socket;
+		protected final ToolExecutor executor;
+
+		public Connection(Socket socket, ToolExecutor executor) {
+			this.socket = socket;
+			this.executor = executor;
+		}
+
+		public void run() {
+			try {
+				serve();
+			} catch (IOException e) {
+				err.printf("%s : %s\n", i18n("exception:io"), e.getMessage());
+			} finally {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// Ignore
+				}
+			}
+		}
+
+		protected void serve() throws IOException {
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			DataOutputStream dos = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+
+			socket.setSoTimeout(DaemonProtocol.HEADER_TIMEOUT);
+
+			if (in.readInt() != DaemonProtocol.MAGIC
+					|| in.readInt() != DaemonProtocol.VERSION)
+				return;
+
+			if (!DaemonProtocol.isSameSecret(secret, in.readUTF())) {
+				err.printf("%s.\n", i18n("error:rejected", socket
+						.getRemoteSocketAddress().toString()));
+				return;
+			}
+
+			String name = in.readUTF();
+			String cwd = in.readUTF();
+			String[] args = new String[in.readInt()];
+
+			for (int i = 0; i < args.length; i++)
+				args[i] = in.readUTF();
+
+			socket.setSoTimeout(0);
+
+			PrintStream toolOut = new PrintStream(
+					new DaemonProtocol.FrameOutputStream(dos,
+							DaemonProtocol.OUT), true);
+			PrintStream toolErr = new PrintStream(
+					new DaemonProtocol.FrameOutputStream(dos,
+							DaemonProtocol.ERR), true);
+			Writer output = new OutputStreamWriter(new BufferedOutputStream(
+					new DaemonProtocol.FrameOutputStream(dos,
+							DaemonProtocol.OUT)));
+
+			int status;
+			Tool tool = createTool(name);
+
+			if (tool == null) {
+				toolErr.printf("%s.\n", i18n("error:unknown_tool", name));
+				status = DaemonProtocol.EXIT_INITIALIZATION_FAILED;
+			} else {
+				tool.setOut(toolOut);
+				tool.setErr(toolErr);
+				tool.setWorkingDirectory(new File(cwd));
+				tool.setDefaultInput(new InputStreamReader(in));
+				tool.setDefaultOutput(output);
+
+				status = execute(tool, args);
+			}
+
+			try {
+				output.flush();
+			} catch (IOException e) {
+				// Output has been closed by the sink
+			}
+
+			toolOut.flush();
+			toolErr.flush();
+
+			synchronized (dos) {
+				dos.writeByte(DaemonProtocol.EXIT);
+				dos.writeInt(status);
+				dos.flush();
+			}
+		}
+
+		protected int execute(Tool tool, String[] args) {
+			Future<Tool> f = executor.submit(tool, args);
+
+			try {
+				f.get();
+				return DaemonProtocol.EXIT_SUCCESS;
+			} catch (InterruptedException e) {
+				f.cancel(true);
+				return DaemonProtocol.EXIT_EXECUTION_FAILED;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof ToolHelpException)
+					return DaemonProtocol.EXIT_SUCCESS;
+
+				tool.getErr().printf("%s.\n", cause.getMessage());
+
+				if (cause instanceof ToolInitializationException)
+					return DaemonProtocol.EXIT_INITIALIZATION_FAILED;
+
+				return DaemonProtocol.EXIT_EXECUTION_FAILED;
+			}
+		}
+	}
+
+	private static final String[][] shortcuts = { { "#1", "--port=%s" } };
+
+	public static void main(String... args) {
+		ToolDaemon daemon = new ToolDaemon();
+
+		ToolRunner runner = new ToolRunner(daemon, args);
+		runner.addListener(daemon);
+
+		try {
+			runner.start().waitEndOfExecution();
+		} catch (InterruptedException e) {
+			// Ignore
+		}
+	}
+}
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+
+import org.graphstream.stream.file.FileSinkImages;
+
+/**
+ * A {@link FileSinkImages} encoding its frames in background threads.
+ *
+ * Rendering a frame is fast compared to its encoding to PNG or JPG. Here, the
+ * frame is rendered on the stream thread as usual, then copied into a spare
+ * buffer and handed to a pool of encoders, so the stream goes on with the
+ * next step while the previous frames are written.
+ *
+ * The amount of buffers is bounded, so at most this amount of frames are
+ * waiting to be written. When all buffers are in use, the stream waits for an
+ * encoder to release one. Each frame keeps the file name given when it was
+ * rendered, so numbering is the same as with the synchronous sink.
+ * {@link #end()} waits for all frames to be written and reports the first
+ * error met by the encoders. With no encoder, frames are encoded on the
+ * stream thread, as done by {@link FileSinkImages}.
+ *
+ * When duplicates are elided, a frame identical to the previous one is not
+ * written at all. The frames are then listed in a manifest, named from the
+ * prefix followed by "frames.txt", with one line per frame giving the file
+ * holding its image. Frames are compared with a 64 bits hash of their pixels,
+ * and a frame with the hash of the previous one is compared pixel by pixel
+ * with a copy of it.
+ */
+public class AsyncFileSinkImages extends FileSinkImages {
+	/**
+	 * Amount of encoders, zero to encode frames on the stream thread.
+	 */
+	protected final int encoders;
+
+	/**
+	 * Maximum amount of frames rendered but not yet written.
+	 */
+	protected final int maxPendingFrames;
+
+	/**
+	 * Buffers which are not used by a pending frame.
+	 */
+	protected final LinkedBlockingQueue<BufferedImage> buffers;
+
+	/**
+	 * Amount of buffers created, free or not.
+	 */
+	protected int allocated;
+
+	/**
+	 * Threads encoding the frames, created with the first frame.
+	 */
+	protected ExecutorService executor;
+
+	/**
+	 * First error met by an encoder.
+	 */
+	protected volatile IOException failure;
+
+	/**
+	 * Prefix of the files, used to name the manifest.
+	 */
+	protected final String prefix;
+
+	/**
+	 * Flag indicating if frames identical to the previous one are elided.
+	 */
+	protected boolean elideDuplicates;
+
+	/**
+	 * Manifest of the frames, opened with the first frame when duplicates are
+	 * elided.
+	 */
+	protected PrintWriter manifest;
+
+	/**
+	 * Hash, file and copy of the last written frame.
+	 */
+	protected long lastHash;
+	protected String lastFile;
+	protected BufferedImage lastFrame;
+
+	/**
+	 * Amount of frames which have not been written since they were identical
+	 * to the previous one.
+	 */
+	protected int elided;
+
+	public AsyncFileSinkImages(String prefix, OutputType type,
+			Resolution resolution, OutputPolicy outputPolicy, int encoders) {
+		super(prefix, type, resolution, outputPolicy);
+
+		this.encoders = Math.max(encoders, 0);
+		this.maxPendingFrames = 2 * this.encoders;
+		this.buffers = new LinkedBlockingQueue<BufferedImage>();
+		this.allocated = 0;
+		this.executor = null;
+		this.failure = null;
+		this.prefix = prefix;
+		this.elideDuplicates = false;
+		this.manifest = null;
+		this.lastFile = null;
+		this.lastFrame = null;
+		this.elided = 0;
+	}
+
+	/**
+	 * Enable or disable the elision of frames identical to the previous one.
+	 */
+	public void setElideDuplicates(boolean on) {
+		elideDuplicates = on;
+	}
+
+	/**
+	 * Amount of frames elided since they were identical to the previous one.
+	 */
+	public int getElidedFrames() {
+		return elided;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.file.FileSinkImages#outputNewImage(java.lang.String
+	 * )
+	 */
+	public void outputNewImage(String filename) {
+		switch (layoutPolicy) {
+		case COMPUTED_IN_LAYOUT_RUNNER:
+			layoutPipeIn.pump();
+			break;
+		case COMPUTED_ONCE_AT_NEW_IMAGE:
+			if (layout != null)
+				layout.compute();
+			break;
+		case COMPUTED_FULLY_AT_NEW_IMAGE:
+			stabilizeLayout(layout.getStabilizationLimit());
+			break;
+		default:
+			break;
+		}
+
+		if (resolution.getWidth() != image.getWidth()
+				|| resolution.getHeight() != image.getHeight())
+			initImage();
+
+		if (clearImageBeforeOutput) {
+			for (int x = 0; x < resolution.getWidth(); x++)
+				for (int y = 0; y < resolution.getHeight(); y++)
+					image.setRGB(x, y, 0x00000000);
+		}
+
+		if (gg.getNodeCount() > 0) {
+			if (autofit) {
+				gg.computeBounds();
+
+				renderer.getCamera().setBounds(gg.getMinPos().x,
+						gg.getMinPos().y, gg.getMinPos().z, gg.getMaxPos().x,
+						gg.getMaxPos().y, gg.getMaxPos().z);
+			}
+
+			renderer.render(g2d, 0, 0, resolution.getWidth(),
+					resolution.getHeight());
+		}
+
+		for (PostRenderer action : postRenderers)
+			action.render(g2d);
+
+		image.flush();
+
+		if (failure != null)
+			return;
+
+		if (elideDuplicates) {
+			long hash = hash(image.getRaster());
+
+			if (lastFile != null && hash == lastHash
+					&& samePixels(image.getRaster(), lastFrame.getRaster())) {
+				elided++;
+				addToManifest(lastFile);
+				return;
+			}
+
+			lastHash = hash;
+			lastFile = filename;
+			lastFrame = compatibleBuffer(lastFrame);
+			image.copyData(lastFrame.getRaster());
+			addToManifest(filename);
+		}
+
+		if (encoders == 0) {
+			try {
+				write(image, outputType.name(), new File(filename));
+			} catch (IOException e) {
+				failure = e;
+			}
+
+			return;
+		}
+
+		BufferedImage frame = acquireBuffer();
+		image.copyData(frame.getRaster());
+
+		if (executor == null)
+			executor = Executors.newFixedThreadPool(encoders,
+					new EncoderThreadFactory());
+
+		executor.execute(new Encoder(frame, outputType.name(), new File(
+				filename)));
+	}
+
+	/**
+	 * Hash the pixels of a frame, row by row.
+	 */
+	protected static long hash(Raster raster) {
+		int width = raster.getWidth();
+		int height = raster.getHeight();
+		long h = 0xcbf29ce484222325L;
+		Object row = null;
+
+		h = (h ^ width) * 0x100000001b3L;
+		h = (h ^ height) * 0x100000001b3L;
+
+		for (int y = 0; y < height; y++) {
+			row = raster.getDataElements(raster.getMinX(),
+					raster.getMinY() + y, width, 1, row);
+
+			if (row instanceof int[]) {
+				int[] data = (int[]) row;
+
+				for (int i = 0; i < data.length; i++)
+					h = (h ^ data[i]) * 0x100000001b3L;
+			} else if (row instanceof byte[]) {
+				byte[] data = (byte[]) row;
+
+				for (int i = 0; i < data.length; i++)
+					h = (h ^ data[i]) * 0x100000001b3L;
+			} else if (row instanceof short[]) {
+				short[] data = (short[]) row;
+
+				for (int i = 0; i < data.length; i++)
+					h = (h ^ data[i]) * 0x100000001b3L;
+			}
+		}
+
+		return h;
+	}
+
+	/**
+	 * Compare the pixels of two frames, row by row.
+	 */
+	protected static boolean samePixels(Raster a, Raster b) {
+		int width = a.getWidth();
+		int height = a.getHeight();
+
+		if (width != b.getWidth() || height != b.getHeight()
+				|| a.getTransferType() != b.getTransferType())
+			return false;
+
+		Object rowA = null, rowB = null;
+
+		for (int y = 0; y < height; y++) {
+			rowA = a.getDataElements(a.getMinX(), a.getMinY() + y, width, 1,
+					rowA);
+			rowB = b.getDataElements(b.getMinX(), b.getMinY() + y, width, 1,
+					rowB);
+
+			if (rowA instanceof int[]) {
+				if (!Arrays.equals((int[]) rowA, (int[]) rowB))
+					return false;
+			} else if (rowA instanceof byte[]) {
+				if (!Arrays.equals((byte[]) rowA, (byte[]) rowB))
+					return false;
+			} else if (rowA instanceof short[]) {
+				if (!Arrays.equals((short[]) rowA, (short[]) rowB))
+					return false;
+			} else
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Add a line to the manifest, opening it if needed.
+	 */
+	protected void addToManifest(String filename) {
+		if (manifest == null) {
+			try {
+				manifest = new PrintWriter(new FileWriter(prefix
+						+ "frames.txt"));
+			} catch (IOException e) {
+				failure = e;
+				return;
+			}
+		}
+
+		manifest.println(filename);
+	}
+
+	/**
+	 * Get a buffer compatible with the current image. If all buffers are used
+	 * by pending frames, wait for one to be released.
+	 */
+	protected BufferedImage acquireBuffer() {
+		BufferedImage buffer = buffers.poll();
+
+		if (buffer == null) {
+			if (allocated < maxPendingFrames)
+				allocated++;
+			else {
+				try {
+					buffer = buffers.take();
+				} catch (InterruptedException e) {
+					//
+					// Do not lose the frame, go beyond the bound instead.
+					//
+					Thread.currentThread().interrupt();
+					allocated++;
+				}
+			}
+		}
+
+		return compatibleBuffer(buffer);
+	}
+
+	/**
+	 * Get a buffer compatible with the current image, the given one if it is
+	 * or a new one.
+	 */
+	protected BufferedImage compatibleBuffer(BufferedImage buffer) {
+		if (buffer == null || buffer.getWidth() != image.getWidth()
+				|| buffer.getHeight() != image.getHeight()
+				|| !buffer.getColorModel().equals(image.getColorModel())) {
+			ColorModel cm = image.getColorModel();
+
+			buffer = new BufferedImage(cm, cm.createCompatibleWritableRaster(
+					image.getWidth(), image.getHeight()),
+					cm.isAlphaPremultiplied(), null);
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Encode a frame to a file.
+	 */
+	protected static void write(BufferedImage frame, String format, File file)
+			throws IOException {
+		if (file.getParentFile() != null && !file.getParentFile().exists())
+			file.getParentFile().mkdirs();
+
+		if (!ImageIO.write(frame, format, file))
+			throw new IOException(String.format("no writer for format %s",
+					format));
+	}
+
+	/**
+	 * Wait for all pending frames to be written.
+	 *
+	 * @throws IOException
+	 *             if an encoder has failed to write a frame
+	 */
+	public void waitPendingFrames() throws IOException {
+		ArrayList<BufferedImage> released = new ArrayList<BufferedImage>(
+				allocated);
+		boolean interrupted = false;
+
+		//
+		// All frames are written when all buffers have been released.
+		//
+		while (released.size() < allocated) {
+			try {
+				released.add(buffers.take());
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+
+		buffers.addAll(released);
+
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		if (failure != null) {
+			IOException e = failure;
+			failure = null;
+
+			throw e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSinkBase#end()
+	 */
+	public void end() throws IOException {
+		try {
+			waitPendingFrames();
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+				executor = null;
+			}
+
+			if (manifest != null) {
+				manifest.close();
+				manifest = null;
+			}
+
+			lastFile = null;
+			lastFrame = null;
+
+			super.end();
+		}
+	}
+
+	/**
+	 * Write one frame and release its buffer.
+	 */
+	protected class Encoder implements Runnable {
+		protected final BufferedImage frame;
+		protected final String format;
+		protected final File file;
+
+		public Encoder(BufferedImage frame, String format, File file) {
+			this.frame = frame;
+			this.format = format;
+			this.file = file;
+		}
+
+		public void run() {
+			try {
+				write(frame, format, file);
+			} catch (IOException e) {
+				if (failure == null)
+					failure = e;
+			} finally {
+				buffers.offer(frame);
+			}
+		}
+	}
+
+	/**
+	 * Encoders do not prevent the JVM from exiting.
+	 */
+	private static class EncoderThreadFactory implements ThreadFactory {
+		private int count = 0;
+
+		public synchronized Thread newThread(Runnable r) {
+			Thread t = new Thread(r, String.format("images-encoder-%d",
+					count++));
+			t.setDaemon(true);
+
+			return t;
+		}
+	}
+}
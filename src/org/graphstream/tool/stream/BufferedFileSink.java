@@ -0,0 +1,458 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.SinkAdapter;
+import org.graphstream.stream.file.FileSink;
+
+/**
+ * Base of sinks writing one line per node or edge, with a reusable buffer and
+ * without formatting strings.
+ *
+ * Lines are written into a char buffer, which is given to the output only when
+ * it is full. Integer numbers are formatted digit by digit in this buffer.
+ * Other numbers are written with their usual string form so they can be read
+ * back without loss.
+ *
+ * Attributes of an element are usually sent just after it is added. So the
+ * last added element is written only when an event about another element is
+ * received, with the values of the attributes given as columns. Later changes
+ * of these attributes are not written.
+ */
+public abstract class BufferedFileSink extends SinkAdapter implements FileSink {
+	/**
+	 * Size of the buffer.
+	 */
+	public static final int BUFFER_SIZE = 1 << 14;
+
+	/**
+	 * Output of the current export.
+	 */
+	protected Writer output;
+
+	/**
+	 * Buffer of the chars not yet given to the output.
+	 */
+	protected final char[] buffer;
+	protected int length;
+
+	/**
+	 * Used to format integer numbers.
+	 */
+	protected final char[] digits;
+
+	/**
+	 * Index of the attributes written as columns.
+	 */
+	protected final HashMap<String, Integer> columns;
+
+	/**
+	 * Element added last, not written yet.
+	 */
+	protected String pendingId;
+	protected String pendingFrom, pendingTo;
+	protected boolean pendingDirected;
+	protected boolean pendingEdge;
+	protected final Object[] pendingValues;
+
+	/**
+	 * First error met while writing, reported by {@link #end()}.
+	 */
+	protected IOException failure;
+
+	/**
+	 * Create a sink.
+	 *
+	 * @param attributes
+	 *            attributes written as columns, can be empty
+	 */
+	protected BufferedFileSink(String... attributes) {
+		buffer = new char[BUFFER_SIZE];
+		digits = new char[20];
+		columns = new HashMap<String, Integer>();
+		pendingValues = new Object[attributes.length];
+
+		for (int i = 0; i < attributes.length; i++)
+			columns.put(attributes[i], i);
+	}
+
+	/**
+	 * Called when the export begins.
+	 */
+	protected abstract void writeHeader() throws IOException;
+
+	/**
+	 * Write an added node.
+	 *
+	 * @param values
+	 *            values of the columns, null if not set
+	 */
+	protected abstract void writeNode(String id, Object[] values)
+			throws IOException;
+
+	/**
+	 * Write an added edge.
+	 *
+	 * @param values
+	 *            values of the columns, null if not set
+	 */
+	protected abstract void writeEdge(String id, String from, String to,
+			boolean directed, Object[] values) throws IOException;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.lang.String)
+	 */
+	public void begin(String fileName) throws IOException {
+		begin(new FileOutputStream(fileName));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.io.OutputStream)
+	 */
+	public void begin(OutputStream stream) throws IOException {
+		begin(new OutputStreamWriter(stream, "UTF-8"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.io.Writer)
+	 */
+	public void begin(Writer writer) throws IOException {
+		if (output != null)
+			throw new IOException(
+					"cannot call begin() twice without calling end() before");
+
+		output = writer;
+		length = 0;
+		pendingId = null;
+		failure = null;
+
+		writeHeader();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#flush()
+	 */
+	public void flush() throws IOException {
+		if (output == null)
+			return;
+
+		output.write(buffer, 0, length);
+		output.flush();
+		length = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#end()
+	 */
+	public void end() throws IOException {
+		if (output == null)
+			return;
+
+		try {
+			writePending();
+
+			if (failure != null)
+				throw failure;
+
+			flush();
+		} finally {
+			output.close();
+			output = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.lang.String)
+	 */
+	public void writeAll(Graph graph, String fileName) throws IOException {
+		begin(fileName);
+		replay(graph);
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.io.OutputStream)
+	 */
+	public void writeAll(Graph graph, OutputStream stream) throws IOException {
+		begin(stream);
+		replay(graph);
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.io.Writer)
+	 */
+	public void writeAll(Graph graph, Writer writer) throws IOException {
+		begin(writer);
+		replay(graph);
+		end();
+	}
+
+	protected void replay(Graph graph) {
+		String id = graph.getId();
+
+		for (Node n : graph.getEachNode()) {
+			nodeAdded(id, 0, n.getId());
+
+			for (String key : columns.keySet())
+				if (n.hasAttribute(key))
+					nodeAttributeAdded(id, 0, n.getId(), key,
+							n.getAttribute(key));
+		}
+
+		for (Edge e : graph.getEachEdge()) {
+			edgeAdded(id, 0, e.getId(), e.getNode0().getId(), e.getNode1()
+					.getId(), e.isDirected());
+
+			for (String key : columns.keySet())
+				if (e.hasAttribute(key))
+					edgeAttributeAdded(id, 0, e.getId(), key,
+							e.getAttribute(key));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAdded(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		writePending();
+
+		pendingId = nodeId;
+		pendingEdge = false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		writePending();
+
+		pendingId = edgeId;
+		pendingFrom = fromNodeId;
+		pendingTo = toNodeId;
+		pendingDirected = directed;
+		pendingEdge = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		setPendingValue(false, nodeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		setPendingValue(false, nodeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		setPendingValue(true, edgeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		setPendingValue(true, edgeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#stepBegins(java.lang.String,
+	 * long, double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		writePending();
+	}
+
+	protected void setPendingValue(boolean edge, String id, String attribute,
+			Object value) {
+		if (pendingId == null || pendingEdge != edge || !pendingId.equals(id)) {
+			writePending();
+			return;
+		}
+
+		Integer column = columns.get(attribute);
+
+		if (column != null)
+			pendingValues[column] = value;
+	}
+
+	/**
+	 * Write the element added last, if any.
+	 */
+	protected void writePending() {
+		if (pendingId == null)
+			return;
+
+		try {
+			if (pendingEdge)
+				writeEdge(pendingId, pendingFrom, pendingTo, pendingDirected,
+						pendingValues);
+			else
+				writeNode(pendingId, pendingValues);
+		} catch (IOException e) {
+			if (failure == null)
+				failure = e;
+		}
+
+		pendingId = null;
+		pendingFrom = null;
+		pendingTo = null;
+		Arrays.fill(pendingValues, null);
+	}
+
+	protected void write(char c) throws IOException {
+		if (length == buffer.length) {
+			output.write(buffer, 0, length);
+			length = 0;
+		}
+
+		buffer[length++] = c;
+	}
+
+	protected void write(String s) throws IOException {
+		int n = s.length();
+
+		for (int i = 0; i < n; i++) {
+			if (length == buffer.length) {
+				output.write(buffer, 0, length);
+				length = 0;
+			}
+
+			buffer[length++] = s.charAt(i);
+		}
+	}
+
+	protected void write(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			write(Long.toString(value));
+			return;
+		}
+
+		if (value < 0) {
+			write('-');
+			value = -value;
+		}
+
+		int n = digits.length;
+
+		do {
+			digits[--n] = (char) ('0' + (value % 10));
+			value /= 10;
+		} while (value > 0);
+
+		while (n < digits.length)
+			write(digits[n++]);
+	}
+
+	/**
+	 * Write a number, integers being formatted without creating strings.
+	 */
+	protected void write(Number value) throws IOException {
+		if (value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte)
+			write(value.longValue());
+		else {
+			double d = value.doubleValue();
+
+			if (d == Math.rint(d) && Math.abs(d) < 1e15)
+				write((long) d);
+			else
+				write(value.toString());
+		}
+	}
+}
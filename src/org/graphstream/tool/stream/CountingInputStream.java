@@ -0,0 +1,127 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream counting the bytes read through it. The count can be read
+ * from any thread, for example to report the progress of a parser.
+ */
+public class CountingInputStream extends FilterInputStream {
+	/**
+	 * Count of bytes read.
+	 */
+	protected volatile long count;
+
+	/**
+	 * Position saved by {@link #mark(int)}.
+	 */
+	protected long mark;
+
+	public CountingInputStream(InputStream in) {
+		super(in);
+		this.count = 0;
+		this.mark = 0;
+	}
+
+	/**
+	 * Count of bytes read since the creation of the stream.
+	 *
+	 * @return bytes count
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.FilterInputStream#read()
+	 */
+	public int read() throws IOException {
+		int r = in.read();
+
+		if (r >= 0)
+			count++;
+
+		return r;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.FilterInputStream#read(byte[], int, int)
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		int r = in.read(b, off, len);
+
+		if (r > 0)
+			count += r;
+
+		return r;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.FilterInputStream#skip(long)
+	 */
+	public long skip(long n) throws IOException {
+		long r = in.skip(n);
+		count += r;
+
+		return r;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.FilterInputStream#mark(int)
+	 */
+	public synchronized void mark(int readlimit) {
+		in.mark(readlimit);
+		mark = count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.FilterInputStream#reset()
+	 */
+	public synchronized void reset() throws IOException {
+		in.reset();
+		count = mark;
+	}
+}
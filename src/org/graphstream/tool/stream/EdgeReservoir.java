@@ -0,0 +1,365 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.graphstream.stream.PipeBase;
+
+/**
+ * A stage keeping a uniform random sample of the edges of the stream, using
+ * reservoir sampling. Each edge added has the same probability to be in the
+ * sample, whatever the length of the stream, and memory is bounded by the
+ * size of the sample.
+ *
+ * The sample is only known at the end of the stream, so nothing is sent
+ * before {@link #flush()} is called. Then, the nodes of the sampled edges and
+ * the edges with their last attributes are sent, in one static graph. Graph
+ * attributes are forwarded as they are received. Edges removed from the
+ * stream, explicitly or with one of their nodes, leave the sample.
+ */
+public class EdgeReservoir extends PipeBase {
+	/**
+	 * Identifier used when sending events.
+	 */
+	protected final String id;
+
+	/**
+	 * Time id of the last sent event.
+	 */
+	protected long timeId;
+
+	/**
+	 * Maximum size of the sample.
+	 */
+	protected final int size;
+
+	/**
+	 * Count of edges added since the beginning of the stream.
+	 */
+	protected long seen;
+
+	/**
+	 * The sampled edges.
+	 */
+	protected final ArrayList<SampledEdge> reservoir;
+
+	/**
+	 * Position of sampled edges in the reservoir.
+	 */
+	protected final HashMap<String, Integer> index;
+
+	/**
+	 * Ids of the sampled edges of each node of the sample.
+	 */
+	protected final HashMap<String, HashSet<String>> incident;
+
+	protected final Random random;
+
+	public EdgeReservoir(int size) {
+		this("reservoir", size, new Random());
+	}
+
+	public EdgeReservoir(String id, int size, Random random) {
+		if (size < 1)
+			throw new IllegalArgumentException("size < 1");
+
+		this.id = id;
+		this.timeId = 0;
+		this.size = size;
+		this.seen = 0;
+		this.reservoir = new ArrayList<SampledEdge>(size);
+		this.index = new HashMap<String, Integer>();
+		this.incident = new HashMap<String, HashSet<String>>();
+		this.random = random;
+	}
+
+	/**
+	 * Send the sampled edges and their nodes.
+	 */
+	public void flush() {
+		HashSet<String> nodes = new HashSet<String>();
+
+		for (SampledEdge e : reservoir) {
+			if (nodes.add(e.from))
+				sendNodeAdded(id, timeId++, e.from);
+			if (nodes.add(e.to))
+				sendNodeAdded(id, timeId++, e.to);
+
+			sendEdgeAdded(id, timeId++, e.id, e.from, e.to, e.directed);
+
+			for (Map.Entry<String, Object> a : e.attributes.entrySet())
+				sendEdgeAttributeAdded(id, timeId++, e.id, a.getKey(),
+						a.getValue());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#graphCleared(java.lang.String, long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		reservoir.clear();
+		index.clear();
+		incident.clear();
+		sendGraphCleared(id, this.timeId++);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#stepBegins(java.lang.String, long,
+	 * double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		// The sample is static
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAdded(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		// Nodes are sent with the sampled edges
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		//
+		// Edges of the node are removed with it.
+		//
+		HashSet<String> edges = incident.get(nodeId);
+
+		if (edges != null) {
+			for (String edgeId : edges.toArray(new String[edges.size()]))
+				remove(edgeId);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAdded(java.lang.String, long,
+	 * java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		seen++;
+
+		if (reservoir.size() < size) {
+			index.put(edgeId, reservoir.size());
+			reservoir.add(new SampledEdge(edgeId, fromNodeId, toNodeId,
+					directed));
+			attach(reservoir.get(reservoir.size() - 1));
+		} else {
+			long j = (long) (random.nextDouble() * seen);
+
+			if (j < size) {
+				SampledEdge e = new SampledEdge(edgeId, fromNodeId, toNodeId,
+						directed);
+
+				detach(reservoir.get((int) j));
+				index.remove(reservoir.get((int) j).id);
+				index.put(edgeId, (int) j);
+				reservoir.set((int) j, e);
+				attach(e);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		remove(edgeId);
+	}
+
+	/**
+	 * Remove an edge from the sample, if it is sampled.
+	 */
+	protected void remove(String edgeId) {
+		Integer i = index.remove(edgeId);
+
+		if (i != null) {
+			detach(reservoir.get(i));
+
+			SampledEdge last = reservoir.remove(reservoir.size() - 1);
+
+			if (i < reservoir.size()) {
+				reservoir.set(i, last);
+				index.put(last.id, i);
+			}
+		}
+	}
+
+	protected void attach(SampledEdge e) {
+		attach(e.from, e.id);
+		attach(e.to, e.id);
+	}
+
+	protected void attach(String nodeId, String edgeId) {
+		HashSet<String> edges = incident.get(nodeId);
+
+		if (edges == null) {
+			edges = new HashSet<String>();
+			incident.put(nodeId, edges);
+		}
+
+		edges.add(edgeId);
+	}
+
+	protected void detach(SampledEdge e) {
+		detach(e.from, e.id);
+		detach(e.to, e.id);
+	}
+
+	protected void detach(String nodeId, String edgeId) {
+		HashSet<String> edges = incident.get(nodeId);
+
+		if (edges != null) {
+			edges.remove(edgeId);
+
+			if (edges.isEmpty())
+				incident.remove(nodeId);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		// Node attributes are not sampled
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		// Node attributes are not sampled
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		// Node attributes are not sampled
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		Integer i = index.get(edgeId);
+
+		if (i != null)
+			reservoir.get(i).attributes.put(attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		edgeAttributeAdded(sourceId, timeId, edgeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		Integer i = index.get(edgeId);
+
+		if (i != null)
+			reservoir.get(i).attributes.remove(attribute);
+	}
+
+	protected static class SampledEdge {
+		final String id;
+		final String from;
+		final String to;
+		final boolean directed;
+		final LinkedHashMap<String, Object> attributes;
+
+		SampledEdge(String id, String from, String to, boolean directed) {
+			this.id = id;
+			this.from = from;
+			this.to = to;
+			this.directed = directed;
+			this.attributes = new LinkedHashMap<String, Object>();
+		}
+	}
+}
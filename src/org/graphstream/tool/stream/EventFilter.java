@@ -0,0 +1,637 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.graphstream.stream.PipeBase;
+
+/**
+ * A stage forwarding only a part of the events it receives. The filter is
+ * streaming: it only keeps the ids of the edges dropped because of one of
+ * their nodes, until these edges or nodes are removed, so a trace of any size
+ * can be reduced without being loaded into a graph.
+ *
+ * Events can be filtered on:
+ * <ul>
+ * <li>the id of elements, nodes and edges whose id does not match the
+ * patterns are dropped with their attributes, and so are the edges of dropped
+ * nodes;</li>
+ * <li>the key of attributes, with a pattern of attributes to keep, a pattern
+ * of attributes to drop, or by stripping all attributes;</li>
+ * <li>the value of attributes, with a predicate like "weight&gt;0.5". When an
+ * attribute gets a value that does not match anymore, it is removed;</li>
+ * <li>the step, only attributes changed in a step range are kept. Structural
+ * events before the range are still forwarded so elements of the range
+ * exist, and all events after the range are dropped.</li>
+ * </ul>
+ */
+public class EventFilter extends PipeBase {
+	/**
+	 * Nodes whose id does not match are dropped, null to keep all.
+	 */
+	protected Pattern nodes;
+
+	/**
+	 * Edges whose id does not match are dropped, null to keep all.
+	 */
+	protected Pattern edges;
+
+	/**
+	 * Attributes whose key does not match are dropped, null to keep all.
+	 */
+	protected Pattern keptAttributes;
+
+	/**
+	 * Attributes whose key matches are dropped, null to drop none.
+	 */
+	protected Pattern droppedAttributes;
+
+	/**
+	 * Drop all attributes.
+	 */
+	protected boolean strip;
+
+	/**
+	 * Predicate on the values of attributes, null if none.
+	 */
+	protected AttributePredicate where;
+
+	/**
+	 * Range of steps in which attributes are forwarded.
+	 */
+	protected double fromStep, toStep;
+
+	/**
+	 * The last step received.
+	 */
+	protected double currentStep;
+
+	/**
+	 * Edges dropped because one of their nodes has been dropped, with their
+	 * nodes.
+	 */
+	protected final HashMap<String, String[]> droppedEdges;
+
+	/**
+	 * Dropped edges of each dropped node.
+	 */
+	protected final HashMap<String, HashSet<String>> droppedByNode;
+
+	public EventFilter() {
+		this.nodes = null;
+		this.edges = null;
+		this.keptAttributes = null;
+		this.droppedAttributes = null;
+		this.strip = false;
+		this.where = null;
+		this.fromStep = Double.NEGATIVE_INFINITY;
+		this.toStep = Double.POSITIVE_INFINITY;
+		this.currentStep = Double.NaN;
+		this.droppedEdges = new HashMap<String, String[]>();
+		this.droppedByNode = new HashMap<String, HashSet<String>>();
+	}
+
+	/**
+	 * Keep only nodes whose id matches a pattern.
+	 *
+	 * @param regex
+	 *            the pattern, or null to keep all nodes
+	 */
+	public EventFilter setNodes(String regex) {
+		nodes = regex == null ? null : Pattern.compile(regex);
+		return this;
+	}
+
+	/**
+	 * Keep only edges whose id matches a pattern.
+	 *
+	 * @param regex
+	 *            the pattern, or null to keep all edges
+	 */
+	public EventFilter setEdges(String regex) {
+		edges = regex == null ? null : Pattern.compile(regex);
+		return this;
+	}
+
+	/**
+	 * Keep only attributes whose key matches a pattern.
+	 *
+	 * @param regex
+	 *            the pattern, or null to keep all attributes
+	 */
+	public EventFilter setKeptAttributes(String regex) {
+		keptAttributes = regex == null ? null : Pattern.compile(regex);
+		return this;
+	}
+
+	/**
+	 * Drop attributes whose key matches a pattern.
+	 *
+	 * @param regex
+	 *            the pattern, or null to drop no attribute
+	 */
+	public EventFilter setDroppedAttributes(String regex) {
+		droppedAttributes = regex == null ? null : Pattern.compile(regex);
+		return this;
+	}
+
+	/**
+	 * Drop all attributes.
+	 */
+	public EventFilter setStrip(boolean strip) {
+		this.strip = strip;
+		return this;
+	}
+
+	/**
+	 * Keep only attribute values matching a predicate.
+	 *
+	 * @param predicate
+	 *            the predicate, see {@link AttributePredicate#parse(String)},
+	 *            or null to keep all values
+	 */
+	public EventFilter setWhere(String predicate) {
+		where = predicate == null ? null : AttributePredicate.parse(predicate);
+		return this;
+	}
+
+	/**
+	 * Set the range of steps in which attribute events are forwarded.
+	 *
+	 * @param from
+	 *            first step of the range
+	 * @param to
+	 *            last step of the range
+	 */
+	public EventFilter setStepRange(double from, double to) {
+		this.fromStep = from;
+		this.toStep = to;
+		return this;
+	}
+
+	protected boolean beforeRange() {
+		return !Double.isNaN(currentStep) && currentStep < fromStep;
+	}
+
+	protected boolean afterRange() {
+		return !Double.isNaN(currentStep) && currentStep > toStep;
+	}
+
+	protected boolean acceptNode(String nodeId) {
+		return nodes == null || nodes.matcher(nodeId).matches();
+	}
+
+	protected boolean acceptEdge(String edgeId) {
+		return (edges == null || edges.matcher(edgeId).matches())
+				&& !droppedEdges.containsKey(edgeId);
+	}
+
+	/**
+	 * Remember an edge dropped because of one of its nodes.
+	 */
+	protected void dropEdge(String edgeId, String fromNodeId, String toNodeId) {
+		forgetEdge(edgeId);
+		droppedEdges.put(edgeId, new String[] { fromNodeId, toNodeId });
+
+		for (String nodeId : droppedEdges.get(edgeId)) {
+			if (acceptNode(nodeId))
+				continue;
+
+			HashSet<String> dropped = droppedByNode.get(nodeId);
+
+			if (dropped == null) {
+				dropped = new HashSet<String>();
+				droppedByNode.put(nodeId, dropped);
+			}
+
+			dropped.add(edgeId);
+		}
+	}
+
+	/**
+	 * Forget an edge dropped because of one of its nodes.
+	 *
+	 * @return false if the edge was not dropped because of its nodes
+	 */
+	protected boolean forgetEdge(String edgeId) {
+		String[] ends = droppedEdges.remove(edgeId);
+
+		if (ends == null)
+			return false;
+
+		for (String nodeId : ends) {
+			HashSet<String> dropped = droppedByNode.get(nodeId);
+
+			if (dropped != null) {
+				dropped.remove(edgeId);
+
+				if (dropped.isEmpty())
+					droppedByNode.remove(nodeId);
+			}
+		}
+
+		return true;
+	}
+
+	protected boolean acceptKey(String key) {
+		if (strip || beforeRange() || afterRange())
+			return false;
+
+		if (keptAttributes != null && !keptAttributes.matcher(key).matches())
+			return false;
+
+		return droppedAttributes == null
+				|| !droppedAttributes.matcher(key).matches();
+	}
+
+	protected boolean acceptValue(String key, Object value) {
+		return where == null || !where.key.equals(key) || where.test(value);
+	}
+
+	/**
+	 * Check if the value an attribute had before a change was accepted.
+	 * Sources such as DGS do not give this value. It is then considered as
+	 * accepted, so a change to a value which does not match removes the
+	 * attribute downstream, whatever it was.
+	 */
+	protected boolean acceptOldValue(String key, Object oldValue) {
+		return oldValue == null || acceptValue(key, oldValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#stepBegins(java.lang.String, long,
+	 * double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		currentStep = step;
+
+		if (!beforeRange() && !afterRange())
+			sendStepBegins(sourceId, timeId, step);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#graphCleared(java.lang.String, long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		droppedEdges.clear();
+		droppedByNode.clear();
+
+		if (!afterRange())
+			sendGraphCleared(sourceId, timeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAdded(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		if (!afterRange() && acceptNode(nodeId))
+			sendNodeAdded(sourceId, timeId, nodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		if (!acceptNode(nodeId)) {
+			//
+			// Edges are removed with their nodes, without their own event.
+			//
+			HashSet<String> dropped = droppedByNode.get(nodeId);
+
+			if (dropped != null) {
+				for (String edgeId : dropped.toArray(new String[dropped
+						.size()]))
+					forgetEdge(edgeId);
+			}
+		} else if (!afterRange())
+			sendNodeRemoved(sourceId, timeId, nodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAdded(java.lang.String, long,
+	 * java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (!acceptNode(fromNodeId) || !acceptNode(toNodeId)) {
+			dropEdge(edgeId, fromNodeId, toNodeId);
+			return;
+		}
+
+		//
+		// The id may have been used by an edge removed with its node.
+		//
+		forgetEdge(edgeId);
+
+		if (!afterRange() && acceptEdge(edgeId))
+			sendEdgeAdded(sourceId, timeId, edgeId, fromNodeId, toNodeId,
+					directed);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		if (forgetEdge(edgeId))
+			return;
+
+		if (!afterRange() && acceptEdge(edgeId))
+			sendEdgeRemoved(sourceId, timeId, edgeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#graphAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.Object)
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		if (acceptKey(attribute) && acceptValue(attribute, value))
+			sendGraphAttributeAdded(sourceId, timeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#graphAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.Object, java.lang.Object)
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		if (!acceptKey(attribute))
+			return;
+
+		boolean before = acceptOldValue(attribute, oldValue);
+		boolean after = acceptValue(attribute, newValue);
+
+		if (before && after)
+			sendGraphAttributeChanged(sourceId, timeId, attribute, oldValue,
+					newValue);
+		else if (before)
+			sendGraphAttributeRemoved(sourceId, timeId, attribute);
+		else if (after)
+			sendGraphAttributeAdded(sourceId, timeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#graphAttributeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		if (acceptKey(attribute))
+			sendGraphAttributeRemoved(sourceId, timeId, attribute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		if (acceptNode(nodeId) && acceptKey(attribute)
+				&& acceptValue(attribute, value))
+			sendNodeAttributeAdded(sourceId, timeId, nodeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		if (!acceptNode(nodeId) || !acceptKey(attribute))
+			return;
+
+		boolean before = acceptOldValue(attribute, oldValue);
+		boolean after = acceptValue(attribute, newValue);
+
+		if (before && after)
+			sendNodeAttributeChanged(sourceId, timeId, nodeId, attribute,
+					oldValue, newValue);
+		else if (before)
+			sendNodeAttributeRemoved(sourceId, timeId, nodeId, attribute);
+		else if (after)
+			sendNodeAttributeAdded(sourceId, timeId, nodeId, attribute,
+					newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		if (acceptNode(nodeId) && acceptKey(attribute))
+			sendNodeAttributeRemoved(sourceId, timeId, nodeId, attribute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		if (acceptEdge(edgeId) && acceptKey(attribute)
+				&& acceptValue(attribute, value))
+			sendEdgeAttributeAdded(sourceId, timeId, edgeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		if (!acceptEdge(edgeId) || !acceptKey(attribute))
+			return;
+
+		boolean before = acceptOldValue(attribute, oldValue);
+		boolean after = acceptValue(attribute, newValue);
+
+		if (before && after)
+			sendEdgeAttributeChanged(sourceId, timeId, edgeId, attribute,
+					oldValue, newValue);
+		else if (before)
+			sendEdgeAttributeRemoved(sourceId, timeId, edgeId, attribute);
+		else if (after)
+			sendEdgeAttributeAdded(sourceId, timeId, edgeId, attribute,
+					newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		if (acceptEdge(edgeId) && acceptKey(attribute))
+			sendEdgeAttributeRemoved(sourceId, timeId, edgeId, attribute);
+	}
+
+	/**
+	 * A predicate on the value of an attribute, like "weight&gt;=0.5". The
+	 * operators are =, !=, &lt;, &lt;=, &gt;, &gt;= and ~ which matches the
+	 * value against a regular expression. Values are compared as numbers
+	 * when both sides are numbers, as strings otherwise.
+	 */
+	public static class AttributePredicate {
+		private static final Pattern SYNTAX = Pattern
+				.compile("^\\s*([^<>=!~\\s]+)\\s*(!=|<=|>=|=|<|>|~)\\s*(.*?)\\s*$");
+
+		protected final String key;
+		protected final String operator;
+		protected final String operand;
+		protected final double number;
+		protected final Pattern regex;
+
+		public AttributePredicate(String key, String operator, String operand) {
+			this.key = key;
+			this.operator = operator;
+			this.operand = operand;
+			this.number = toNumber(operand);
+			this.regex = operator.equals("~") ? Pattern.compile(operand) : null;
+		}
+
+		/**
+		 * Parse a predicate.
+		 *
+		 * @param predicate
+		 *            the predicate, like "weight&gt;0.5" or "label~foo.*"
+		 * @return the predicate
+		 * @throws IllegalArgumentException
+		 *             if the predicate is not valid
+		 */
+		public static AttributePredicate parse(String predicate)
+				throws IllegalArgumentException {
+			Matcher m = SYNTAX.matcher(predicate);
+
+			if (!m.matches())
+				throw new IllegalArgumentException(predicate);
+
+			return new AttributePredicate(m.group(1), m.group(2), m.group(3));
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Test a value.
+		 *
+		 * @param value
+		 *            the value of the attribute
+		 * @return true if the value matches the predicate
+		 */
+		public boolean test(Object value) {
+			if (value instanceof Object[] && ((Object[]) value).length == 1)
+				value = ((Object[]) value)[0];
+
+			String str = value == null ? "" : value.toString();
+
+			if (regex != null)
+				return regex.matcher(str).matches();
+
+			double v = value instanceof Number ? ((Number) value)
+					.doubleValue() : toNumber(str);
+			int cmp;
+
+			if (!Double.isNaN(v) && !Double.isNaN(number))
+				cmp = Double.compare(v, number);
+			else
+				cmp = str.compareTo(operand);
+
+			if (operator.equals("="))
+				return cmp == 0;
+			if (operator.equals("!="))
+				return cmp != 0;
+			if (operator.equals("<"))
+				return cmp < 0;
+			if (operator.equals("<="))
+				return cmp <= 0;
+			if (operator.equals(">"))
+				return cmp > 0;
+
+			return cmp >= 0;
+		}
+
+		private static double toNumber(String s) {
+			try {
+				return Double.parseDouble(s);
+			} catch (NumberFormatException e) {
+				return Double.NaN;
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+
+/**
+ * A sink writing nodes and edges as rows of a CSV table.
+ *
+ * <pre>
+ * kind,id,source,target,directed,weight
+ * node,A,,,,
+ * node,B,,,,
+ * edge,AB,A,B,false,2
+ * </pre>
+ *
+ * The attributes given to the constructor are written as extra columns, with
+ * the value they have when the element is added. Values are quoted when
+ * needed, and arrays such as "xyz" are written as their elements separated by
+ * spaces, in a quoted cell. Removals are not written, the table lists the elements in the order
+ * they were added.
+ */
+public class FileSinkCSV extends BufferedFileSink {
+	/**
+	 * Attributes written as columns.
+	 */
+	protected final String[] attributes;
+
+	public FileSinkCSV(String... attributes) {
+		super(attributes);
+		this.attributes = attributes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeHeader()
+	 */
+	protected void writeHeader() throws IOException {
+		write("kind,id,source,target,directed");
+
+		for (String a : attributes) {
+			write(',');
+			writeCell(a);
+		}
+
+		write('\n');
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeNode(java.lang.String,
+	 * java.lang.Object[])
+	 */
+	protected void writeNode(String id, Object[] values) throws IOException {
+		write("node,");
+		writeCell(id);
+		write(",,,");
+		writeValues(values);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeEdge(java.lang.String,
+	 * java.lang.String, java.lang.String, boolean, java.lang.Object[])
+	 */
+	protected void writeEdge(String id, String from, String to,
+			boolean directed, Object[] values) throws IOException {
+		write("edge,");
+		writeCell(id);
+		write(',');
+		writeCell(from);
+		write(',');
+		writeCell(to);
+		write(directed ? ",true" : ",false");
+		writeValues(values);
+	}
+
+	protected void writeValues(Object[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			write(',');
+
+			Object v = values[i];
+
+			if (v != null && v.getClass().isArray() && Array.getLength(v) == 1)
+				v = Array.get(v, 0);
+
+			if (v instanceof Number)
+				write((Number) v);
+			else if (v != null && v.getClass().isArray())
+				writeCell(join(v), true);
+			else if (v != null)
+				writeCell(v.toString());
+		}
+
+		write('\n');
+	}
+
+	/**
+	 * Join the elements of an array, of objects or of a primitive type,
+	 * separated by spaces.
+	 */
+	protected static String join(Object array) {
+		StringBuilder buffer = new StringBuilder();
+		int n = Array.getLength(array);
+
+		for (int i = 0; i < n; i++) {
+			Object o = Array.get(array, i);
+
+			if (i > 0)
+				buffer.append(' ');
+
+			if (o != null && o.getClass().isArray())
+				buffer.append(join(o));
+			else if (o instanceof Double || o instanceof Float) {
+				double d = ((Number) o).doubleValue();
+
+				if (d == Math.rint(d) && Math.abs(d) < 1e15)
+					buffer.append((long) d);
+				else
+					buffer.append(o);
+			} else if (o != null)
+				buffer.append(o);
+		}
+
+		return buffer.toString();
+	}
+
+	protected void writeCell(String s) throws IOException {
+		writeCell(s, false);
+	}
+
+	protected void writeCell(String s, boolean quote) throws IOException {
+		for (int i = 0; !quote && i < s.length(); i++) {
+			char c = s.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+
+		if (!quote) {
+			write(s);
+			return;
+		}
+
+		write('"');
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			if (c == '"')
+				write('"');
+
+			write(c);
+		}
+
+		write('"');
+	}
+}
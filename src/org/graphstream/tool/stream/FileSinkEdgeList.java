@@ -0,0 +1,128 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.IOException;
+
+/**
+ * A sink writing edge lists, one line per edge with its two nodes. This is
+ * the format read by {@link FileSourceEdgeList}.
+ *
+ * Nodes can also be written, one line per node, so that nodes without edges
+ * are not lost. Identifiers containing separators are quoted. The format has
+ * no escape, so empty identifiers, identifiers containing a line end and
+ * quoted identifiers containing a quote can not be written: an
+ * {@link IOException} is raised instead. Removals are not written, the output
+ * lists the elements in the order they were added.
+ */
+public class FileSinkEdgeList extends BufferedFileSink {
+	/**
+	 * Flag indicating if a line is written for each node.
+	 */
+	protected boolean writeNodes;
+
+	public FileSinkEdgeList() {
+		writeNodes = false;
+	}
+
+	/**
+	 * Enable or disable the lines of nodes.
+	 */
+	public void setWriteNodes(boolean on) {
+		writeNodes = on;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeHeader()
+	 */
+	protected void writeHeader() throws IOException {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeNode(java.lang.String,
+	 * java.lang.Object[])
+	 */
+	protected void writeNode(String id, Object[] values) throws IOException {
+		if (writeNodes) {
+			writeId(id);
+			write('\n');
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeEdge(java.lang.String,
+	 * java.lang.String, java.lang.String, boolean, java.lang.Object[])
+	 */
+	protected void writeEdge(String id, String from, String to,
+			boolean directed, Object[] values) throws IOException {
+		writeId(from);
+		write('\t');
+		writeId(to);
+		write('\n');
+	}
+
+	protected void writeId(String id) throws IOException {
+		if (id.length() == 0)
+			throw new IOException("empty identifier");
+
+		boolean quote = id.charAt(0) == '#' || id.charAt(0) == '"';
+		boolean hasQuote = false;
+
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+
+			if (c == '\n' || c == '\r')
+				throw new IOException(String.format(
+						"identifier \"%s\" contains a line end", id));
+
+			quote |= c == ' ' || c == '\t' || c == ',' || c == ';';
+			hasQuote |= c == '"';
+		}
+
+		if (quote && hasQuote)
+			throw new IOException(String.format(
+					"identifier \"%s\" can not be quoted", id));
+
+		if (quote) {
+			write('"');
+			write(id);
+			write('"');
+		} else
+			write(id);
+	}
+}
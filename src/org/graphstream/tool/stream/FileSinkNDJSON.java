@@ -0,0 +1,489 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+
+/**
+ * A sink writing each event as a JSON object on its own line.
+ *
+ * <pre>
+ * {"type":"nodeAdded","id":"A","step":0}
+ * {"type":"edgeAdded","id":"AB","source":"A","target":"B","directed":false,"step":0}
+ * {"type":"attributeAdded","element":"edge","id":"AB","key":"weight","value":2,"step":0}
+ * {"type":"stepBegins","step":1}
+ * {"type":"attributeRemoved","element":"graph","key":"title","step":1}
+ * </pre>
+ *
+ * Other types are "nodeRemoved", "edgeRemoved", "attributeChanged" and
+ * "graphCleared". Attribute values are written as JSON numbers, booleans,
+ * strings, arrays or objects, other values as their string form. Since each
+ * line is a whole event with the step it belongs to, the output can be split
+ * at any line end.
+ *
+ * @see FileSourceNDJSON
+ */
+public class FileSinkNDJSON extends BufferedFileSink {
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * The current step, written on each event.
+	 */
+	protected double step;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeHeader()
+	 */
+	protected void writeHeader() throws IOException {
+		step = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeNode(java.lang.String,
+	 * java.lang.Object[])
+	 */
+	protected void writeNode(String id, Object[] values) throws IOException {
+		write("{\"type\":\"nodeAdded\",\"id\":");
+		writeString(id);
+		writeEnd();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#writeEdge(java.lang.String,
+	 * java.lang.String, java.lang.String, boolean, java.lang.Object[])
+	 */
+	protected void writeEdge(String id, String from, String to,
+			boolean directed, Object[] values) throws IOException {
+		write("{\"type\":\"edgeAdded\",\"id\":");
+		writeString(id);
+		write(",\"source\":");
+		writeString(from);
+		write(",\"target\":");
+		writeString(to);
+		write(directed ? ",\"directed\":true" : ",\"directed\":false");
+		writeEnd();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.tool.stream.BufferedFileSink#replay(org.graphstream.graph
+	 * .Graph)
+	 */
+	protected void replay(Graph graph) {
+		String id = graph.getId();
+
+		for (String key : graph.getAttributeKeySet())
+			graphAttributeAdded(id, 0, key, graph.getAttribute(key));
+
+		for (Node n : graph.getEachNode()) {
+			nodeAdded(id, 0, n.getId());
+
+			for (String key : n.getAttributeKeySet())
+				nodeAttributeAdded(id, 0, n.getId(), key, n.getAttribute(key));
+		}
+
+		for (Edge e : graph.getEachEdge()) {
+			edgeAdded(id, 0, e.getId(), e.getNode0().getId(), e.getNode1()
+					.getId(), e.isDirected());
+
+			for (String key : e.getAttributeKeySet())
+				edgeAttributeAdded(id, 0, e.getId(), key, e.getAttribute(key));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#nodeAdded(java.lang.String
+	 * , long, java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		try {
+			writeNode(nodeId, null);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#edgeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		try {
+			writeEdge(edgeId, fromNodeId, toNodeId, directed, null);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		writeRemoved("nodeRemoved", nodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		writeRemoved("edgeRemoved", edgeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphCleared(java.lang.String,
+	 * long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		try {
+			write("{\"type\":\"graphCleared\"");
+			writeEnd();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.tool.stream.BufferedFileSink#stepBegins(java.lang.
+	 * String, long, double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		this.step = step;
+
+		try {
+			write("{\"type\":\"stepBegins\",\"step\":");
+			writeValue(step);
+			write("}\n");
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.Object)
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		writeAttribute("attributeAdded", "graph", null, attribute, value, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.Object, java.lang.Object)
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		writeAttribute("attributeChanged", "graph", null, attribute, newValue,
+				true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		writeAttribute("attributeRemoved", "graph", null, attribute, null,
+				false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.tool.stream.BufferedFileSink#nodeAttributeAdded(java.lang
+	 * .String, long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		writeAttribute("attributeAdded", "node", nodeId, attribute, value,
+				true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.tool.stream.BufferedFileSink#nodeAttributeChanged(java.
+	 * lang.String, long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		writeAttribute("attributeChanged", "node", nodeId, attribute,
+				newValue, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAttributeRemoved(java.lang.
+	 * String, long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		writeAttribute("attributeRemoved", "node", nodeId, attribute, null,
+				false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.tool.stream.BufferedFileSink#edgeAttributeAdded(java.lang
+	 * .String, long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		writeAttribute("attributeAdded", "edge", edgeId, attribute, value,
+				true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.tool.stream.BufferedFileSink#edgeAttributeChanged(java.
+	 * lang.String, long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		writeAttribute("attributeChanged", "edge", edgeId, attribute,
+				newValue, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAttributeRemoved(java.lang.
+	 * String, long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		writeAttribute("attributeRemoved", "edge", edgeId, attribute, null,
+				false);
+	}
+
+	protected void fail(IOException e) {
+		if (failure == null)
+			failure = e;
+	}
+
+	protected void writeRemoved(String type, String id) {
+		try {
+			write("{\"type\":\"");
+			write(type);
+			write("\",\"id\":");
+			writeString(id);
+			writeEnd();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	protected void writeAttribute(String type, String element, String id,
+			String key, Object value, boolean hasValue) {
+		try {
+			write("{\"type\":\"");
+			write(type);
+			write("\",\"element\":\"");
+			write(element);
+			write('"');
+
+			if (id != null) {
+				write(",\"id\":");
+				writeString(id);
+			}
+
+			write(",\"key\":");
+			writeString(key);
+
+			if (hasValue) {
+				write(",\"value\":");
+				writeValue(value);
+			}
+
+			writeEnd();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Write the current step and end the line of an event.
+	 */
+	protected void writeEnd() throws IOException {
+		write(",\"step\":");
+		writeValue(step);
+		write("}\n");
+	}
+
+	/**
+	 * Write any value as JSON.
+	 */
+	protected void writeValue(Object value) throws IOException {
+		if (value == null)
+			write("null");
+		else if (value instanceof Number) {
+			double d = ((Number) value).doubleValue();
+
+			if (Double.isNaN(d) || Double.isInfinite(d))
+				write("null");
+			else
+				write((Number) value);
+		} else if (value instanceof Boolean)
+			write(((Boolean) value).booleanValue() ? "true" : "false");
+		else if (value instanceof CharSequence)
+			writeString(value.toString());
+		else if (value.getClass().isArray()) {
+			int n = Array.getLength(value);
+
+			write('[');
+
+			for (int i = 0; i < n; i++) {
+				if (i > 0)
+					write(',');
+
+				writeValue(Array.get(value, i));
+			}
+
+			write(']');
+		} else if (value instanceof Collection<?>) {
+			boolean first = true;
+
+			write('[');
+
+			for (Object o : (Collection<?>) value) {
+				if (!first)
+					write(',');
+
+				writeValue(o);
+				first = false;
+			}
+
+			write(']');
+		} else if (value instanceof Map<?, ?>) {
+			boolean first = true;
+
+			write('{');
+
+			for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+				if (!first)
+					write(',');
+
+				writeString(String.valueOf(e.getKey()));
+				write(':');
+				writeValue(e.getValue());
+				first = false;
+			}
+
+			write('}');
+		} else
+			writeString(value.toString());
+	}
+
+	protected void writeString(String s) throws IOException {
+		write('"');
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			switch (c) {
+			case '"':
+				write("\\\"");
+				break;
+			case '\\':
+				write("\\\\");
+				break;
+			case '\n':
+				write("\\n");
+				break;
+			case '\r':
+				write("\\r");
+				break;
+			case '\t':
+				write("\\t");
+				break;
+			default:
+				if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+					write("\\u");
+					write(HEX[(c >> 12) & 0xF]);
+					write(HEX[(c >> 8) & 0xF]);
+					write(HEX[(c >> 4) & 0xF]);
+					write(HEX[c & 0xF]);
+				} else
+					write(c);
+			}
+		}
+
+		write('"');
+	}
+}
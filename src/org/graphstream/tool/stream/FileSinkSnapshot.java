@@ -0,0 +1,938 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.SinkAdapter;
+import org.graphstream.stream.file.FileSink;
+
+/**
+ * A sink writing the final state of the graph as a snapshot, which can be
+ * opened by {@link FileSourceSnapshot} without parsing.
+ *
+ * Events are applied to a compact copy of the graph made of arrays, and the
+ * file is written at the end. Each attribute becomes a typed column, its type
+ * being given by its first value: numbers make {@link SnapshotFormat#DOUBLE}
+ * columns, arrays of one to three numbers make {@link SnapshotFormat#VECTOR}
+ * columns, and other values are stored as strings. Values which do not match
+ * the type of their column are not stored.
+ *
+ * Snapshots are binary, so they can not be written with a {@link Writer}.
+ *
+ * @see SnapshotFormat
+ */
+public class FileSinkSnapshot extends SinkAdapter implements FileSink {
+	/**
+	 * Output of the current export.
+	 */
+	protected OutputStream output;
+
+	/**
+	 * Nodes, by index. Removed nodes keep their index until the end.
+	 */
+	protected HashMap<String, Integer> nodeIndex;
+	protected ArrayList<String> nodeIds;
+	protected BitSet removedNodes;
+
+	/**
+	 * Edges, by index. Removed edges keep their index until the end.
+	 */
+	protected HashMap<String, Integer> edgeIndex;
+	protected ArrayList<String> edgeIds;
+	protected BitSet removedEdges;
+	protected BitSet directed;
+	protected int[] edgeSources, edgeTargets;
+
+	/**
+	 * Attribute columns, by name.
+	 */
+	protected LinkedHashMap<String, Column> graphColumns, nodeColumns,
+			edgeColumns;
+
+	/**
+	 * Strings used as attribute values.
+	 */
+	protected HashMap<String, Integer> valueIndex;
+	protected ArrayList<String> values;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.lang.String)
+	 */
+	public void begin(String fileName) throws IOException {
+		begin(new FileOutputStream(fileName));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.io.OutputStream)
+	 */
+	public void begin(OutputStream stream) throws IOException {
+		if (output != null)
+			throw new IOException(
+					"cannot call begin() twice without calling end() before");
+
+		output = stream;
+		clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.io.Writer)
+	 */
+	public void begin(Writer writer) throws IOException {
+		throw new IOException("snapshots are binary and need a file or a stream");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#flush()
+	 */
+	public void flush() throws IOException {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#end()
+	 */
+	public void end() throws IOException {
+		if (output == null)
+			return;
+
+		try {
+			write(new DataOutputStream(new BufferedOutputStream(output,
+					1 << 16)));
+		} finally {
+			output.close();
+			output = null;
+			clear();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.lang.String)
+	 */
+	public void writeAll(Graph graph, String fileName) throws IOException {
+		begin(fileName);
+		replay(graph);
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.io.OutputStream)
+	 */
+	public void writeAll(Graph graph, OutputStream stream) throws IOException {
+		begin(stream);
+		replay(graph);
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.io.Writer)
+	 */
+	public void writeAll(Graph graph, Writer writer) throws IOException {
+		begin(writer);
+	}
+
+	protected void replay(Graph graph) {
+		String id = graph.getId();
+
+		for (String key : graph.getAttributeKeySet())
+			graphAttributeAdded(id, 0, key, graph.getAttribute(key));
+
+		for (Node n : graph.getEachNode()) {
+			nodeAdded(id, 0, n.getId());
+
+			for (String key : n.getAttributeKeySet())
+				nodeAttributeAdded(id, 0, n.getId(), key, n.getAttribute(key));
+		}
+
+		for (Edge e : graph.getEachEdge()) {
+			edgeAdded(id, 0, e.getId(), e.getNode0().getId(), e.getNode1()
+					.getId(), e.isDirected());
+
+			for (String key : e.getAttributeKeySet())
+				edgeAttributeAdded(id, 0, e.getId(), key, e.getAttribute(key));
+		}
+	}
+
+	protected void clear() {
+		nodeIndex = new HashMap<String, Integer>();
+		nodeIds = new ArrayList<String>();
+		removedNodes = new BitSet();
+		edgeIndex = new HashMap<String, Integer>();
+		edgeIds = new ArrayList<String>();
+		removedEdges = new BitSet();
+		directed = new BitSet();
+		edgeSources = new int[1024];
+		edgeTargets = new int[1024];
+		graphColumns = new LinkedHashMap<String, Column>();
+		nodeColumns = new LinkedHashMap<String, Column>();
+		edgeColumns = new LinkedHashMap<String, Column>();
+		valueIndex = new HashMap<String, Integer>();
+		values = new ArrayList<String>();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAdded(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		addNode(nodeId);
+	}
+
+	protected int addNode(String nodeId) {
+		Integer index = nodeIndex.get(nodeId);
+
+		if (index != null)
+			return index;
+
+		int i = nodeIds.size();
+
+		nodeIds.add(nodeId);
+		nodeIndex.put(nodeId, i);
+
+		return i;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		Integer index = nodeIndex.remove(nodeId);
+
+		if (index != null)
+			removedNodes.set(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (edgeIndex.containsKey(edgeId))
+			return;
+
+		int i = edgeIds.size();
+
+		if (i == edgeSources.length) {
+			int[] sources = new int[2 * i];
+			int[] targets = new int[2 * i];
+
+			System.arraycopy(edgeSources, 0, sources, 0, i);
+			System.arraycopy(edgeTargets, 0, targets, 0, i);
+			edgeSources = sources;
+			edgeTargets = targets;
+		}
+
+		edgeSources[i] = addNode(fromNodeId);
+		edgeTargets[i] = addNode(toNodeId);
+
+		if (directed)
+			this.directed.set(i);
+
+		edgeIds.add(edgeId);
+		edgeIndex.put(edgeId, i);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		Integer index = edgeIndex.remove(edgeId);
+
+		if (index != null)
+			removedEdges.set(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphCleared(java.lang.String,
+	 * long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.Object)
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		setValue(graphColumns, attribute, 0, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.Object, java.lang.Object)
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		setValue(graphColumns, attribute, 0, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		setValue(graphColumns, attribute, 0, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		Integer index = nodeIndex.get(nodeId);
+
+		if (index != null)
+			setValue(nodeColumns, attribute, index, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		nodeAttributeAdded(sourceId, timeId, nodeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		nodeAttributeAdded(sourceId, timeId, nodeId, attribute, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		Integer index = edgeIndex.get(edgeId);
+
+		if (index != null)
+			setValue(edgeColumns, attribute, index, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		edgeAttributeAdded(sourceId, timeId, edgeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		edgeAttributeAdded(sourceId, timeId, edgeId, attribute, null);
+	}
+
+	protected void setValue(Map<String, Column> columns, String attribute,
+			int index, Object value) {
+		Column c = columns.get(attribute);
+
+		if (c == null) {
+			if (value == null)
+				return;
+
+			c = new Column(typeOf(value));
+			columns.put(attribute, c);
+		}
+
+		c.set(index, value);
+	}
+
+	/**
+	 * Type of a column whose first value is given.
+	 */
+	protected static byte typeOf(Object value) {
+		if (value instanceof Number)
+			return SnapshotFormat.DOUBLE;
+
+		if (toVector(value) != null)
+			return SnapshotFormat.VECTOR;
+
+		return SnapshotFormat.STRING;
+	}
+
+	/**
+	 * Read an array of one to three numbers.
+	 *
+	 * @return the numbers, or null if value is not such an array
+	 */
+	protected static double[] toVector(Object value) {
+		double[] v = null;
+
+		if (value instanceof double[])
+			v = ((double[]) value).clone();
+		else if (value instanceof float[]) {
+			float[] f = (float[]) value;
+			v = new double[f.length];
+
+			for (int i = 0; i < f.length; i++)
+				v[i] = f[i];
+		} else if (value instanceof int[]) {
+			int[] f = (int[]) value;
+			v = new double[f.length];
+
+			for (int i = 0; i < f.length; i++)
+				v[i] = f[i];
+		} else if (value instanceof Object[]) {
+			Object[] o = (Object[]) value;
+			v = new double[o.length];
+
+			for (int i = 0; i < o.length; i++) {
+				if (!(o[i] instanceof Number))
+					return null;
+
+				v[i] = ((Number) o[i]).doubleValue();
+			}
+		}
+
+		if (v == null || v.length < 1 || v.length > 3)
+			return null;
+
+		return v;
+	}
+
+	protected int valueIndex(String value) {
+		Integer index = valueIndex.get(value);
+
+		if (index == null) {
+			index = values.size();
+			values.add(value);
+			valueIndex.put(value, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Values of an attribute, by element index.
+	 */
+	protected class Column {
+		protected final byte type;
+		protected double[] numbers;
+		protected int[] strings;
+
+		protected Column(byte type) {
+			this.type = type;
+
+			if (type == SnapshotFormat.STRING) {
+				strings = new int[16];
+				Arrays.fill(strings, -1);
+			} else {
+				numbers = new double[type == SnapshotFormat.VECTOR ? 48 : 16];
+				Arrays.fill(numbers, Double.NaN);
+			}
+		}
+
+		protected void set(int index, Object value) {
+			int width = type == SnapshotFormat.VECTOR ? 3 : 1;
+
+			ensure(width * (index + 1));
+
+			switch (type) {
+			case SnapshotFormat.STRING:
+				strings[index] = value == null ? -1 : valueIndex(value
+						.toString());
+				break;
+			case SnapshotFormat.DOUBLE:
+				numbers[index] = value instanceof Number ? ((Number) value)
+						.doubleValue() : Double.NaN;
+				break;
+			case SnapshotFormat.VECTOR:
+				double[] v = value == null ? null : toVector(value);
+
+				for (int i = 0; i < 3; i++)
+					numbers[3 * index + i] = v != null && i < v.length ? v[i]
+							: Double.NaN;
+				break;
+			}
+		}
+
+		protected void ensure(int size) {
+			if (strings != null && strings.length < size) {
+				int old = strings.length;
+				int[] grown = new int[Math.max(size, 2 * old)];
+				System.arraycopy(strings, 0, grown, 0, old);
+				strings = grown;
+				Arrays.fill(strings, old, strings.length, -1);
+			} else if (numbers != null && numbers.length < size) {
+				int old = numbers.length;
+				double[] grown = new double[Math.max(size, 2 * old)];
+				System.arraycopy(numbers, 0, grown, 0, old);
+				numbers = grown;
+				Arrays.fill(numbers, old, numbers.length, Double.NaN);
+			}
+		}
+
+		protected double number(int index) {
+			return index < numbers.length ? numbers[index] : Double.NaN;
+		}
+
+		protected int string(int index) {
+			return index < strings.length ? strings[index] : -1;
+		}
+	}
+
+	/**
+	 * Write the snapshot of the current graph.
+	 */
+	protected void write(DataOutputStream out) throws IOException {
+		//
+		// Give new indices to remaining nodes and edges.
+		//
+		int[] newNode = new int[nodeIds.size()];
+		int n = 0;
+
+		for (int i = 0; i < newNode.length; i++)
+			newNode[i] = removedNodes.get(i) ? -1 : n++;
+
+		int[] oldEdge = new int[edgeIds.size()];
+		int m = 0;
+
+		for (int i = 0; i < oldEdge.length; i++) {
+			if (!removedEdges.get(i) && newNode[edgeSources[i]] >= 0
+					&& newNode[edgeTargets[i]] >= 0)
+				oldEdge[m++] = i;
+		}
+
+		int[] oldNode = new int[n];
+
+		for (int i = 0; i < newNode.length; i++)
+			if (newNode[i] >= 0)
+				oldNode[newNode[i]] = i;
+
+		//
+		// Strings are node ids, edge ids, column names and values.
+		//
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<Byte> kinds = new ArrayList<Byte>();
+		ArrayList<Column> columns = new ArrayList<Column>();
+
+		addColumns(SnapshotFormat.GRAPH, graphColumns, names, kinds, columns);
+		addColumns(SnapshotFormat.NODE, nodeColumns, names, kinds, columns);
+		addColumns(SnapshotFormat.EDGE, edgeColumns, names, kinds, columns);
+
+		int firstName = n + m;
+		int firstValue = firstName + names.size();
+		int stringCount = firstValue + values.size();
+		long blobSize = 0;
+
+		for (int i = 0; i < n; i++)
+			blobSize += utf8Length(nodeIds.get(oldNode[i]));
+		for (int i = 0; i < m; i++)
+			blobSize += utf8Length(edgeIds.get(oldEdge[i]));
+		for (String s : names)
+			blobSize += utf8Length(s);
+		for (String s : values)
+			blobSize += utf8Length(s);
+
+		//
+		// Positions of the sections.
+		//
+		long[] positions = new long[8];
+		long p = SnapshotFormat.HEADER_SIZE;
+
+		positions[0] = p;
+		p = SnapshotFormat.align(p + 4L * (stringCount + 1));
+		positions[1] = p;
+		p = SnapshotFormat.align(p + blobSize);
+		positions[2] = p;
+		p = SnapshotFormat.align(p + 4L * m);
+		positions[3] = p;
+		p = SnapshotFormat.align(p + 4L * m);
+		positions[4] = p;
+		p = SnapshotFormat.align(p + (m + 7) / 8);
+		positions[5] = p;
+		p = SnapshotFormat.align(p + 4L * (n + 1));
+		positions[6] = p;
+		p = SnapshotFormat.align(p + 4L * m);
+		positions[7] = p;
+		p = SnapshotFormat.align(p + (long) SnapshotFormat.COLUMN_SIZE
+				* columns.size());
+
+		long[] columnPositions = new long[columns.size()];
+
+		for (int c = 0; c < columns.size(); c++) {
+			columnPositions[c] = p;
+			p = SnapshotFormat.align(p
+					+ columnSize(columns.get(c), count(kinds.get(c), n, m)));
+		}
+
+		Positioned o = new Positioned(out);
+
+		//
+		// Header.
+		//
+		o.out.write(SnapshotFormat.MAGIC);
+		o.out.writeInt(SnapshotFormat.VERSION);
+		o.out.writeInt(n);
+		o.out.writeInt(m);
+		o.out.writeInt(stringCount);
+		o.out.writeInt(columns.size());
+		o.out.writeInt(0);
+		o.position = 32;
+
+		for (int i = 0; i < positions.length; i++)
+			o.writeLong(positions[i]);
+
+		//
+		// Strings.
+		//
+		o.padTo(positions[0]);
+
+		int offset = 0;
+		o.writeInt(offset);
+
+		for (int i = 0; i < n; i++)
+			o.writeInt(offset += utf8Length(nodeIds.get(oldNode[i])));
+		for (int i = 0; i < m; i++)
+			o.writeInt(offset += utf8Length(edgeIds.get(oldEdge[i])));
+		for (String s : names)
+			o.writeInt(offset += utf8Length(s));
+		for (String s : values)
+			o.writeInt(offset += utf8Length(s));
+
+		o.padTo(positions[1]);
+
+		for (int i = 0; i < n; i++)
+			o.writeUTF8(nodeIds.get(oldNode[i]));
+		for (int i = 0; i < m; i++)
+			o.writeUTF8(edgeIds.get(oldEdge[i]));
+		for (String s : names)
+			o.writeUTF8(s);
+		for (String s : values)
+			o.writeUTF8(s);
+
+		//
+		// Edges.
+		//
+		o.padTo(positions[2]);
+
+		for (int i = 0; i < m; i++)
+			o.writeInt(newNode[edgeSources[oldEdge[i]]]);
+
+		o.padTo(positions[3]);
+
+		for (int i = 0; i < m; i++)
+			o.writeInt(newNode[edgeTargets[oldEdge[i]]]);
+
+		o.padTo(positions[4]);
+
+		for (int i = 0; i < m; i += 8) {
+			int bits = 0;
+
+			for (int j = 0; j < 8 && i + j < m; j++)
+				if (directed.get(oldEdge[i + j]))
+					bits |= 1 << j;
+
+			o.writeByte(bits);
+		}
+
+		//
+		// Adjacency.
+		//
+		int[] offsets = new int[n + 1];
+
+		for (int i = 0; i < m; i++)
+			offsets[newNode[edgeSources[oldEdge[i]]] + 1]++;
+		for (int i = 0; i < n; i++)
+			offsets[i + 1] += offsets[i];
+
+		o.padTo(positions[5]);
+
+		for (int i = 0; i <= n; i++)
+			o.writeInt(offsets[i]);
+
+		int[] csr = new int[m];
+		int[] fill = new int[n];
+
+		System.arraycopy(offsets, 0, fill, 0, n);
+
+		for (int i = 0; i < m; i++)
+			csr[fill[newNode[edgeSources[oldEdge[i]]]]++] = i;
+
+		o.padTo(positions[6]);
+
+		for (int i = 0; i < m; i++)
+			o.writeInt(csr[i]);
+
+		csr = null;
+		fill = null;
+
+		//
+		// Columns.
+		//
+		o.padTo(positions[7]);
+
+		for (int c = 0; c < columns.size(); c++) {
+			o.writeByte(kinds.get(c));
+			o.writeByte(columns.get(c).type);
+			o.writeByte(0);
+			o.writeByte(0);
+			o.writeInt(firstName + c);
+			o.writeInt(count(kinds.get(c), n, m));
+			o.writeInt(0);
+			o.writeLong(columnPositions[c]);
+		}
+
+		for (int c = 0; c < columns.size(); c++) {
+			Column col = columns.get(c);
+			byte kind = kinds.get(c);
+			int count = count(kind, n, m);
+
+			o.padTo(columnPositions[c]);
+
+			for (int i = 0; i < count; i++) {
+				int old = kind == SnapshotFormat.NODE ? oldNode[i]
+						: (kind == SnapshotFormat.EDGE ? oldEdge[i] : 0);
+
+				switch (col.type) {
+				case SnapshotFormat.STRING:
+					int s = col.string(old);
+					o.writeInt(s < 0 ? -1 : firstValue + s);
+					break;
+				case SnapshotFormat.DOUBLE:
+					o.writeDouble(col.number(old));
+					break;
+				case SnapshotFormat.VECTOR:
+					o.writeDouble(col.number(3 * old));
+					o.writeDouble(col.number(3 * old + 1));
+					o.writeDouble(col.number(3 * old + 2));
+					break;
+				}
+			}
+		}
+
+		o.out.flush();
+	}
+
+	protected static void addColumns(byte kind, Map<String, Column> map,
+			ArrayList<String> names, ArrayList<Byte> kinds,
+			ArrayList<Column> columns) {
+		for (Map.Entry<String, Column> e : map.entrySet()) {
+			names.add(e.getKey());
+			kinds.add(kind);
+			columns.add(e.getValue());
+		}
+	}
+
+	protected static int count(byte kind, int n, int m) {
+		return kind == SnapshotFormat.NODE ? n
+				: (kind == SnapshotFormat.EDGE ? m : 1);
+	}
+
+	protected static long columnSize(Column c, int count) {
+		switch (c.type) {
+		case SnapshotFormat.STRING:
+			return 4L * count;
+		case SnapshotFormat.VECTOR:
+			return 24L * count;
+		default:
+			return 8L * count;
+		}
+	}
+
+	protected static int utf8Length(String s) {
+		int length = 0;
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			if (c < 0x80)
+				length += 1;
+			else if (c < 0x800)
+				length += 2;
+			else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else
+				length += 3;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Output keeping track of its position, since sections are aligned.
+	 */
+	protected static class Positioned {
+		protected final DataOutputStream out;
+		protected long position;
+
+		protected Positioned(DataOutputStream out) {
+			this.out = out;
+			this.position = 0;
+		}
+
+		protected void padTo(long p) throws IOException {
+			while (position < p) {
+				out.writeByte(0);
+				position++;
+			}
+		}
+
+		protected void writeByte(int b) throws IOException {
+			out.writeByte(b);
+			position += 1;
+		}
+
+		protected void writeInt(int i) throws IOException {
+			out.writeInt(i);
+			position += 4;
+		}
+
+		protected void writeLong(long l) throws IOException {
+			out.writeLong(l);
+			position += 8;
+		}
+
+		protected void writeDouble(double d) throws IOException {
+			out.writeDouble(d);
+			position += 8;
+		}
+
+		protected void writeUTF8(String s) throws IOException {
+			for (int i = 0; i < s.length(); i++) {
+				int c = s.charAt(i);
+
+				if (c < 0x80) {
+					out.writeByte(c);
+					position += 1;
+				} else if (c < 0x800) {
+					out.writeByte(0xC0 | (c >> 6));
+					out.writeByte(0x80 | (c & 0x3F));
+					position += 2;
+				} else if (Character.isHighSurrogate((char) c)
+						&& i + 1 < s.length()
+						&& Character.isLowSurrogate(s.charAt(i + 1))) {
+					int cp = Character.toCodePoint((char) c, s.charAt(++i));
+
+					out.writeByte(0xF0 | (cp >> 18));
+					out.writeByte(0x80 | ((cp >> 12) & 0x3F));
+					out.writeByte(0x80 | ((cp >> 6) & 0x3F));
+					out.writeByte(0x80 | (cp & 0x3F));
+					position += 4;
+				} else {
+					out.writeByte(0xE0 | (c >> 12));
+					out.writeByte(0x80 | ((c >> 6) & 0x3F));
+					out.writeByte(0x80 | (c & 0x3F));
+					position += 3;
+				}
+			}
+		}
+	}
+}
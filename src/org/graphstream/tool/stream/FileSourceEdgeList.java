@@ -0,0 +1,705 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.graphstream.stream.SourceBase;
+import org.graphstream.stream.file.FileSource;
+
+/**
+ * A source reading edge lists, one line per node and its neighbors.
+ *
+ * <pre>
+ * # comment
+ * A B
+ * A,C
+ * B C D
+ * E
+ * </pre>
+ *
+ * Identifiers are separated by spaces, tabs, commas or semicolons and can be
+ * quoted. A line with one identifier declares a node. A line with more
+ * identifiers adds an edge between the first one and each of the others. Edges
+ * are named with a counter. Nodes are added the first time they are met.
+ *
+ * Input is read by large chunks ending at a line end. Each chunk is split into
+ * tokens by a hand-written scanner working on the chunk buffer, which records
+ * the bounds and the hash of each token without creating strings. Then the
+ * tokens are looked up in a table mapping identifiers to an index, so the
+ * string of an identifier is created only once, when the node is added.
+ *
+ * When more than one thread is given, chunks are scanned by a pool of threads
+ * while the previous ones are sent, at most two chunks per thread being read
+ * in advance. Events are always sent in the order of the file, by the thread
+ * calling {@link #nextEvents()}.
+ */
+public class FileSourceEdgeList extends SourceBase implements FileSource {
+	/**
+	 * Default amount of chars read at once.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Flag indicating if edges are directed.
+	 */
+	protected final boolean directed;
+
+	/**
+	 * Amount of threads scanning the chunks, scanning is done by the reading
+	 * thread if 1 or less.
+	 */
+	protected final int threads;
+
+	/**
+	 * Amount of chars read at once.
+	 */
+	protected int chunkSize;
+
+	/**
+	 * Input of the current reading.
+	 */
+	protected Reader reader;
+
+	/**
+	 * Flag indicating if the end of the input has been reached.
+	 */
+	protected boolean eof;
+
+	/**
+	 * Chars read after the last line end of the previous chunk.
+	 */
+	protected char[] carry;
+	protected int carryLength;
+
+	/**
+	 * Chunk being sent and index of its next line.
+	 */
+	protected Chunk current;
+	protected int line;
+
+	/**
+	 * Chunks being scanned, in order.
+	 */
+	protected LinkedList<Future<Chunk>> pending;
+
+	/**
+	 * Threads scanning the chunks.
+	 */
+	protected ExecutorService executor;
+
+	/**
+	 * Identifiers of the nodes already added.
+	 */
+	protected IdTable ids;
+
+	/**
+	 * Counter used to name edges.
+	 */
+	protected int edgeId;
+
+	/**
+	 * Time id of the last sent event.
+	 */
+	protected long timeId;
+
+	public FileSourceEdgeList(boolean directed, int threads) {
+		super(String.format("<EDGE stream %x>", System.nanoTime()));
+
+		if (threads < 1)
+			throw new IllegalArgumentException("threads < 1");
+
+		this.directed = directed;
+		this.threads = threads;
+		this.chunkSize = DEFAULT_CHUNK_SIZE;
+	}
+
+	public FileSourceEdgeList(boolean directed) {
+		this(directed, 1);
+	}
+
+	public FileSourceEdgeList() {
+		this(false, 1);
+	}
+
+	/**
+	 * Set the amount of chars read at once.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(chunkSize, 16);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.lang.String)
+	 */
+	public void readAll(String fileName) throws IOException {
+		begin(fileName);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.net.URL)
+	 */
+	public void readAll(URL url) throws IOException {
+		begin(url);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.io.InputStream)
+	 */
+	public void readAll(InputStream stream) throws IOException {
+		begin(stream);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.io.Reader)
+	 */
+	public void readAll(Reader reader) throws IOException {
+		begin(reader);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.lang.String)
+	 */
+	public void begin(String fileName) throws IOException {
+		begin(new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.net.URL)
+	 */
+	public void begin(URL url) throws IOException {
+		begin(url.openStream());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.io.InputStream)
+	 */
+	public void begin(InputStream stream) throws IOException {
+		begin(new InputStreamReader(stream, "UTF-8"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.io.Reader)
+	 */
+	public void begin(Reader reader) throws IOException {
+		this.reader = reader;
+		this.eof = false;
+		this.carry = new char[0];
+		this.carryLength = 0;
+		this.current = null;
+		this.line = 0;
+		this.pending = new LinkedList<Future<Chunk>>();
+		this.ids = new IdTable();
+		this.edgeId = 0;
+		this.timeId = 0;
+
+		if (threads > 1)
+			executor = Executors.newFixedThreadPool(threads,
+					new ScannerThreadFactory());
+	}
+
+	/**
+	 * Send the events of the next line.
+	 *
+	 * @return false if there is no more line
+	 */
+	public boolean nextEvents() throws IOException {
+		while (current == null || line >= current.lineCount) {
+			current = nextChunk();
+			line = 0;
+
+			if (current == null)
+				return false;
+		}
+
+		sendLine(current, line++);
+
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#nextStep()
+	 */
+	public boolean nextStep() throws IOException {
+		return nextEvents();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#end()
+	 */
+	public void end() throws IOException {
+		if (executor != null) {
+			for (Future<Chunk> f : pending)
+				f.cancel(true);
+
+			executor.shutdown();
+			executor = null;
+		}
+
+		pending = null;
+		current = null;
+		ids = null;
+
+		if (reader != null) {
+			reader.close();
+			reader = null;
+		}
+	}
+
+	/**
+	 * Get the next scanned chunk.
+	 *
+	 * @return the chunk, or null if the input is exhausted
+	 */
+	protected Chunk nextChunk() throws IOException {
+		if (executor == null) {
+			Chunk chunk = readChunk();
+
+			if (chunk != null)
+				chunk.call().check();
+
+			return chunk;
+		}
+
+		while (pending.size() < 2 * threads) {
+			Chunk chunk = readChunk();
+
+			if (chunk == null)
+				break;
+
+			pending.add(executor.submit(chunk));
+		}
+
+		if (pending.size() == 0)
+			return null;
+
+		try {
+			return pending.removeFirst().get().check();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			IOException ioe = new IOException(e.getCause().getMessage());
+			ioe.initCause(e.getCause());
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Read chars until the end of the input or the last line end of a full
+	 * buffer. Chars after this line end are kept for the next chunk.
+	 *
+	 * @return the chunk, or null if the input is exhausted
+	 */
+	protected Chunk readChunk() throws IOException {
+		if (eof && carryLength == 0)
+			return null;
+
+		char[] buffer = new char[Math.max(chunkSize, 2 * carryLength)];
+		int length = carryLength;
+
+		System.arraycopy(carry, 0, buffer, 0, carryLength);
+		carryLength = 0;
+
+		while (!eof) {
+			while (length < buffer.length) {
+				int r = reader.read(buffer, length, buffer.length - length);
+
+				if (r < 0) {
+					eof = true;
+					break;
+				}
+
+				length += r;
+			}
+
+			if (eof)
+				break;
+
+			int cut = length;
+
+			while (cut > 0 && buffer[cut - 1] != '\n' && buffer[cut - 1] != '\r')
+				cut--;
+
+			if (cut > 0) {
+				carryLength = length - cut;
+
+				if (carry.length < carryLength)
+					carry = new char[Math.max(carryLength, 2 * carry.length)];
+
+				System.arraycopy(buffer, cut, carry, 0, carryLength);
+				length = cut;
+				break;
+			}
+
+			//
+			// No line end in the whole buffer, the line is longer.
+			//
+			char[] grown = new char[2 * buffer.length];
+			System.arraycopy(buffer, 0, grown, 0, buffer.length);
+			buffer = grown;
+		}
+
+		return length == 0 ? null : new Chunk(buffer, length);
+	}
+
+	protected void sendLine(Chunk chunk, int line) {
+		int first = chunk.lines[line];
+		int last = chunk.lines[line + 1];
+		String from = declareNode(chunk, first);
+
+		for (int t = first + 1; t < last; t++) {
+			String to = declareNode(chunk, t);
+
+			sendEdgeAdded(sourceId, timeId++, Integer.toString(edgeId++),
+					from, to, directed);
+		}
+	}
+
+	/**
+	 * Get the identifier of a token, adding the node if it is new.
+	 */
+	protected String declareNode(Chunk chunk, int token) {
+		int start = chunk.tokens[3 * token];
+		int end = chunk.tokens[3 * token + 1];
+		int hash = chunk.tokens[3 * token + 2];
+		int index = ids.lookup(chunk.data, start, end, hash);
+
+		if (index >= 0)
+			return ids.names[index];
+
+		String id = ids.add(new String(chunk.data, start, end - start), hash);
+		sendNodeAdded(sourceId, timeId++, id);
+
+		return id;
+	}
+
+	/**
+	 * Some lines of the input, split into tokens.
+	 */
+	protected static class Chunk implements Callable<Chunk> {
+		protected final char[] data;
+		protected final int length;
+
+		/**
+		 * Start, end and hash of each token.
+		 */
+		protected int[] tokens;
+		protected int tokenCount;
+
+		/**
+		 * Index of the first token of each line, followed by the token count.
+		 */
+		protected int[] lines;
+		protected int lineCount;
+
+		/**
+		 * Error met while scanning, null if none.
+		 */
+		protected String error;
+
+		public Chunk(char[] data, int length) {
+			this.data = data;
+			this.length = length;
+		}
+
+		/**
+		 * Scan the chunk.
+		 */
+		public Chunk call() {
+			tokens = new int[3 * 256];
+			lines = new int[128];
+			tokenCount = 0;
+			lineCount = 0;
+
+			int lineStart = 0;
+			int i = 0;
+
+			while (i < length) {
+				char c = data[i];
+
+				if (c == '\n' || c == '\r') {
+					if (tokenCount > lineStart)
+						lineStart = endLine(lineStart);
+
+					i++;
+				} else if (c == ' ' || c == '\t' || c == ',' || c == ';') {
+					i++;
+				} else if (c == '#') {
+					while (i < length && data[i] != '\n' && data[i] != '\r')
+						i++;
+				} else {
+					int start, end, hash = 0;
+
+					if (c == '"') {
+						start = ++i;
+
+						while (i < length && data[i] != '"' && data[i] != '\n'
+								&& data[i] != '\r')
+							hash = 31 * hash + data[i++];
+
+						end = i;
+
+						if (end == start) {
+							error = "empty quoted identifier";
+							break;
+						}
+
+						if (i < length && data[i] == '"')
+							i++;
+					} else {
+						start = i;
+
+						while (i < length && !isSeparator(data[i]))
+							hash = 31 * hash + data[i++];
+
+						end = i;
+					}
+
+					addToken(start, end, hash);
+				}
+			}
+
+			if (tokenCount > lineStart)
+				endLine(lineStart);
+
+			lines[lineCount] = tokenCount;
+
+			return this;
+		}
+
+		/**
+		 * Raise the error met while scanning, if any.
+		 *
+		 * @return this chunk
+		 */
+		protected Chunk check() throws IOException {
+			if (error != null)
+				throw new IOException(error);
+
+			return this;
+		}
+
+		protected static boolean isSeparator(char c) {
+			return c == ' ' || c == '\t' || c == ',' || c == ';' || c == '\n'
+					|| c == '\r';
+		}
+
+		protected void addToken(int start, int end, int hash) {
+			if (3 * tokenCount + 3 > tokens.length) {
+				int[] grown = new int[2 * tokens.length];
+				System.arraycopy(tokens, 0, grown, 0, tokens.length);
+				tokens = grown;
+			}
+
+			tokens[3 * tokenCount] = start;
+			tokens[3 * tokenCount + 1] = end;
+			tokens[3 * tokenCount + 2] = hash;
+			tokenCount++;
+		}
+
+		protected int endLine(int lineStart) {
+			if (lineCount + 2 > lines.length) {
+				int[] grown = new int[2 * lines.length];
+				System.arraycopy(lines, 0, grown, 0, lines.length);
+				lines = grown;
+			}
+
+			lines[lineCount++] = lineStart;
+
+			return tokenCount;
+		}
+	}
+
+	/**
+	 * Open addressing table from identifiers to their index.
+	 */
+	protected static class IdTable {
+		protected String[] names;
+		protected int[] hashes;
+		protected int size;
+
+		/**
+		 * Index plus one of the identifier in each slot, 0 for empty slots.
+		 */
+		protected int[] slots;
+
+		public IdTable() {
+			names = new String[1024];
+			hashes = new int[1024];
+			slots = new int[2048];
+			size = 0;
+		}
+
+		/**
+		 * Find an identifier given by chars.
+		 *
+		 * @return index of the identifier or -1 if it is not in the table
+		 */
+		public int lookup(char[] data, int start, int end, int hash) {
+			int mask = slots.length - 1;
+			int s = mix(hash) & mask;
+
+			while (slots[s] != 0) {
+				int index = slots[s] - 1;
+
+				if (hashes[index] == hash && equals(names[index], data, start, end))
+					return index;
+
+				s = (s + 1) & mask;
+			}
+
+			return -1;
+		}
+
+		/**
+		 * Add an identifier which is not in the table.
+		 *
+		 * @return the identifier
+		 */
+		public String add(String id, int hash) {
+			if (size == names.length) {
+				String[] n = new String[2 * size];
+				int[] h = new int[2 * size];
+
+				System.arraycopy(names, 0, n, 0, size);
+				System.arraycopy(hashes, 0, h, 0, size);
+				names = n;
+				hashes = h;
+			}
+
+			names[size] = id;
+			hashes[size] = hash;
+			size++;
+
+			if (2 * size > slots.length)
+				rehash(2 * slots.length);
+			else
+				insert(size - 1);
+
+			return id;
+		}
+
+		protected void insert(int index) {
+			int mask = slots.length - 1;
+			int s = mix(hashes[index]) & mask;
+
+			while (slots[s] != 0)
+				s = (s + 1) & mask;
+
+			slots[s] = index + 1;
+		}
+
+		protected void rehash(int capacity) {
+			slots = new int[capacity];
+
+			for (int i = 0; i < size; i++)
+				insert(i);
+		}
+
+		protected static int mix(int h) {
+			h *= 0x9e3779b9;
+			return h ^ (h >>> 16);
+		}
+
+		protected static boolean equals(String s, char[] data, int start,
+				int end) {
+			if (s.length() != end - start)
+				return false;
+
+			for (int i = start; i < end; i++)
+				if (s.charAt(i - start) != data[i])
+					return false;
+
+			return true;
+		}
+	}
+
+	/**
+	 * Scanners do not prevent the JVM from exiting.
+	 */
+	private static class ScannerThreadFactory implements ThreadFactory {
+		private int count = 0;
+
+		public synchronized Thread newThread(Runnable r) {
+			Thread t = new Thread(r, String.format("edge-scanner-%d", count++));
+			t.setDaemon(true);
+
+			return t;
+		}
+	}
+}
@@ -0,0 +1,596 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import org.graphstream.stream.SourceBase;
+import org.graphstream.stream.file.FileSource;
+
+/**
+ * A source reading events written by {@link FileSinkNDJSON}, one JSON object
+ * per line.
+ *
+ * The parser reads the fields of each event straight from the input, with a
+ * buffer of its own, and sends the event as soon as its object is closed. No
+ * document is built: only the attribute values which are arrays or objects
+ * are turned into arrays and maps. Fields can come in any order and unknown
+ * fields are skipped. The step written on each event is only used by
+ * "stepBegins" events, other events follow the order of the lines.
+ */
+public class FileSourceNDJSON extends SourceBase implements FileSource {
+	/**
+	 * Size of the input buffer.
+	 */
+	public static final int BUFFER_SIZE = 1 << 14;
+
+	/**
+	 * Input of the current reading.
+	 */
+	protected Reader reader;
+
+	/**
+	 * Chars read and not yet parsed.
+	 */
+	protected final char[] buffer;
+	protected int position, length;
+
+	/**
+	 * Current line, used in error messages.
+	 */
+	protected int line;
+
+	/**
+	 * Reused to build strings and numbers.
+	 */
+	protected final StringBuilder text;
+
+	/**
+	 * Time id of the last sent event.
+	 */
+	protected long timeId;
+
+	/**
+	 * Fields of the event being read.
+	 */
+	protected String type, element, id, source, target, key;
+	protected Object value;
+	protected boolean hasValue, directed;
+	protected double step;
+
+	public FileSourceNDJSON() {
+		super(String.format("<NDJSON stream %x>", System.nanoTime()));
+
+		buffer = new char[BUFFER_SIZE];
+		text = new StringBuilder();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.lang.String)
+	 */
+	public void readAll(String fileName) throws IOException {
+		begin(fileName);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.net.URL)
+	 */
+	public void readAll(URL url) throws IOException {
+		begin(url);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.io.InputStream)
+	 */
+	public void readAll(InputStream stream) throws IOException {
+		begin(stream);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.io.Reader)
+	 */
+	public void readAll(Reader reader) throws IOException {
+		begin(reader);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.lang.String)
+	 */
+	public void begin(String fileName) throws IOException {
+		begin(new FileInputStream(fileName));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.net.URL)
+	 */
+	public void begin(URL url) throws IOException {
+		begin(url.openStream());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.io.InputStream)
+	 */
+	public void begin(InputStream stream) throws IOException {
+		begin(new InputStreamReader(stream, "UTF-8"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.io.Reader)
+	 */
+	public void begin(Reader reader) throws IOException {
+		this.reader = reader;
+		this.position = 0;
+		this.length = 0;
+		this.line = 1;
+		this.timeId = 0;
+	}
+
+	/**
+	 * Read and send the next event.
+	 *
+	 * @return false if there is no more event
+	 */
+	public boolean nextEvents() throws IOException {
+		skipWhitespace();
+
+		if (peek() < 0)
+			return false;
+
+		readEvent();
+		sendEvent();
+
+		return true;
+	}
+
+	/**
+	 * Read and send events until the beginning of the next step.
+	 *
+	 * @return false if there is no more event
+	 */
+	public boolean nextStep() throws IOException {
+		boolean more;
+
+		do {
+			more = nextEvents();
+		} while (more && !"stepBegins".equals(type));
+
+		return more;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#end()
+	 */
+	public void end() throws IOException {
+		if (reader != null) {
+			reader.close();
+			reader = null;
+		}
+	}
+
+	protected void readEvent() throws IOException {
+		type = element = id = source = target = key = null;
+		value = null;
+		hasValue = false;
+		directed = false;
+		step = Double.NaN;
+
+		expect('{');
+		skipWhitespace();
+
+		if (peek() == '}') {
+			read();
+			throw error("empty event");
+		}
+
+		do {
+			skipWhitespace();
+			String field = readString();
+			skipWhitespace();
+			expect(':');
+			skipWhitespace();
+
+			if (field.equals("type"))
+				type = readString();
+			else if (field.equals("element"))
+				element = readString();
+			else if (field.equals("id"))
+				id = readString();
+			else if (field.equals("source"))
+				source = readString();
+			else if (field.equals("target"))
+				target = readString();
+			else if (field.equals("key"))
+				key = readString();
+			else if (field.equals("directed"))
+				directed = Boolean.TRUE.equals(readValue());
+			else if (field.equals("step")) {
+				Object v = readValue();
+
+				if (!(v instanceof Number))
+					throw error("step is not a number");
+
+				step = ((Number) v).doubleValue();
+			} else if (field.equals("value")) {
+				value = readValue();
+				hasValue = true;
+			} else
+				readValue();
+
+			skipWhitespace();
+		} while (accept(','));
+
+		expect('}');
+
+		if (type == null)
+			throw error("event without type");
+	}
+
+	protected void sendEvent() throws IOException {
+		if (type.equals("nodeAdded"))
+			sendNodeAdded(sourceId, timeId++, required(id, "id"));
+		else if (type.equals("nodeRemoved"))
+			sendNodeRemoved(sourceId, timeId++, required(id, "id"));
+		else if (type.equals("edgeAdded"))
+			sendEdgeAdded(sourceId, timeId++, required(id, "id"),
+					required(source, "source"), required(target, "target"),
+					directed);
+		else if (type.equals("edgeRemoved"))
+			sendEdgeRemoved(sourceId, timeId++, required(id, "id"));
+		else if (type.equals("stepBegins")) {
+			if (Double.isNaN(step))
+				throw error("missing step");
+
+			sendStepBegins(sourceId, timeId++, step);
+		} else if (type.equals("graphCleared"))
+			sendGraphCleared(sourceId, timeId++);
+		else if (type.equals("attributeAdded")
+				|| type.equals("attributeChanged")
+				|| type.equals("attributeRemoved"))
+			sendAttributeEvent();
+		else
+			throw error(String.format("unknown type \"%s\"", type));
+	}
+
+	protected void sendAttributeEvent() throws IOException {
+		required(element, "element");
+		required(key, "key");
+
+		boolean removed = type.equals("attributeRemoved");
+		boolean changed = type.equals("attributeChanged");
+
+		if (!removed && !hasValue)
+			throw error("missing value");
+
+		if (element.equals("graph")) {
+			if (removed)
+				sendGraphAttributeRemoved(sourceId, timeId++, key);
+			else if (changed)
+				sendGraphAttributeChanged(sourceId, timeId++, key, null, value);
+			else
+				sendGraphAttributeAdded(sourceId, timeId++, key, value);
+		} else if (element.equals("node")) {
+			required(id, "id");
+
+			if (removed)
+				sendNodeAttributeRemoved(sourceId, timeId++, id, key);
+			else if (changed)
+				sendNodeAttributeChanged(sourceId, timeId++, id, key, null,
+						value);
+			else
+				sendNodeAttributeAdded(sourceId, timeId++, id, key, value);
+		} else if (element.equals("edge")) {
+			required(id, "id");
+
+			if (removed)
+				sendEdgeAttributeRemoved(sourceId, timeId++, id, key);
+			else if (changed)
+				sendEdgeAttributeChanged(sourceId, timeId++, id, key, null,
+						value);
+			else
+				sendEdgeAttributeAdded(sourceId, timeId++, id, key, value);
+		} else
+			throw error(String.format("unknown element \"%s\"", element));
+	}
+
+	protected String required(String field, String name) throws IOException {
+		if (field == null)
+			throw error(String.format("missing %s", name));
+
+		return field;
+	}
+
+	/**
+	 * Read any JSON value. Objects become maps and arrays become arrays of
+	 * objects.
+	 */
+	protected Object readValue() throws IOException {
+		int c = peek();
+
+		if (c == '"')
+			return readString();
+
+		if (c == '{') {
+			LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+
+			read();
+			skipWhitespace();
+
+			if (accept('}'))
+				return map;
+
+			do {
+				skipWhitespace();
+				String k = readString();
+				skipWhitespace();
+				expect(':');
+				skipWhitespace();
+				map.put(k, readValue());
+				skipWhitespace();
+			} while (accept(','));
+
+			expect('}');
+
+			return map;
+		}
+
+		if (c == '[') {
+			ArrayList<Object> list = new ArrayList<Object>();
+
+			read();
+			skipWhitespace();
+
+			if (accept(']'))
+				return new Object[0];
+
+			do {
+				skipWhitespace();
+				list.add(readValue());
+				skipWhitespace();
+			} while (accept(','));
+
+			expect(']');
+
+			return list.toArray();
+		}
+
+		if (c == '-' || (c >= '0' && c <= '9'))
+			return readNumber();
+
+		if (c == 't') {
+			expectWord("true");
+			return Boolean.TRUE;
+		}
+
+		if (c == 'f') {
+			expectWord("false");
+			return Boolean.FALSE;
+		}
+
+		if (c == 'n') {
+			expectWord("null");
+			return null;
+		}
+
+		throw error("unexpected char");
+	}
+
+	protected Number readNumber() throws IOException {
+		boolean integer = true;
+		int c;
+
+		text.setLength(0);
+
+		while ((c = peek()) >= 0
+				&& ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.'
+						|| c == 'e' || c == 'E')) {
+			if (c == '.' || c == 'e' || c == 'E')
+				integer = false;
+
+			text.append((char) read());
+		}
+
+		try {
+			if (integer && text.length() < 19) {
+				long l = Long.parseLong(text.toString());
+
+				if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE)
+					return Integer.valueOf((int) l);
+
+				return Long.valueOf(l);
+			}
+
+			return Double.valueOf(text.toString());
+		} catch (NumberFormatException e) {
+			throw error(String.format("invalid number \"%s\"", text));
+		}
+	}
+
+	protected String readString() throws IOException {
+		expect('"');
+		text.setLength(0);
+
+		while (true) {
+			int c = read();
+
+			if (c < 0 || c == '\n')
+				throw error("unterminated string");
+
+			if (c == '"')
+				break;
+
+			if (c == '\\') {
+				c = read();
+
+				switch (c) {
+				case 'n':
+					text.append('\n');
+					break;
+				case 'r':
+					text.append('\r');
+					break;
+				case 't':
+					text.append('\t');
+					break;
+				case 'b':
+					text.append('\b');
+					break;
+				case 'f':
+					text.append('\f');
+					break;
+				case 'u':
+					int u = 0;
+
+					for (int i = 0; i < 4; i++) {
+						int d = Character.digit(read(), 16);
+
+						if (d < 0)
+							throw error("invalid unicode escape");
+
+						u = (u << 4) | d;
+					}
+
+					text.append((char) u);
+					break;
+				case '"':
+				case '\\':
+				case '/':
+					text.append((char) c);
+					break;
+				default:
+					throw error("invalid escape");
+				}
+			} else
+				text.append((char) c);
+		}
+
+		return text.toString();
+	}
+
+	protected void expectWord(String word) throws IOException {
+		for (int i = 0; i < word.length(); i++)
+			if (read() != word.charAt(i))
+				throw error(String.format("expecting %s", word));
+	}
+
+	protected void expect(char c) throws IOException {
+		if (read() != c)
+			throw error(String.format("expecting '%c'", c));
+	}
+
+	protected boolean accept(char c) throws IOException {
+		if (peek() == c) {
+			read();
+			return true;
+		}
+
+		return false;
+	}
+
+	protected void skipWhitespace() throws IOException {
+		int c;
+
+		while ((c = peek()) == ' ' || c == '\t' || c == '\n' || c == '\r')
+			read();
+	}
+
+	protected int peek() throws IOException {
+		if (position == length && !fill())
+			return -1;
+
+		return buffer[position];
+	}
+
+	protected int read() throws IOException {
+		if (position == length && !fill())
+			return -1;
+
+		char c = buffer[position++];
+
+		if (c == '\n')
+			line++;
+
+		return c;
+	}
+
+	protected boolean fill() throws IOException {
+		int r = reader.read(buffer, 0, buffer.length);
+
+		if (r <= 0)
+			return false;
+
+		position = 0;
+		length = r;
+
+		return true;
+	}
+
+	protected IOException error(String message) {
+		return new IOException(String.format("line %d: %s", line, message));
+	}
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.graphstream.stream.SourceBase;
+import org.graphstream.stream.file.FileSource;
+
+/**
+ * A source reading snapshots written by {@link FileSinkSnapshot}.
+ *
+ * When the snapshot is a file, it is mapped in memory and nothing is read when
+ * opening it but the header. Identifiers, edges and attributes are then read
+ * straight from the mapping when they are sent or requested with the
+ * accessors of this class, so a graph can be explored without being built.
+ * Snapshots read from a stream or an URL are copied in memory first.
+ *
+ * Events are sent in this order: attributes of the graph, then each node with
+ * its attributes, then each edge with its attributes. Each call to
+ * {@link #nextEvents()} sends one element.
+ *
+ * Mapped files are limited to 2GB.
+ *
+ * @see SnapshotFormat
+ */
+public class FileSourceSnapshot extends SourceBase implements FileSource {
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Content of the snapshot.
+	 */
+	protected ByteBuffer data;
+
+	/**
+	 * Header.
+	 */
+	protected int nodeCount, edgeCount, stringCount, columnCount;
+	protected int stringOffsets, stringBlob, edgeSources, edgeTargets,
+			directed, csrOffsets, csrEdges, columns;
+
+	/**
+	 * Columns, read from their descriptors.
+	 */
+	protected byte[] columnKinds, columnTypes;
+	protected String[] columnNames;
+	protected int[] columnPositions;
+
+	/**
+	 * Identifiers of nodes already read, they are needed again by edges.
+	 */
+	protected String[] nodeIds;
+
+	/**
+	 * Next element to send. 0 is the graph, then come nodes and edges.
+	 */
+	protected int next;
+
+	/**
+	 * Time id of the last sent event.
+	 */
+	protected long timeId;
+
+	/**
+	 * Reused to decode strings.
+	 */
+	protected byte[] scratch;
+
+	public FileSourceSnapshot() {
+		super(String.format("<snapshot %x>", System.nanoTime()));
+		scratch = new byte[256];
+	}
+
+	/**
+	 * Check if a file starts as a snapshot.
+	 *
+	 * @param fileName
+	 *            path of the file
+	 * @return true if this file is a snapshot
+	 */
+	public static boolean isSnapshot(String fileName) {
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(
+					fileName));
+
+			try {
+				byte[] magic = new byte[SnapshotFormat.MAGIC.length];
+				in.readFully(magic);
+
+				return Arrays.equals(magic, SnapshotFormat.MAGIC);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.lang.String)
+	 */
+	public void readAll(String fileName) throws IOException {
+		begin(fileName);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.net.URL)
+	 */
+	public void readAll(URL url) throws IOException {
+		begin(url);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.io.InputStream)
+	 */
+	public void readAll(InputStream stream) throws IOException {
+		begin(stream);
+		while (nextEvents())
+			;
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#readAll(java.io.Reader)
+	 */
+	public void readAll(Reader reader) throws IOException {
+		begin(reader);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.lang.String)
+	 */
+	public void begin(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+
+		try {
+			FileChannel channel = file.getChannel();
+
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException(String.format(
+						"%s: snapshots larger than 2GB can not be mapped",
+						fileName));
+
+			open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			//
+			// The mapping remains valid once the file is closed.
+			//
+			file.close();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.net.URL)
+	 */
+	public void begin(URL url) throws IOException {
+		begin(url.openStream());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.io.InputStream)
+	 */
+	public void begin(InputStream stream) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 16];
+		int r;
+
+		try {
+			while ((r = stream.read(buffer)) >= 0)
+				bytes.write(buffer, 0, r);
+		} finally {
+			stream.close();
+		}
+
+		open(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#begin(java.io.Reader)
+	 */
+	public void begin(Reader reader) throws IOException {
+		throw new IOException("snapshots are binary and need a file or a stream");
+	}
+
+	/**
+	 * Read the header and the column descriptors.
+	 */
+	protected void open(ByteBuffer buffer) throws IOException {
+		if (buffer.capacity() < SnapshotFormat.HEADER_SIZE)
+			throw new IOException("not a snapshot");
+
+		byte[] magic = new byte[SnapshotFormat.MAGIC.length];
+		buffer.get(magic);
+
+		if (!Arrays.equals(magic, SnapshotFormat.MAGIC))
+			throw new IOException("not a snapshot");
+
+		int version = buffer.getInt(8);
+
+		if (version != SnapshotFormat.VERSION)
+			throw new IOException(String.format(
+					"unsupported snapshot version %d", version));
+
+		data = buffer;
+		nodeCount = buffer.getInt(12);
+		edgeCount = buffer.getInt(16);
+		stringCount = buffer.getInt(20);
+		columnCount = buffer.getInt(24);
+
+		stringOffsets = position(0);
+		stringBlob = position(1);
+		edgeSources = position(2);
+		edgeTargets = position(3);
+		directed = position(4);
+		csrOffsets = position(5);
+		csrEdges = position(6);
+		columns = position(7);
+
+		columnKinds = new byte[columnCount];
+		columnTypes = new byte[columnCount];
+		columnNames = new String[columnCount];
+		columnPositions = new int[columnCount];
+
+		for (int c = 0; c < columnCount; c++) {
+			int p = columns + c * SnapshotFormat.COLUMN_SIZE;
+
+			columnKinds[c] = buffer.get(p);
+			columnTypes[c] = buffer.get(p + 1);
+			columnNames[c] = getString(buffer.getInt(p + 4));
+			columnPositions[c] = (int) buffer.getLong(p + 16);
+		}
+
+		nodeIds = new String[nodeCount];
+		next = 0;
+		timeId = 0;
+	}
+
+	protected int position(int section) throws IOException {
+		long p = data.getLong(32 + 8 * section);
+
+		if (p < 0 || p > data.capacity())
+			throw new IOException("corrupted snapshot");
+
+		return (int) p;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#nextEvents()
+	 */
+	public boolean nextEvents() throws IOException {
+		if (data == null)
+			return false;
+
+		if (next == 0) {
+			sendAttributes(SnapshotFormat.GRAPH, 0, null);
+		} else if (next <= nodeCount) {
+			int node = next - 1;
+			String id = getNodeId(node);
+
+			sendNodeAdded(sourceId, timeId++, id);
+			sendAttributes(SnapshotFormat.NODE, node, id);
+		} else if (next <= nodeCount + edgeCount) {
+			int edge = next - nodeCount - 1;
+			String id = getEdgeId(edge);
+
+			sendEdgeAdded(sourceId, timeId++, id,
+					getNodeId(getEdgeSource(edge)),
+					getNodeId(getEdgeTarget(edge)), isDirected(edge));
+			sendAttributes(SnapshotFormat.EDGE, edge, id);
+		} else
+			return false;
+
+		next++;
+
+		return next <= nodeCount + edgeCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#nextStep()
+	 */
+	public boolean nextStep() throws IOException {
+		while (nextEvents())
+			;
+
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSource#end()
+	 */
+	public void end() throws IOException {
+		data = null;
+		nodeIds = null;
+	}
+
+	protected void sendAttributes(byte kind, int index, String id) {
+		for (int c = 0; c < columnCount; c++) {
+			if (columnKinds[c] != kind)
+				continue;
+
+			Object value = getValue(c, index);
+
+			if (value == null)
+				continue;
+
+			switch (kind) {
+			case SnapshotFormat.GRAPH:
+				sendGraphAttributeAdded(sourceId, timeId++, columnNames[c],
+						value);
+				break;
+			case SnapshotFormat.NODE:
+				sendNodeAttributeAdded(sourceId, timeId++, id, columnNames[c],
+						value);
+				break;
+			case SnapshotFormat.EDGE:
+				sendEdgeAttributeAdded(sourceId, timeId++, id, columnNames[c],
+						value);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Value of a column for an element.
+	 *
+	 * @param column
+	 *            index of the column
+	 * @param index
+	 *            index of the element
+	 * @return the value, or null if the element has no value in this column
+	 */
+	protected Object getValue(int column, int index) {
+		int p = columnPositions[column];
+
+		switch (columnTypes[column]) {
+		case SnapshotFormat.DOUBLE:
+			double d = data.getDouble(p + 8 * index);
+			return Double.isNaN(d) ? null : d;
+		case SnapshotFormat.STRING:
+			int s = data.getInt(p + 4 * index);
+			return s < 0 ? null : getString(s);
+		case SnapshotFormat.VECTOR:
+			int length = 0;
+			double[] v = new double[3];
+
+			for (int i = 0; i < 3; i++) {
+				v[i] = data.getDouble(p + 24 * index + 8 * i);
+
+				if (!Double.isNaN(v[i]))
+					length = i + 1;
+			}
+
+			if (length == 0)
+				return null;
+
+			Object[] xyz = new Object[length];
+
+			for (int i = 0; i < length; i++)
+				xyz[i] = v[i];
+
+			return xyz;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Read a string of the string table.
+	 */
+	protected String getString(int index) {
+		int start = data.getInt(stringOffsets + 4 * index);
+		int length = data.getInt(stringOffsets + 4 * index + 4) - start;
+
+		if (scratch.length < length)
+			scratch = new byte[Math.max(length, 2 * scratch.length)];
+
+		for (int i = 0; i < length; i++)
+			scratch[i] = data.get(stringBlob + start + i);
+
+		return UTF8.decode(ByteBuffer.wrap(scratch, 0, length)).toString();
+	}
+
+	/**
+	 * Number of nodes of the snapshot.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Number of edges of the snapshot.
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Identifier of a node.
+	 */
+	public String getNodeId(int node) {
+		String id = nodeIds[node];
+
+		if (id == null) {
+			id = getString(node);
+			nodeIds[node] = id;
+		}
+
+		return id;
+	}
+
+	/**
+	 * Identifier of an edge.
+	 */
+	public String getEdgeId(int edge) {
+		return getString(nodeCount + edge);
+	}
+
+	/**
+	 * Index of the first node of an edge.
+	 */
+	public int getEdgeSource(int edge) {
+		return data.getInt(edgeSources + 4 * edge);
+	}
+
+	/**
+	 * Index of the second node of an edge.
+	 */
+	public int getEdgeTarget(int edge) {
+		return data.getInt(edgeTargets + 4 * edge);
+	}
+
+	/**
+	 * Check if an edge is directed.
+	 */
+	public boolean isDirected(int edge) {
+		return (data.get(directed + (edge >> 3)) & (1 << (edge & 7))) != 0;
+	}
+
+	/**
+	 * Number of edges whose first node is the given node.
+	 */
+	public int getOutDegree(int node) {
+		return data.getInt(csrOffsets + 4 * node + 4)
+				- data.getInt(csrOffsets + 4 * node);
+	}
+
+	/**
+	 * Edge of a node, among the edges whose first node is this node.
+	 *
+	 * @param node
+	 *            index of the node
+	 * @param i
+	 *            index of the edge, lower than the out degree of the node
+	 * @return index of the edge
+	 */
+	public int getOutEdge(int node, int i) {
+		return data.getInt(csrEdges + 4
+				* (data.getInt(csrOffsets + 4 * node) + i));
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.graphstream.tool.CancellationToken;
+
+/**
+ * An input stream on a file that is still growing, like "tail -f". When the
+ * end of the file is reached, reads block and the file is polled until new
+ * bytes are appended. The position in the file is kept, so bytes that have
+ * already been read are never read again.
+ *
+ * The stream only ends when it is closed, when {@link #stop()} is called,
+ * when the reading thread is interrupted or when its cancellation token, if
+ * any, is cancelled or timed out. Parsers reading this stream can thus
+ * follow a log that is continuously appended by another process.
+ */
+public class FollowingInputStream extends InputStream {
+	/**
+	 * Default delay between two polls of the file, in milliseconds.
+	 */
+	public static final long DEFAULT_POLL_DELAY = 200;
+
+	/**
+	 * The followed file.
+	 */
+	protected final File file;
+
+	/**
+	 * The stream on the file.
+	 */
+	protected FileInputStream in;
+
+	/**
+	 * Delay between two polls of the file.
+	 */
+	protected long pollDelay;
+
+	/**
+	 * Count of bytes read since the beginning of the file.
+	 */
+	protected long position;
+
+	/**
+	 * Flag set when the stream has to end.
+	 */
+	protected volatile boolean stopped;
+
+	/**
+	 * Token checked while waiting for data, null if none.
+	 */
+	protected CancellationToken token;
+
+	/**
+	 * Called when the end of the file is reached and reads start waiting,
+	 * null if none.
+	 */
+	protected Runnable idleListener;
+
+	public FollowingInputStream(File file) throws FileNotFoundException {
+		this(file, DEFAULT_POLL_DELAY);
+	}
+
+	public FollowingInputStream(File file, long pollDelay)
+			throws FileNotFoundException {
+		this.file = file;
+		this.in = new FileInputStream(file);
+		this.pollDelay = pollDelay;
+		this.position = 0;
+		this.stopped = false;
+	}
+
+	/**
+	 * Count of bytes read since the beginning of the file.
+	 *
+	 * @return the position in the file
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Set the token checked at each poll. Once it is cancelled, blocked and
+	 * next reads return the end of the stream, so the tool reading it gets
+	 * back to its main loop.
+	 *
+	 * @param token
+	 *            the token, or null if none
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		this.token = token;
+	}
+
+	/**
+	 * Set the task run in the reading thread each time the end of the file is
+	 * reached and reads start waiting for new bytes. Stages buffering events
+	 * can flush them there, so the events read so far are not held until the
+	 * file grows again.
+	 *
+	 * @param listener
+	 *            the task, or null if none
+	 */
+	public void setIdleListener(Runnable listener) {
+		this.idleListener = listener;
+	}
+
+	/**
+	 * Make blocked and next reads return the end of the stream. This can be
+	 * called from any thread.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read()
+	 */
+	public int read() throws IOException {
+		int r;
+
+		while ((r = in.read()) < 0) {
+			if (!waitForData())
+				return -1;
+		}
+
+		position++;
+		return r;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+
+		int r;
+
+		while ((r = in.read(b, off, len)) < 0) {
+			if (!waitForData())
+				return -1;
+		}
+
+		position += r;
+		return r;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#available()
+	 */
+	public int available() throws IOException {
+		return in.available();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#close()
+	 */
+	public void close() throws IOException {
+		stopped = true;
+		in.close();
+	}
+
+	/**
+	 * Wait until the file is longer than the current position. If the file
+	 * has been truncated, it is opened again and read from the start.
+	 *
+	 * @return false if the stream has to end
+	 */
+	protected boolean waitForData() throws IOException {
+		boolean idle = false;
+
+		while (!stopped) {
+			if (token != null && token.check(0) != null)
+				return false;
+
+			long length = file.length();
+
+			if (length > position)
+				return true;
+
+			if (length < position) {
+				in.close();
+				in = new FileInputStream(file);
+				position = 0;
+
+				if (length > 0)
+					return true;
+			}
+
+			if (!idle && idleListener != null) {
+				idleListener.run();
+				idle = true;
+			}
+
+			try {
+				Thread.sleep(pollDelay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import org.graphstream.stream.SinkAdapter;
+
+/**
+ * A sink computing a hash of the graph which does not depend on the order of
+ * its elements. Each node, edge and attribute has a 64 bits hash and the hash
+ * of the graph is the sum of the hashes of its elements. Two streams leading
+ * to the same graph have the same fingerprint, whatever the order of their
+ * events and their intermediate states.
+ *
+ * The sink keeps only the live elements: their identifiers in an
+ * {@link IdIndex}, their hashes, and the hashes of their attributes if
+ * attributes are included. Indices of removed elements are given again to
+ * the next added ones. As in {@link StructureValidator}, edges record the
+ * generation of their nodes, so edges removed with a node are found later
+ * rather than when the node is removed: they are skipped when the fingerprint
+ * is computed, and released by a sweep once the edge index has doubled since
+ * the previous sweep. Memory thus follows the count of live elements and not
+ * the length of the stream.
+ *
+ * Numbers are hashed as doubles, so 1 and 1.0 are the same value, and
+ * undirected edges have the same hash whatever the order of their nodes.
+ */
+public class GraphFingerprint extends SinkAdapter {
+	protected final boolean attributes;
+	protected final boolean edgeIds;
+
+	protected final IdIndex nodes;
+	protected final BitSet nodeAlive;
+	protected int[] generations;
+	protected long[] nodeHashes;
+	protected final ArrayList<HashMap<String, Long>> nodeAttributes;
+
+	protected final IdIndex edges;
+	protected final BitSet edgeAlive;
+	protected int[] ends;
+	protected long[] edgeHashes;
+	protected final ArrayList<HashMap<String, Long>> edgeAttributes;
+
+	protected final HashMap<String, Long> graphAttributes;
+
+	/**
+	 * Size of the edge index triggering the next sweep.
+	 */
+	protected int sweepThreshold;
+
+	/**
+	 * @param attributes
+	 *            include attributes in the fingerprint
+	 * @param edgeIds
+	 *            include identifiers of edges in the fingerprint, without them
+	 *            edges are only defined by their nodes
+	 */
+	public GraphFingerprint(boolean attributes, boolean edgeIds) {
+		this.attributes = attributes;
+		this.edgeIds = edgeIds;
+		this.nodes = new IdIndex();
+		this.nodeAlive = new BitSet();
+		this.nodeAttributes = new ArrayList<HashMap<String, Long>>();
+		this.edges = new IdIndex();
+		this.edgeAlive = new BitSet();
+		this.edgeAttributes = new ArrayList<HashMap<String, Long>>();
+		this.graphAttributes = new HashMap<String, Long>();
+
+		reset();
+	}
+
+	protected void reset() {
+		nodes.clear();
+		nodeAlive.clear();
+		generations = new int[64];
+		nodeHashes = new long[64];
+		nodeAttributes.clear();
+		edges.clear();
+		edgeAlive.clear();
+		ends = new int[256];
+		edgeHashes = new long[64];
+		edgeAttributes.clear();
+		graphAttributes.clear();
+		sweepThreshold = 64;
+	}
+
+	/**
+	 * Fingerprint of the current graph.
+	 */
+	public long getFingerprint() {
+		long sum = 0;
+
+		for (int i = nodeAlive.nextSetBit(0); i >= 0; i = nodeAlive
+				.nextSetBit(i + 1))
+			sum += nodeHashes[i] + sum(nodeAttributes.get(i));
+
+		for (int i = edgeAlive.nextSetBit(0); i >= 0; i = edgeAlive
+				.nextSetBit(i + 1))
+			if (edgeExists(i))
+				sum += edgeHashes[i] + sum(edgeAttributes.get(i));
+
+		sum += sum(graphAttributes);
+
+		return mix(sum);
+	}
+
+	/**
+	 * Fingerprint of the current graph, as 16 hexadecimal digits.
+	 */
+	public String getFingerprintString() {
+		return String.format("%016x", getFingerprint());
+	}
+
+	/**
+	 * Check that an edge has not been removed, nor its nodes.
+	 */
+	protected boolean edgeExists(int edge) {
+		if (edge < 0 || !edgeAlive.get(edge))
+			return false;
+
+		int p = 4 * edge;
+
+		return nodeAlive.get(ends[p]) && generations[ends[p]] == ends[p + 1]
+				&& nodeAlive.get(ends[p + 2])
+				&& generations[ends[p + 2]] == ends[p + 3];
+	}
+
+	protected static long sum(HashMap<String, Long> hashes) {
+		long sum = 0;
+
+		if (hashes != null)
+			for (Long h : hashes.values())
+				sum += h;
+
+		return sum;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAdded(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		int node = nodes.add(nodeId);
+
+		if (node == generations.length) {
+			int[] g = new int[2 * node];
+			long[] h = new long[2 * node];
+
+			System.arraycopy(generations, 0, g, 0, node);
+			System.arraycopy(nodeHashes, 0, h, 0, node);
+			generations = g;
+			nodeHashes = h;
+		}
+
+		if (node == nodeAttributes.size())
+			nodeAttributes.add(null);
+		else if (nodeAlive.get(node))
+			return;
+
+		nodeHashes[node] = mix(1, hash(nodeId));
+		nodeAttributes.set(node, null);
+		nodeAlive.set(node);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		int node = nodes.get(nodeId);
+
+		if (node >= 0 && nodeAlive.get(node)) {
+			//
+			// The generation is kept when the index is given again, so edges
+			// of the removed node still see it as removed.
+			//
+			nodes.remove(nodeId);
+			nodeAlive.clear(node);
+			nodeAttributes.set(node, null);
+			generations[node]++;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		int from = nodes.get(fromNodeId);
+		int to = nodes.get(toNodeId);
+
+		if (from < 0 || to < 0 || !nodeAlive.get(from) || !nodeAlive.get(to)
+				|| edgeExists(edges.get(edgeId)))
+			return;
+
+		if (edges.size() >= sweepThreshold)
+			sweep();
+
+		int edge = edges.add(edgeId);
+
+		if (4 * edge + 4 > ends.length) {
+			int[] grown = new int[2 * ends.length];
+			System.arraycopy(ends, 0, grown, 0, ends.length);
+			ends = grown;
+		}
+
+		if (edge == edgeHashes.length) {
+			long[] grown = new long[2 * edge];
+			System.arraycopy(edgeHashes, 0, grown, 0, edge);
+			edgeHashes = grown;
+		}
+
+		if (edge == edgeAttributes.size())
+			edgeAttributes.add(null);
+
+		long f = hash(fromNodeId);
+		long t = hash(toNodeId);
+		long h = directed ? mix(2, mix(f, t)) : mix(3, f + t);
+
+		if (edgeIds)
+			h = mix(h, hash(edgeId));
+
+		int p = 4 * edge;
+
+		ends[p] = from;
+		ends[p + 1] = generations[from];
+		ends[p + 2] = to;
+		ends[p + 3] = generations[to];
+		edgeHashes[edge] = h;
+		edgeAttributes.set(edge, null);
+		edgeAlive.set(edge);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		int edge = edges.get(edgeId);
+
+		if (edge >= 0)
+			release(edge);
+	}
+
+	/**
+	 * Release an edge.
+	 */
+	protected void release(int edge) {
+		edges.remove(edges.getId(edge));
+		edgeAlive.clear(edge);
+		edgeAttributes.set(edge, null);
+	}
+
+	/**
+	 * Release the edges which have been removed with one of their nodes.
+	 */
+	protected void sweep() {
+		for (int i = edgeAlive.nextSetBit(0); i >= 0; i = edgeAlive
+				.nextSetBit(i + 1))
+			if (!edgeExists(i))
+				release(i);
+
+		sweepThreshold = Math.max(64, 2 * edges.size());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphCleared(java.lang.String,
+	 * long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		reset();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.Object)
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		if (attributes)
+			graphAttributes.put(attribute, attributeHash(0, attribute, value));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.Object, java.lang.Object)
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		graphAttributeAdded(sourceId, timeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		graphAttributes.remove(attribute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		int node = nodes.get(nodeId);
+
+		if (attributes && node >= 0 && nodeAlive.get(node))
+			nodeAttributes.set(node, put(nodeAttributes.get(node), attribute,
+					attributeHash(nodeHashes[node], attribute, value)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		nodeAttributeAdded(sourceId, timeId, nodeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		int node = nodes.get(nodeId);
+
+		if (node >= 0 && nodeAttributes.get(node) != null)
+			nodeAttributes.get(node).remove(attribute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		int edge = edges.get(edgeId);
+
+		if (attributes && edgeExists(edge))
+			edgeAttributes.set(edge, put(edgeAttributes.get(edge), attribute,
+					attributeHash(edgeHashes[edge], attribute, value)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		edgeAttributeAdded(sourceId, timeId, edgeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		int edge = edges.get(edgeId);
+
+		if (edge >= 0 && edgeAttributes.get(edge) != null)
+			edgeAttributes.get(edge).remove(attribute);
+	}
+
+	protected static HashMap<String, Long> put(HashMap<String, Long> hashes,
+			String attribute, long hash) {
+		if (hashes == null)
+			hashes = new HashMap<String, Long>(4);
+
+		hashes.put(attribute, hash);
+
+		return hashes;
+	}
+
+	protected static long attributeHash(long element, String attribute,
+			Object value) {
+		return mix(mix(4, element), mix(hash(attribute), valueHash(value)));
+	}
+
+	protected static long valueHash(Object value) {
+		if (value == null)
+			return 0;
+
+		if (value instanceof Number)
+			return mix(5, Double.doubleToLongBits(((Number) value)
+					.doubleValue()));
+
+		if (value instanceof Boolean)
+			return ((Boolean) value) ? 6 : 7;
+
+		if (value.getClass().isArray()) {
+			long h = 8;
+			int length = Array.getLength(value);
+
+			for (int i = 0; i < length; i++)
+				h = mix(h, valueHash(Array.get(value, i)));
+
+			return h;
+		}
+
+		return hash(value.toString());
+	}
+
+	/**
+	 * 64 bits FNV-1a hash of the chars of a string.
+	 */
+	protected static long hash(String s) {
+		long h = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+
+		return mix(h);
+	}
+
+	protected static long mix(long a, long b) {
+		return mix(a * 0x9e3779b97f4a7c15L + b);
+	}
+
+	/**
+	 * Finalizer of SplitMix64, spreading each bit of the input on the output.
+	 */
+	protected static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
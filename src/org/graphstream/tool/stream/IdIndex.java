@@ -0,0 +1,249 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+/**
+ * Gives a dense integer index to each distinct identifier. Identifiers are
+ * kept once, in an open addressing table, so tracking millions of elements
+ * costs their strings plus a few ints each, and per-element state can be kept
+ * in arrays or bit sets indexed by the identifier.
+ *
+ * Indices are given in order of addition. An identifier can be removed, its
+ * index is then given again to the next added identifier, so the size of the
+ * arrays follows the count of identifiers in the index and not the count of
+ * identifiers ever added.
+ */
+public class IdIndex {
+	/**
+	 * Identifiers, by index.
+	 */
+	protected String[] ids;
+
+	/**
+	 * Hash table, containing index + 1 of each identifier, 0 for empty slots.
+	 */
+	protected int[] table;
+
+	/**
+	 * Count of identifiers.
+	 */
+	protected int size;
+
+	/**
+	 * Count of indices used, including released ones.
+	 */
+	protected int limit;
+
+	/**
+	 * Released indices, to be given again.
+	 */
+	protected int[] free;
+
+	/**
+	 * Count of released indices.
+	 */
+	protected int freeCount;
+
+	public IdIndex() {
+		clear();
+	}
+
+	/**
+	 * Remove all identifiers.
+	 */
+	public void clear() {
+		ids = new String[64];
+		table = new int[128];
+		size = 0;
+		limit = 0;
+		free = new int[16];
+		freeCount = 0;
+	}
+
+	/**
+	 * Count of identifiers.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Upper bound of the indices given so far, arrays indexed by identifier
+	 * need this size.
+	 */
+	public int limit() {
+		return limit;
+	}
+
+	/**
+	 * Identifier of an index, null if the index has been released.
+	 */
+	public String getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * Index of an identifier.
+	 *
+	 * @return the index or -1 if the identifier is not in the index
+	 */
+	public int get(String id) {
+		int mask = table.length - 1;
+		int slot = hash(id) & mask;
+		int i;
+
+		while ((i = table[slot]) != 0) {
+			if (ids[i - 1].equals(id))
+				return i - 1;
+
+			slot = (slot + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Index of an identifier, added if needed.
+	 */
+	public int add(String id) {
+		int mask = table.length - 1;
+		int slot = hash(id) & mask;
+		int i;
+
+		while ((i = table[slot]) != 0) {
+			if (ids[i - 1].equals(id))
+				return i - 1;
+
+			slot = (slot + 1) & mask;
+		}
+
+		int index;
+
+		if (freeCount > 0)
+			index = free[--freeCount];
+		else {
+			if (limit == ids.length) {
+				String[] grown = new String[2 * limit];
+				System.arraycopy(ids, 0, grown, 0, limit);
+				ids = grown;
+			}
+
+			index = limit++;
+		}
+
+		ids[index] = id;
+		table[slot] = index + 1;
+		size++;
+
+		if (2 * size > table.length)
+			rehash();
+
+		return index;
+	}
+
+	/**
+	 * Remove an identifier. Its index is released and will be given to a next
+	 * added identifier.
+	 *
+	 * @return the released index or -1 if the identifier is not in the index
+	 */
+	public int remove(String id) {
+		int mask = table.length - 1;
+		int slot = hash(id) & mask;
+		int i;
+
+		while ((i = table[slot]) != 0) {
+			if (ids[i - 1].equals(id))
+				break;
+
+			slot = (slot + 1) & mask;
+		}
+
+		if (i == 0)
+			return -1;
+
+		//
+		// Entries following the removed one in its cluster are shifted back,
+		// so that lookups never stop on an empty slot before their entry.
+		//
+		int hole = slot;
+		int next = (slot + 1) & mask;
+		int j;
+
+		while ((j = table[next]) != 0) {
+			int home = hash(ids[j - 1]) & mask;
+
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				table[hole] = j;
+				hole = next;
+			}
+
+			next = (next + 1) & mask;
+		}
+
+		table[hole] = 0;
+		ids[i - 1] = null;
+		size--;
+
+		if (freeCount == free.length) {
+			int[] grown = new int[2 * freeCount];
+			System.arraycopy(free, 0, grown, 0, freeCount);
+			free = grown;
+		}
+
+		free[freeCount++] = i - 1;
+
+		return i - 1;
+	}
+
+	protected void rehash() {
+		table = new int[2 * table.length];
+		int mask = table.length - 1;
+
+		for (int i = 0; i < limit; i++) {
+			if (ids[i] == null)
+				continue;
+
+			int slot = hash(ids[i]) & mask;
+
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+
+			table[slot] = i + 1;
+		}
+	}
+
+	protected static int hash(String id) {
+		int h = id.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
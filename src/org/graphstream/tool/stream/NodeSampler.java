@@ -0,0 +1,308 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.graphstream.stream.PipeBase;
+
+/**
+ * A stage keeping a fraction of the nodes, and only edges between kept nodes.
+ * Nodes are selected by a hash of their id, so the same nodes are kept all
+ * along the stream and from one run to another, whatever the order of the
+ * events. The sample is consistent: a node is either always present or never.
+ *
+ * The only state is the set of kept edges, indexed by their nodes so that
+ * edges removed with a node are forgotten too. Memory is bounded by the size
+ * of the sample.
+ */
+public class NodeSampler extends PipeBase {
+	/**
+	 * Nodes whose hash is below this threshold are kept.
+	 */
+	protected final long threshold;
+
+	/**
+	 * Salt of the hash, different seeds select different samples.
+	 */
+	protected final int seed;
+
+	/**
+	 * Edges whose nodes are both kept, with their nodes.
+	 */
+	protected final HashMap<String, String[]> keptEdges;
+
+	/**
+	 * Kept edges of each kept node.
+	 */
+	protected final HashMap<String, HashSet<String>> keptByNode;
+
+	/**
+	 * Create a sampler.
+	 *
+	 * @param fraction
+	 *            part of the nodes to keep, between 0 and 1
+	 * @param seed
+	 *            salt of the hash
+	 */
+	public NodeSampler(double fraction, int seed) {
+		if (fraction < 0 || fraction > 1)
+			throw new IllegalArgumentException("fraction");
+
+		this.threshold = (long) (fraction * (1L << 31));
+		this.seed = seed;
+		this.keptEdges = new HashMap<String, String[]>();
+		this.keptByNode = new HashMap<String, HashSet<String>>();
+	}
+
+	public NodeSampler(double fraction) {
+		this(fraction, 0);
+	}
+
+	/**
+	 * Check if a node is in the sample.
+	 *
+	 * @param nodeId
+	 *            id of the node
+	 * @return true if the node is kept
+	 */
+	public boolean isKept(String nodeId) {
+		int h = nodeId.hashCode() ^ seed;
+
+		//
+		// Mix bits so close ids, like "n1" and "n2", are spread.
+		//
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+
+		return (h & 0x7fffffffL) < threshold;
+	}
+
+	/**
+	 * Remember an edge whose nodes are both kept.
+	 */
+	protected void keepEdge(String edgeId, String fromNodeId, String toNodeId) {
+		forgetEdge(edgeId);
+		keptEdges.put(edgeId, new String[] { fromNodeId, toNodeId });
+
+		for (String nodeId : keptEdges.get(edgeId)) {
+			HashSet<String> kept = keptByNode.get(nodeId);
+
+			if (kept == null) {
+				kept = new HashSet<String>();
+				keptByNode.put(nodeId, kept);
+			}
+
+			kept.add(edgeId);
+		}
+	}
+
+	/**
+	 * Forget a kept edge.
+	 *
+	 * @return false if the edge was not kept
+	 */
+	protected boolean forgetEdge(String edgeId) {
+		String[] ends = keptEdges.remove(edgeId);
+
+		if (ends == null)
+			return false;
+
+		for (String nodeId : ends) {
+			HashSet<String> kept = keptByNode.get(nodeId);
+
+			if (kept != null) {
+				kept.remove(edgeId);
+
+				if (kept.isEmpty())
+					keptByNode.remove(nodeId);
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#graphCleared(java.lang.String, long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		keptEdges.clear();
+		keptByNode.clear();
+		sendGraphCleared(sourceId, timeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAdded(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		if (isKept(nodeId))
+			sendNodeAdded(sourceId, timeId, nodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		if (isKept(nodeId)) {
+			//
+			// Edges are removed with their nodes, without their own event.
+			//
+			HashSet<String> kept = keptByNode.get(nodeId);
+
+			if (kept != null) {
+				for (String edgeId : kept.toArray(new String[kept.size()]))
+					forgetEdge(edgeId);
+			}
+
+			sendNodeRemoved(sourceId, timeId, nodeId);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAdded(java.lang.String, long,
+	 * java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (isKept(fromNodeId) && isKept(toNodeId)) {
+			keepEdge(edgeId, fromNodeId, toNodeId);
+			sendEdgeAdded(sourceId, timeId, edgeId, fromNodeId, toNodeId,
+					directed);
+		} else
+			forgetEdge(edgeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		if (forgetEdge(edgeId))
+			sendEdgeRemoved(sourceId, timeId, edgeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		if (isKept(nodeId))
+			sendNodeAttributeAdded(sourceId, timeId, nodeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		if (isKept(nodeId))
+			sendNodeAttributeChanged(sourceId, timeId, nodeId, attribute,
+					oldValue, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		if (isKept(nodeId))
+			sendNodeAttributeRemoved(sourceId, timeId, nodeId, attribute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		if (keptEdges.containsKey(edgeId))
+			sendEdgeAttributeAdded(sourceId, timeId, edgeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		if (keptEdges.containsKey(edgeId))
+			sendEdgeAttributeChanged(sourceId, timeId, edgeId, attribute,
+					oldValue, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		if (keptEdges.containsKey(edgeId))
+			sendEdgeAttributeRemoved(sourceId, timeId, edgeId, attribute);
+	}
+}
@@ -0,0 +1,735 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.graphstream.stream.SinkAdapter;
+
+/**
+ * A sink reducing a stream of events to the state of the graph at a given
+ * step, without building the graph. Events are written to partition files,
+ * chosen by a hash of the identifier of the element, so the state of one
+ * partition can later be loaded with {@link #loadNodes(int)} and
+ * {@link #loadEdges(int)} while the other partitions stay on disk.
+ *
+ * Only the existence of nodes is kept in memory, in an {@link IdIndex}, with
+ * the last time each node has been removed. It is needed to find the edges
+ * removed with their nodes, which may be in another partition. Attributes of
+ * the graph are kept in memory too.
+ *
+ * Events received after the first step greater than the limit are ignored, see
+ * {@link #isDone()}.
+ */
+public class PartitionedState extends SinkAdapter {
+	/*
+	 * Types of records.
+	 */
+	protected static final byte ADD = 1;
+	protected static final byte REMOVE = 2;
+	protected static final byte SET = 3;
+	protected static final byte UNSET = 4;
+
+	/*
+	 * Types of values.
+	 */
+	protected static final byte NULL = 0;
+	protected static final byte BOOLEAN = 1;
+	protected static final byte LONG = 2;
+	protected static final byte DOUBLE = 3;
+	protected static final byte STRING = 4;
+	protected static final byte ARRAY = 5;
+
+	/**
+	 * State of a node or an edge.
+	 */
+	public static class Element {
+		public final String id;
+		public String from, to;
+		public boolean directed;
+		public long added;
+		public final LinkedHashMap<String, Object> attributes;
+
+		public Element(String id) {
+			this.id = id;
+			this.attributes = new LinkedHashMap<String, Object>();
+		}
+	}
+
+	protected final File[] nodeFiles, edgeFiles;
+	protected DataOutputStream[] nodeOut, edgeOut;
+
+	protected final double stepLimit;
+	protected boolean done;
+
+	/**
+	 * Index of the current event.
+	 */
+	protected long time;
+
+	/**
+	 * Index of the last clear event, events before it are ignored.
+	 */
+	protected long cleared;
+
+	protected final IdIndex nodes;
+	protected final BitSet alive;
+	protected long[] removed;
+
+	protected final LinkedHashMap<String, Object> graphAttributes;
+
+	/**
+	 * Error raised while writing partitions. Sink methods can not throw it, it
+	 * is thrown by {@link #close()}.
+	 */
+	protected IOException failure;
+
+	/**
+	 * Create a state spilled in the given directory.
+	 *
+	 * @param directory
+	 *            directory of the partition files
+	 * @param prefix
+	 *            prefix of the partition files
+	 * @param partitions
+	 *            count of partitions of nodes and of edges
+	 * @param stepLimit
+	 *            events after this step are ignored, use NaN to keep all
+	 *            events
+	 */
+	public PartitionedState(File directory, String prefix, int partitions,
+			double stepLimit) throws IOException {
+		this.stepLimit = stepLimit;
+		this.done = false;
+		this.time = 0;
+		this.cleared = -1;
+		this.nodes = new IdIndex();
+		this.alive = new BitSet();
+		this.removed = new long[64];
+		this.failure = null;
+		this.graphAttributes = new LinkedHashMap<String, Object>();
+
+		Arrays.fill(removed, -1);
+
+		nodeFiles = new File[partitions];
+		edgeFiles = new File[partitions];
+		nodeOut = new DataOutputStream[partitions];
+		edgeOut = new DataOutputStream[partitions];
+
+		try {
+			for (int i = 0; i < partitions; i++) {
+				nodeFiles[i] = new File(directory, String.format(
+						"%s-nodes-%d", prefix, i));
+				edgeFiles[i] = new File(directory, String.format(
+						"%s-edges-%d", prefix, i));
+				nodeOut[i] = open(nodeFiles[i]);
+				edgeOut[i] = open(edgeFiles[i]);
+			}
+		} catch (IOException e) {
+			delete();
+			throw e;
+		}
+	}
+
+	protected static DataOutputStream open(File file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+	}
+
+	/**
+	 * Count of partitions.
+	 */
+	public int getPartitionCount() {
+		return nodeFiles.length;
+	}
+
+	/**
+	 * Check if a step greater than the limit has been received.
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Attributes of the graph.
+	 */
+	public Map<String, Object> getGraphAttributes() {
+		return graphAttributes;
+	}
+
+	/**
+	 * Check if a node exists in the state.
+	 */
+	public boolean hasNode(String nodeId) {
+		int node = nodes.get(nodeId);
+		return node >= 0 && alive.get(node);
+	}
+
+	/**
+	 * Identifiers of the existing nodes, in order of first addition.
+	 */
+	public Iterable<String> getNodeIds() {
+		ArrayList<String> ids = new ArrayList<String>();
+
+		for (int i = alive.nextSetBit(0); i >= 0; i = alive.nextSetBit(i + 1))
+			ids.add(nodes.getId(i));
+
+		return ids;
+	}
+
+	/**
+	 * Partition of an element.
+	 */
+	public int partition(String id) {
+		int h = id.hashCode();
+		h ^= h >>> 16;
+
+		return (h & 0x7FFFFFFF) % nodeFiles.length;
+	}
+
+	/**
+	 * Close the partition files, they can then be loaded.
+	 *
+	 * @throws IOException
+	 *             if a partition could not be written
+	 */
+	public void close() throws IOException {
+		for (int i = 0; i < nodeOut.length; i++) {
+			nodeOut[i].close();
+			edgeOut[i].close();
+		}
+
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Delete the partition files. Files still open, because the state has not
+	 * been closed after a failure, are closed before.
+	 */
+	public void delete() {
+		for (int i = 0; i < nodeFiles.length; i++) {
+			closeQuietly(nodeOut[i]);
+			closeQuietly(edgeOut[i]);
+
+			if (nodeFiles[i] != null)
+				nodeFiles[i].delete();
+
+			if (edgeFiles[i] != null)
+				edgeFiles[i].delete();
+		}
+	}
+
+	protected static void closeQuietly(DataOutputStream out) {
+		if (out == null)
+			return;
+
+		try {
+			out.close();
+		} catch (IOException e) {
+			// Ignore
+		}
+	}
+
+	/**
+	 * Load the nodes of a partition, in order of addition.
+	 */
+	public LinkedHashMap<String, Element> loadNodes(int partition)
+			throws IOException {
+		return load(nodeFiles[partition], false);
+	}
+
+	/**
+	 * Load the edges of a partition, in order of addition. Edges removed with
+	 * one of their nodes are not loaded.
+	 */
+	public LinkedHashMap<String, Element> loadEdges(int partition)
+			throws IOException {
+		return load(edgeFiles[partition], true);
+	}
+
+	protected LinkedHashMap<String, Element> load(File file, boolean edges)
+			throws IOException {
+		LinkedHashMap<String, Element> elements = new LinkedHashMap<String, Element>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), 1 << 16));
+
+		try {
+			while (true) {
+				byte type;
+
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+
+				long t = in.readLong();
+				String id = in.readUTF();
+				Element e;
+
+				switch (type) {
+				case ADD:
+					e = new Element(id);
+					e.added = t;
+
+					if (edges) {
+						e.from = in.readUTF();
+						e.to = in.readUTF();
+						e.directed = in.readBoolean();
+					}
+
+					if (t > cleared) {
+						elements.remove(id);
+						elements.put(id, e);
+					}
+					break;
+				case REMOVE:
+					if (t > cleared)
+						elements.remove(id);
+					break;
+				case SET:
+					String key = in.readUTF();
+					Object value = readValue(in);
+					e = elements.get(id);
+
+					if (t > cleared && e != null)
+						e.attributes.put(key, value);
+					break;
+				case UNSET:
+					key = in.readUTF();
+					e = elements.get(id);
+
+					if (t > cleared && e != null)
+						e.attributes.remove(key);
+					break;
+				default:
+					throw new IOException("corrupted partition " + file);
+				}
+			}
+		} finally {
+			in.close();
+		}
+
+		if (edges) {
+			Element[] all = elements.values().toArray(
+					new Element[elements.size()]);
+
+			for (Element e : all)
+				if (!survives(e.from, e.added) || !survives(e.to, e.added))
+					elements.remove(e.id);
+		}
+
+		return elements;
+	}
+
+	/**
+	 * Check that a node has not been removed since the given time.
+	 */
+	protected boolean survives(String nodeId, long since) {
+		int node = nodes.get(nodeId);
+		return node >= 0 && alive.get(node) && removed[node] < since;
+	}
+
+	protected boolean accept() {
+		time++;
+		return !done && failure == null;
+	}
+
+	protected void write(DataOutputStream out, byte type, String id)
+			throws IOException {
+		out.writeByte(type);
+		out.writeLong(time);
+		out.writeUTF(id);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#stepBegins(java.lang.String,
+	 * long, double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		if (step > stepLimit)
+			done = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphCleared(java.lang.String,
+	 * long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		if (!accept())
+			return;
+
+		cleared = time;
+		alive.clear();
+		graphAttributes.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAdded(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		if (!accept())
+			return;
+
+		int node = nodes.add(nodeId);
+
+		if (node == removed.length) {
+			int old = removed.length;
+			long[] grown = new long[2 * old];
+			System.arraycopy(removed, 0, grown, 0, old);
+			removed = grown;
+			Arrays.fill(removed, old, removed.length, -1);
+		}
+
+		alive.set(node);
+
+		try {
+			write(nodeOut[partition(nodeId)], ADD, nodeId);
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		if (!accept())
+			return;
+
+		int node = nodes.get(nodeId);
+
+		if (node >= 0) {
+			alive.clear(node);
+			removed[node] = time;
+		}
+
+		try {
+			write(nodeOut[partition(nodeId)], REMOVE, nodeId);
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (!accept())
+			return;
+
+		try {
+			DataOutputStream out = edgeOut[partition(edgeId)];
+
+			write(out, ADD, edgeId);
+			out.writeUTF(fromNodeId);
+			out.writeUTF(toNodeId);
+			out.writeBoolean(directed);
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		if (!accept())
+			return;
+
+		try {
+			write(edgeOut[partition(edgeId)], REMOVE, edgeId);
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.Object)
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		if (accept())
+			graphAttributes.put(attribute, copy(value));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.Object, java.lang.Object)
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		graphAttributeAdded(sourceId, timeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		if (accept())
+			graphAttributes.remove(attribute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		set(nodeOut[partition(nodeId)], nodeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		set(nodeOut[partition(nodeId)], nodeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		unset(nodeOut[partition(nodeId)], nodeId, attribute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		set(edgeOut[partition(edgeId)], edgeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		set(edgeOut[partition(edgeId)], edgeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		unset(edgeOut[partition(edgeId)], edgeId, attribute);
+	}
+
+	protected void set(DataOutputStream out, String id, String attribute,
+			Object value) {
+		if (!accept())
+			return;
+
+		try {
+			write(out, SET, id);
+			out.writeUTF(attribute);
+			writeValue(out, value);
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	protected void unset(DataOutputStream out, String id, String attribute) {
+		if (!accept())
+			return;
+
+		try {
+			write(out, UNSET, id);
+			out.writeUTF(attribute);
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Copy a value as it would be read back from a partition, so values of
+	 * the graph and of elements are compared the same way.
+	 */
+	protected static Object copy(Object value) {
+		if (value == null || value instanceof Boolean
+				|| value instanceof String)
+			return value;
+
+		if (value instanceof Double || value instanceof Float)
+			return ((Number) value).doubleValue();
+
+		if (value instanceof Number)
+			return ((Number) value).longValue();
+
+		if (value.getClass().isArray()) {
+			Object[] copy = new Object[Array.getLength(value)];
+
+			for (int i = 0; i < copy.length; i++)
+				copy[i] = copy(Array.get(value, i));
+
+			return copy;
+		}
+
+		return value.toString();
+	}
+
+	protected static void writeValue(DataOutputStream out, Object value)
+			throws IOException {
+		if (value == null)
+			out.writeByte(NULL);
+		else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Double || value instanceof Float) {
+			out.writeByte(DOUBLE);
+			out.writeDouble(((Number) value).doubleValue());
+		} else if (value instanceof Number) {
+			out.writeByte(LONG);
+			out.writeLong(((Number) value).longValue());
+		} else if (value.getClass().isArray()) {
+			int length = Array.getLength(value);
+
+			out.writeByte(ARRAY);
+			out.writeInt(length);
+
+			for (int i = 0; i < length; i++)
+				writeValue(out, Array.get(value, i));
+		} else {
+			byte[] bytes = value.toString().getBytes("UTF-8");
+
+			out.writeByte(STRING);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	protected static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+
+		switch (type) {
+		case NULL:
+			return null;
+		case BOOLEAN:
+			return in.readBoolean();
+		case DOUBLE:
+			return in.readDouble();
+		case LONG:
+			return in.readLong();
+		case ARRAY:
+			Object[] array = new Object[in.readInt()];
+
+			for (int i = 0; i < array.length; i++)
+				array[i] = readValue(in);
+
+			return array;
+		case STRING:
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+
+			return new String(bytes, "UTF-8");
+		default:
+			throw new IOException("corrupted value");
+		}
+	}
+
+	/**
+	 * Compare two values read from partitions.
+	 */
+	public static boolean equals(Object a, Object b) {
+		return Arrays.deepEquals(new Object[] { a }, new Object[] { b });
+	}
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.graphstream.stream.PipeBase;
+
+/**
+ * A pipe keeping only the elements touched recently. An element is touched
+ * when it is added or when one of its attributes changes, touching an edge also
+ * touches its nodes. Elements that have not been touched in the last
+ * <code>window</code> steps, or whose last touch is older than
+ * <code>ttl</code> in step time, are removed when a new step begins.
+ *
+ * Elements are kept in buckets, one per step, each bucket being a linked list
+ * of elements last touched during this step. Touching an element moves it to
+ * the bucket of the current step, and expiring a bucket removes all its
+ * elements, so the cost of a step is proportional to the amount of evicted
+ * elements and the memory to the amount of live elements.
+ *
+ * Events on elements that have been evicted are dropped, except when a node
+ * is needed again: it is then added back before the event is sent.
+ */
+public class SlidingWindow extends PipeBase {
+	/**
+	 * Identifier used when sending evictions.
+	 */
+	protected final String id;
+
+	/**
+	 * Time id of the last sent eviction.
+	 */
+	protected long timeId;
+
+	/**
+	 * Maximum count of steps an element can stay untouched, 0 if unlimited.
+	 */
+	protected int window;
+
+	/**
+	 * Maximum step time an element can stay untouched, NaN if unlimited.
+	 */
+	protected double ttl;
+
+	/**
+	 * Live nodes.
+	 */
+	protected HashMap<String, Entry> nodes;
+
+	/**
+	 * Live edges.
+	 */
+	protected HashMap<String, Entry> edges;
+
+	/**
+	 * Oldest bucket.
+	 */
+	protected Bucket oldest;
+
+	/**
+	 * Bucket of the current step.
+	 */
+	protected Bucket current;
+
+	/**
+	 * Count of evicted elements since the creation of this pipe.
+	 */
+	protected long evicted;
+
+	/**
+	 * Create a new window.
+	 *
+	 * @param window
+	 *            maximum count of steps an element can stay untouched, 0 if
+	 *            unlimited
+	 * @param ttl
+	 *            maximum step time an element can stay untouched, NaN if
+	 *            unlimited
+	 */
+	public SlidingWindow(int window, double ttl) {
+		this("window", window, ttl);
+	}
+
+	public SlidingWindow(String id, int window, double ttl) {
+		this.id = id;
+		this.timeId = 0;
+		this.window = window;
+		this.ttl = ttl;
+		this.nodes = new HashMap<String, Entry>();
+		this.edges = new HashMap<String, Entry>();
+		this.current = new Bucket(0, Double.NaN);
+		this.oldest = current;
+	}
+
+	/**
+	 * Count of live nodes.
+	 *
+	 * @return nodes count
+	 */
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	/**
+	 * Count of live edges.
+	 *
+	 * @return edges count
+	 */
+	public int getEdgeCount() {
+		return edges.size();
+	}
+
+	/**
+	 * Count of elements evicted since the creation of this pipe.
+	 *
+	 * @return evicted elements count
+	 */
+	public long getEvictedCount() {
+		return evicted;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#stepBegins(java.lang.String, long,
+	 * double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		if (Double.isNaN(current.step))
+			current.step = step;
+
+		Bucket next = new Bucket(current.index + 1, step);
+		current.next = next;
+		current = next;
+
+		expire();
+
+		sendStepBegins(sourceId, timeId, step);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#graphCleared(java.lang.String, long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		nodes.clear();
+		edges.clear();
+		current = new Bucket(current.index, current.step);
+		oldest = current;
+
+		sendGraphCleared(sourceId, timeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAdded(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		Entry e = nodes.get(nodeId);
+
+		if (e == null) {
+			e = new Entry(nodeId, null, null);
+			nodes.put(nodeId, e);
+		}
+
+		touch(e);
+		sendNodeAdded(sourceId, timeId, nodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		Entry e = nodes.remove(nodeId);
+
+		if (e != null) {
+			//
+			// Edges of the node are removed with it downstream.
+			//
+			if (e.incident != null) {
+				for (Entry edge : e.incident) {
+					edges.remove(edge.id);
+					edge.unlink();
+					detach(edge, nodeId);
+				}
+			}
+
+			e.unlink();
+			sendNodeRemoved(sourceId, timeId, nodeId);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAdded(java.lang.String, long,
+	 * java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		Entry e = edges.get(edgeId);
+
+		if (e == null) {
+			e = new Entry(edgeId, fromNodeId, toNodeId);
+			edges.put(edgeId, e);
+		}
+
+		touchNode(fromNodeId);
+		touchNode(toNodeId);
+		attach(e);
+		touch(e);
+		sendEdgeAdded(sourceId, timeId, edgeId, fromNodeId, toNodeId, directed);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		Entry e = edges.remove(edgeId);
+
+		if (e != null) {
+			e.unlink();
+			detach(e, null);
+			sendEdgeRemoved(sourceId, timeId, edgeId);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		touchNode(nodeId);
+		sendNodeAttributeAdded(sourceId, timeId, nodeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		touchNode(nodeId);
+		sendNodeAttributeChanged(sourceId, timeId, nodeId, attribute, oldValue,
+				newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		Entry e = nodes.get(nodeId);
+
+		if (e != null) {
+			touch(e);
+			sendNodeAttributeRemoved(sourceId, timeId, nodeId, attribute);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		if (touchEdge(edgeId))
+			sendEdgeAttributeAdded(sourceId, timeId, edgeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		if (touchEdge(edgeId))
+			sendEdgeAttributeChanged(sourceId, timeId, edgeId, attribute,
+					oldValue, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		if (touchEdge(edgeId))
+			sendEdgeAttributeRemoved(sourceId, timeId, edgeId, attribute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#graphAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.Object)
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		sendGraphAttributeAdded(sourceId, timeId, attribute, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#graphAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.Object, java.lang.Object)
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		sendGraphAttributeChanged(sourceId, timeId, attribute, oldValue,
+				newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#graphAttributeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		sendGraphAttributeRemoved(sourceId, timeId, attribute);
+	}
+
+	/**
+	 * Touch a node. If the node has been evicted, it is added again.
+	 */
+	protected void touchNode(String nodeId) {
+		Entry e = nodes.get(nodeId);
+
+		if (e == null) {
+			e = new Entry(nodeId, null, null);
+			nodes.put(nodeId, e);
+			sendNodeAdded(id, timeId++, nodeId);
+		}
+
+		touch(e);
+	}
+
+	/**
+	 * Touch an edge and its nodes.
+	 *
+	 * @return false if the edge has been evicted
+	 */
+	protected boolean touchEdge(String edgeId) {
+		Entry e = edges.get(edgeId);
+
+		if (e == null)
+			return false;
+
+		touchNode(e.from);
+		touchNode(e.to);
+		touch(e);
+
+		return true;
+	}
+
+	/**
+	 * Register an edge in the incident edges of its nodes.
+	 */
+	protected void attach(Entry edge) {
+		nodes.get(edge.from).attach(edge);
+		nodes.get(edge.to).attach(edge);
+	}
+
+	/**
+	 * Remove an edge from the incident edges of its nodes, except the one
+	 * given which is being removed.
+	 */
+	protected void detach(Entry edge, String except) {
+		if (!edge.from.equals(except)) {
+			Entry n = nodes.get(edge.from);
+
+			if (n != null && n.incident != null)
+				n.incident.remove(edge);
+		}
+
+		if (!edge.to.equals(except)) {
+			Entry n = nodes.get(edge.to);
+
+			if (n != null && n.incident != null)
+				n.incident.remove(edge);
+		}
+	}
+
+	/**
+	 * Move an element to the bucket of the current step.
+	 */
+	protected void touch(Entry e) {
+		if (e.bucket == current)
+			return;
+
+		e.unlink();
+		current.push(e);
+	}
+
+	/**
+	 * Remove the elements of expired buckets. In a bucket, edges are removed
+	 * before nodes. Since touching an edge touches its nodes, edges of a node
+	 * are never in a more recent bucket than the node.
+	 */
+	protected void expire() {
+		while (oldest != current && isExpired(oldest)) {
+			Bucket b = oldest;
+
+			for (Entry e = b.edges; e != null; e = e.next) {
+				edges.remove(e.id);
+				detach(e, null);
+				sendEdgeRemoved(id, timeId++, e.id);
+				evicted++;
+			}
+
+			for (Entry e = b.nodes; e != null; e = e.next) {
+				nodes.remove(e.id);
+				sendNodeRemoved(id, timeId++, e.id);
+				evicted++;
+			}
+
+			oldest = b.next;
+			b.next = null;
+		}
+	}
+
+	/**
+	 * Check if elements of a bucket have to be evicted at the current step.
+	 */
+	protected boolean isExpired(Bucket b) {
+		if (window > 0 && b.index <= current.index - window)
+			return true;
+
+		if (!Double.isNaN(ttl) && b.step < current.step - ttl)
+			return true;
+
+		return false;
+	}
+
+	/**
+	 * Elements touched during a step. Nodes and edges are kept in two
+	 * separated lists.
+	 */
+	protected static class Bucket {
+		final long index;
+		double step;
+		Entry nodes;
+		Entry edges;
+		Bucket next;
+
+		Bucket(long index, double step) {
+			this.index = index;
+			this.step = step;
+		}
+
+		void push(Entry e) {
+			e.bucket = this;
+			e.prev = null;
+
+			if (e.from == null) {
+				e.next = nodes;
+				nodes = e;
+			} else {
+				e.next = edges;
+				edges = e;
+			}
+
+			if (e.next != null)
+				e.next.prev = e;
+		}
+	}
+
+	/**
+	 * A live element. Edges have their nodes ids, nodes have null instead and
+	 * know their incident edges.
+	 */
+	protected static class Entry {
+		final String id;
+		final String from;
+		final String to;
+		Bucket bucket;
+		Entry prev;
+		Entry next;
+		HashSet<Entry> incident;
+
+		Entry(String id, String from, String to) {
+			this.id = id;
+			this.from = from;
+			this.to = to;
+		}
+
+		void attach(Entry edge) {
+			if (incident == null)
+				incident = new HashSet<Entry>();
+
+			incident.add(edge);
+		}
+
+		void unlink() {
+			if (bucket == null)
+				return;
+
+			if (prev != null)
+				prev.next = next;
+			else if (from == null)
+				bucket.nodes = next;
+			else
+				bucket.edges = next;
+
+			if (next != null)
+				next.prev = prev;
+
+			bucket = null;
+			prev = null;
+			next = null;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+/**
+ * Layout of the snapshot files written by {@link FileSinkSnapshot} and read by
+ * {@link FileSourceSnapshot}.
+ *
+ * A snapshot is a static graph stored as arrays, so it can be mapped in memory
+ * and used without parsing. All numbers are big endian and each section
+ * starts on a multiple of 8 bytes. The header is:
+ *
+ * <pre>
+ * magic         8 bytes "GSSNAP01"
+ * version       int
+ * node count    int  n
+ * edge count    int  m
+ * string count  int  s
+ * column count  int  c
+ * reserved      int
+ * positions     long[8] of the sections below
+ * </pre>
+ *
+ * Sections are, in order of the positions:
+ * <ol>
+ * <li>string offsets, int[s + 1], offsets of each string in the blob;</li>
+ * <li>string blob, UTF-8 bytes of all strings. Strings 0 to n-1 are the
+ * identifiers of nodes, strings n to n+m-1 the identifiers of edges, then come
+ * column names and attribute values;</li>
+ * <li>edge sources, int[m], index of the first node of each edge;</li>
+ * <li>edge targets, int[m], index of the second node of each edge;</li>
+ * <li>directed flags, one bit per edge;</li>
+ * <li>CSR offsets, int[n + 1], edges of node i are from offsets[i] to
+ * offsets[i + 1] in the CSR edges;</li>
+ * <li>CSR edges, int[m], edges sorted by their first node;</li>
+ * <li>column descriptors, c times: kind byte, type byte, two bytes of padding,
+ * name as a string index, count of values, four bytes of padding and position
+ * of the values as a long.</li>
+ * </ol>
+ *
+ * Values of {@link #DOUBLE} columns are doubles, NaN for missing values.
+ * Values of {@link #STRING} columns are string indices, -1 for missing values.
+ * Values of {@link #VECTOR} columns are three doubles, NaN for missing
+ * coordinates.
+ */
+public final class SnapshotFormat {
+	public static final byte[] MAGIC = { 'G', 'S', 'S', 'N', 'A', 'P', '0', '1' };
+	public static final int VERSION = 1;
+
+	/**
+	 * Size of the header, in bytes.
+	 */
+	public static final int HEADER_SIZE = 96;
+
+	/**
+	 * Size of a column descriptor, in bytes.
+	 */
+	public static final int COLUMN_SIZE = 24;
+
+	/*
+	 * Kinds of columns.
+	 */
+	public static final byte GRAPH = 0;
+	public static final byte NODE = 1;
+	public static final byte EDGE = 2;
+
+	/*
+	 * Types of columns.
+	 */
+	public static final byte DOUBLE = 1;
+	public static final byte STRING = 2;
+	public static final byte VECTOR = 3;
+
+	private SnapshotFormat() {
+	}
+
+	/**
+	 * Round a position up to the next multiple of 8.
+	 */
+	public static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+}
@@ -0,0 +1,626 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.graphstream.stream.PipeBase;
+
+/**
+ * A pipe buffering the events of a step and sending only the net delta of this
+ * step when the next step begins.
+ *
+ * Dynamic traces often change the same attribute many times in one step. When
+ * this pipe is placed between a source and a displayed graph, only the last
+ * value of each attribute is sent, and elements that are added then removed in
+ * the same step are never sent at all. Remaining structural events keep their
+ * order. Attribute changes are sent after them, except when a node existing
+ * before the step is removed while attributes of edges are pending: these are
+ * sent before the removal, since the edges may be removed with the node.
+ *
+ * Events are sent again with the identifier of this pipe and a new time id,
+ * since their order is not the original one. Do not forget to call
+ * {@link #flush()} when the source is exhausted, else events of the last step
+ * stay in the buffer.
+ */
+public class StepCoalescer extends PipeBase {
+	/**
+	 * Identifier used when sending events.
+	 */
+	protected final String id;
+
+	/**
+	 * Time id of the last sent event.
+	 */
+	protected long timeId;
+
+	/**
+	 * Structural events of the current step, in their original order.
+	 */
+	protected ArrayList<StructuralEvent> structure;
+
+	/**
+	 * Nodes added in the current step.
+	 */
+	protected HashMap<String, StructuralEvent> addedNodes;
+
+	/**
+	 * Edges added in the current step.
+	 */
+	protected HashMap<String, StructuralEvent> addedEdges;
+
+	/**
+	 * Last value of graph attributes changed in the current step.
+	 */
+	protected LinkedHashMap<String, AttributeDelta> graphAttributes;
+
+	/**
+	 * Last value of node attributes changed in the current step.
+	 */
+	protected LinkedHashMap<String, LinkedHashMap<String, AttributeDelta>> nodeAttributes;
+
+	/**
+	 * Last value of edge attributes changed in the current step.
+	 */
+	protected LinkedHashMap<String, LinkedHashMap<String, AttributeDelta>> edgeAttributes;
+
+	/**
+	 * Count of events received since the creation of this pipe.
+	 */
+	protected volatile long received;
+
+	/**
+	 * Count of events sent since the creation of this pipe.
+	 */
+	protected volatile long sent;
+
+	/**
+	 * Value of the received events count when the buffer was last cleared.
+	 */
+	protected volatile long flushed;
+
+	public StepCoalescer() {
+		this("coalescer");
+	}
+
+	public StepCoalescer(String id) {
+		this.id = id;
+		this.timeId = 0;
+		this.structure = new ArrayList<StructuralEvent>();
+		this.addedNodes = new HashMap<String, StructuralEvent>();
+		this.addedEdges = new HashMap<String, StructuralEvent>();
+		this.graphAttributes = new LinkedHashMap<String, AttributeDelta>();
+		this.nodeAttributes = new LinkedHashMap<String, LinkedHashMap<String, AttributeDelta>>();
+		this.edgeAttributes = new LinkedHashMap<String, LinkedHashMap<String, AttributeDelta>>();
+	}
+
+	/**
+	 * Count of events received by this pipe.
+	 *
+	 * @return received events count
+	 */
+	public long getReceivedEventCount() {
+		return received;
+	}
+
+	/**
+	 * Count of events sent by this pipe. The difference with
+	 * {@link #getReceivedEventCount()} is the amount of events that have been
+	 * merged.
+	 *
+	 * @return sent events count
+	 */
+	public long getSentEventCount() {
+		return sent;
+	}
+
+	/**
+	 * Count of events received since the buffer was last flushed.
+	 *
+	 * @return buffered events count
+	 */
+	public long getBufferedEventCount() {
+		return received - flushed;
+	}
+
+	/**
+	 * Send the net delta of the buffered events and clear the buffer.
+	 */
+	public void flush() {
+		for (int i = 0; i < structure.size(); i++) {
+			StructuralEvent e = structure.get(i);
+
+			if (e.cancelled)
+				continue;
+
+			switch (e.type) {
+			case NODE_ADDED:
+				sendNodeAdded(id, timeId++, e.elementId);
+				break;
+			case NODE_REMOVED:
+				sendNodeRemoved(id, timeId++, e.elementId);
+				break;
+			case EDGE_ADDED:
+				sendEdgeAdded(id, timeId++, e.elementId, e.from, e.to,
+						e.directed);
+				break;
+			case EDGE_REMOVED:
+				sendEdgeRemoved(id, timeId++, e.elementId);
+				break;
+			case GRAPH_CLEARED:
+				sendGraphCleared(id, timeId++);
+				break;
+			case EDGE_ATTRIBUTES:
+				sendEdgeAttributes(e.elementId, e.attributes);
+				continue;
+			}
+
+			sent++;
+		}
+
+		for (AttributeDelta d : graphAttributes.values()) {
+			if (d.existed) {
+				if (d.removed)
+					sendGraphAttributeRemoved(id, timeId++, d.key);
+				else
+					sendGraphAttributeChanged(id, timeId++, d.key,
+							d.oldValue, d.value);
+			} else if (!d.removed)
+				sendGraphAttributeAdded(id, timeId++, d.key, d.value);
+			else
+				continue;
+
+			sent++;
+		}
+
+		for (Map.Entry<String, LinkedHashMap<String, AttributeDelta>> entry : nodeAttributes
+				.entrySet()) {
+			String nodeId = entry.getKey();
+
+			for (AttributeDelta d : entry.getValue().values()) {
+				if (d.existed) {
+					if (d.removed)
+						sendNodeAttributeRemoved(id, timeId++, nodeId, d.key);
+					else
+						sendNodeAttributeChanged(id, timeId++, nodeId, d.key,
+								d.oldValue, d.value);
+				} else if (!d.removed)
+					sendNodeAttributeAdded(id, timeId++, nodeId, d.key,
+							d.value);
+				else
+					continue;
+
+				sent++;
+			}
+		}
+
+		for (Map.Entry<String, LinkedHashMap<String, AttributeDelta>> entry : edgeAttributes
+				.entrySet())
+			sendEdgeAttributes(entry.getKey(), entry.getValue());
+
+		clear();
+	}
+
+	/**
+	 * Send the attribute deltas of an edge.
+	 */
+	protected void sendEdgeAttributes(String edgeId,
+			LinkedHashMap<String, AttributeDelta> attributes) {
+		for (AttributeDelta d : attributes.values()) {
+			if (d.existed) {
+				if (d.removed)
+					sendEdgeAttributeRemoved(id, timeId++, edgeId, d.key);
+				else
+					sendEdgeAttributeChanged(id, timeId++, edgeId, d.key,
+							d.oldValue, d.value);
+			} else if (!d.removed)
+				sendEdgeAttributeAdded(id, timeId++, edgeId, d.key, d.value);
+			else
+				continue;
+
+			sent++;
+		}
+	}
+
+	/**
+	 * Drop the buffered events without sending them.
+	 */
+	public void clear() {
+		structure.clear();
+		addedNodes.clear();
+		addedEdges.clear();
+		graphAttributes.clear();
+		nodeAttributes.clear();
+		edgeAttributes.clear();
+		flushed = received;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#stepBegins(java.lang.String, long,
+	 * double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		received++;
+		flush();
+		sendStepBegins(id, this.timeId++, step);
+		sent++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#graphCleared(java.lang.String, long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		received++;
+		clear();
+		structure.add(new StructuralEvent(EventType.GRAPH_CLEARED, null));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAdded(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		received++;
+
+		StructuralEvent e = new StructuralEvent(EventType.NODE_ADDED, nodeId);
+
+		nodeAttributes.remove(nodeId);
+		addedNodes.put(nodeId, e);
+		structure.add(e);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		received++;
+		nodeAttributes.remove(nodeId);
+
+		StructuralEvent added = addedNodes.remove(nodeId);
+
+		if (added != null) {
+			added.cancelled = true;
+
+			//
+			// Edges added in this step around the node can not be sent
+			// anymore.
+			//
+			Iterator<StructuralEvent> it = addedEdges.values().iterator();
+
+			while (it.hasNext()) {
+				StructuralEvent e = it.next();
+
+				if (nodeId.equals(e.from) || nodeId.equals(e.to)) {
+					e.cancelled = true;
+					edgeAttributes.remove(e.elementId);
+					it.remove();
+				}
+			}
+		} else {
+			//
+			// Edges of the node are removed with it, including edges which
+			// existed before the step and whose ends are not known here. If
+			// some of them have pending attributes, these are buffered in the
+			// structure to be sent before the removal. Nothing is sent now,
+			// so the events stay in the step they belong to.
+			//
+			dropIncidentEdges(nodeId);
+
+			Iterator<Map.Entry<String, LinkedHashMap<String, AttributeDelta>>> it = edgeAttributes
+					.entrySet().iterator();
+
+			while (it.hasNext()) {
+				Map.Entry<String, LinkedHashMap<String, AttributeDelta>> entry = it
+						.next();
+
+				if (!addedEdges.containsKey(entry.getKey())) {
+					StructuralEvent e = new StructuralEvent(
+							EventType.EDGE_ATTRIBUTES, entry.getKey());
+					e.attributes = entry.getValue();
+					structure.add(e);
+					it.remove();
+				}
+			}
+
+			structure.add(new StructuralEvent(EventType.NODE_REMOVED, nodeId));
+		}
+	}
+
+	/**
+	 * Drop the pending attributes of the edges added in this step around a
+	 * node. The edges themselves are kept, they are removed downstream with
+	 * the node.
+	 */
+	protected void dropIncidentEdges(String nodeId) {
+		Iterator<StructuralEvent> it = addedEdges.values().iterator();
+
+		while (it.hasNext()) {
+			StructuralEvent e = it.next();
+
+			if (nodeId.equals(e.from) || nodeId.equals(e.to)) {
+				edgeAttributes.remove(e.elementId);
+				it.remove();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAdded(java.lang.String, long,
+	 * java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		received++;
+
+		StructuralEvent e = new StructuralEvent(EventType.EDGE_ADDED, edgeId);
+		e.from = fromNodeId;
+		e.to = toNodeId;
+		e.directed = directed;
+
+		edgeAttributes.remove(edgeId);
+		addedEdges.put(edgeId, e);
+		structure.add(e);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeRemoved(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		received++;
+		edgeAttributes.remove(edgeId);
+
+		StructuralEvent added = addedEdges.remove(edgeId);
+
+		if (added != null)
+			added.cancelled = true;
+		else
+			structure.add(new StructuralEvent(EventType.EDGE_REMOVED, edgeId));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#graphAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.Object)
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		received++;
+		update(graphAttributes, attribute, false, null).set(value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#graphAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.Object, java.lang.Object)
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		received++;
+		update(graphAttributes, attribute, true, oldValue).set(newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#graphAttributeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		received++;
+		update(graphAttributes, attribute, true, null).remove();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#nodeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		received++;
+		update(attributesOf(nodeAttributes, nodeId), attribute, false, null)
+				.set(value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		received++;
+		update(attributesOf(nodeAttributes, nodeId), attribute, true, oldValue)
+				.set(newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		received++;
+		update(attributesOf(nodeAttributes, nodeId), attribute, true, null)
+				.remove();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.PipeBase#edgeAttributeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		received++;
+		update(attributesOf(edgeAttributes, edgeId), attribute, false, null)
+				.set(value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		received++;
+		update(attributesOf(edgeAttributes, edgeId), attribute, true, oldValue)
+				.set(newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.PipeBase#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		received++;
+		update(attributesOf(edgeAttributes, edgeId), attribute, true, null)
+				.remove();
+	}
+
+	/**
+	 * Get the attribute deltas of an element, creating them if needed.
+	 */
+	protected static LinkedHashMap<String, AttributeDelta> attributesOf(
+			LinkedHashMap<String, LinkedHashMap<String, AttributeDelta>> all,
+			String elementId) {
+		LinkedHashMap<String, AttributeDelta> attributes = all.get(elementId);
+
+		if (attributes == null) {
+			attributes = new LinkedHashMap<String, AttributeDelta>();
+			all.put(elementId, attributes);
+		}
+
+		return attributes;
+	}
+
+	/**
+	 * Get the delta of an attribute. If this is the first event of the step on
+	 * this attribute, the delta is created and remembers if the attribute
+	 * existed before the step and its original value.
+	 */
+	protected static AttributeDelta update(
+			LinkedHashMap<String, AttributeDelta> attributes, String key,
+			boolean existed, Object oldValue) {
+		AttributeDelta d = attributes.get(key);
+
+		if (d == null) {
+			d = new AttributeDelta(key, existed, oldValue);
+			attributes.put(key, d);
+		}
+
+		return d;
+	}
+
+	protected static enum EventType {
+		NODE_ADDED, NODE_REMOVED, EDGE_ADDED, EDGE_REMOVED, GRAPH_CLEARED, EDGE_ATTRIBUTES
+	}
+
+	protected static class StructuralEvent {
+		final EventType type;
+		final String elementId;
+		String from;
+		String to;
+		boolean directed;
+		boolean cancelled;
+		LinkedHashMap<String, AttributeDelta> attributes;
+
+		StructuralEvent(EventType type, String elementId) {
+			this.type = type;
+			this.elementId = elementId;
+			this.cancelled = false;
+		}
+	}
+
+	protected static class AttributeDelta {
+		final String key;
+		final boolean existed;
+		final Object oldValue;
+		Object value;
+		boolean removed;
+
+		AttributeDelta(String key, boolean existed, Object oldValue) {
+			this.key = key;
+			this.existed = existed;
+			this.oldValue = oldValue;
+		}
+
+		void set(Object value) {
+			this.value = value;
+			this.removed = false;
+		}
+
+		void remove() {
+			this.value = null;
+			this.removed = true;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+/**
+ * A stage keeping one step out of N. Events of a kept step are sent, merged as
+ * done by {@link StepCoalescer}, before the next step begins. Events of the
+ * dropped steps that follow are merged too, and sent as the net delta just
+ * after the next kept step begins. The final graph of each kept step is the
+ * same as in the original stream, but intermediate states are skipped.
+ *
+ * As for the coalescer, {@link #flush()} has to be called when the source is
+ * exhausted.
+ */
+public class StepDecimator extends StepCoalescer {
+	/**
+	 * One step out of this count is kept.
+	 */
+	protected final int every;
+
+	/**
+	 * Count of steps received.
+	 */
+	protected long steps;
+
+	/**
+	 * True if the buffered events belong to dropped steps.
+	 */
+	protected boolean dropping;
+
+	public StepDecimator(int every) {
+		this("decimator", every);
+	}
+
+	public StepDecimator(String id, int every) {
+		super(id);
+
+		if (every < 1)
+			throw new IllegalArgumentException("every < 1");
+
+		this.every = every;
+		this.steps = 0;
+		this.dropping = false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.tool.stream.StepCoalescer#stepBegins(java.lang.String,
+	 * long, double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		received++;
+
+		//
+		// Events of a kept step are sent before any other step begins, so
+		// they stay in their step.
+		//
+		if (!dropping)
+			flush();
+
+		dropping = steps++ % every != 0;
+
+		if (!dropping) {
+			sendStepBegins(id, this.timeId++, step);
+			sent++;
+
+			//
+			// Delta of the steps dropped since the last kept step, if any.
+			//
+			flush();
+		}
+	}
+}
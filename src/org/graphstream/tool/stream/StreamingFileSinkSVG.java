@@ -0,0 +1,795 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.SinkAdapter;
+import org.graphstream.stream.file.FileSink;
+
+/**
+ * A SVG sink writing edges as soon as they are received, for graphs too large
+ * to be held in memory.
+ *
+ * Positions are read from the "xyz", "xy", "x" and "y" attributes of nodes, so
+ * the graph has to be laid out before. The sink only keeps the position of
+ * each node. An edge is written when it is added, with the current positions
+ * of its nodes, in a group of the definitions. Nodes are written at the end,
+ * at their last position, when the bounds of the graph are known. The end of
+ * the file then draws the edges, then the nodes, in a view fitted to these
+ * bounds.
+ *
+ * Edges whose nodes have no position yet when they are added are kept until
+ * both nodes get one, or until the end. Nothing else is kept for written
+ * edges: each line has the serial numbers of its nodes as classes, so the
+ * edges of a removed node are hidden by a single style rule. Lines of an edge
+ * also record its identifier and the count of times it was explicitly removed
+ * before, and only the identifiers of removed edges are kept, to hide their
+ * lines at the end. The file is a snapshot of the final graph, not an
+ * animation.
+ */
+public class StreamingFileSinkSVG extends SinkAdapter implements FileSink {
+	/**
+	 * Default radius of nodes, relative to the size of the graph.
+	 */
+	public static final double DEFAULT_NODE_SIZE = 0.005;
+
+	/**
+	 * Output of the current export.
+	 */
+	protected Writer output;
+
+	/**
+	 * Width and height of the picture, as SVG lengths.
+	 */
+	protected String width, height;
+
+	/**
+	 * Radius of nodes, relative to the size of the graph.
+	 */
+	protected double nodeSize;
+
+	/**
+	 * Last position of each node, y being already flipped.
+	 */
+	protected HashMap<String, float[]> positions;
+
+	/**
+	 * Edges waiting for the position of their nodes, with their nodes.
+	 */
+	protected LinkedHashMap<String, String[]> pendingEdges;
+
+	/**
+	 * Pending edges of each node.
+	 */
+	protected HashMap<String, HashSet<String>> pendingByNode;
+
+	/**
+	 * Serial number of each node, given when it is added.
+	 */
+	protected HashMap<String, Integer> serials;
+
+	/**
+	 * Serial number of the next added node.
+	 */
+	protected int nextSerial;
+
+	/**
+	 * Serial numbers of the removed nodes, whose edges are hidden.
+	 */
+	protected ArrayList<Integer> removedNodes;
+
+	/**
+	 * Count of explicit removals of each removed edge. Lines of an edge record
+	 * the count at the time they are written, so the lines with a lower count
+	 * are hidden.
+	 */
+	protected HashMap<String, Integer> removedEdges;
+
+	/**
+	 * Bounds of all positions met.
+	 */
+	protected float minX, minY, maxX, maxY;
+
+	/**
+	 * Incremented each time the graph is cleared. Edges written before are
+	 * left in a group which is never drawn.
+	 */
+	protected int generation;
+
+	/**
+	 * First error met while writing edges, reported by {@link #end()}.
+	 */
+	protected IOException failure;
+
+	public StreamingFileSinkSVG() {
+		width = "100%";
+		height = "100%";
+		nodeSize = DEFAULT_NODE_SIZE;
+	}
+
+	public void setWidth(String width) {
+		this.width = width;
+	}
+
+	public void setHeight(String height) {
+		this.height = height;
+	}
+
+	/**
+	 * Set the radius of nodes, relative to the largest dimension of the
+	 * graph.
+	 */
+	public void setNodeSize(double nodeSize) {
+		this.nodeSize = nodeSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.lang.String)
+	 */
+	public void begin(String fileName) throws IOException {
+		begin(new FileOutputStream(fileName));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.io.OutputStream)
+	 */
+	public void begin(OutputStream stream) throws IOException {
+		begin(new OutputStreamWriter(stream, "UTF-8"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#begin(java.io.Writer)
+	 */
+	public void begin(Writer writer) throws IOException {
+		if (output != null)
+			throw new IOException(
+					"cannot call begin() twice without calling end() before");
+
+		output = writer instanceof BufferedWriter ? writer
+				: new BufferedWriter(writer);
+
+		positions = new HashMap<String, float[]>();
+		pendingEdges = new LinkedHashMap<String, String[]>();
+		pendingByNode = new HashMap<String, HashSet<String>>();
+		serials = new HashMap<String, Integer>();
+		nextSerial = 0;
+		removedNodes = new ArrayList<Integer>();
+		removedEdges = new HashMap<String, Integer>();
+		minX = minY = Float.POSITIVE_INFINITY;
+		maxX = maxY = Float.NEGATIVE_INFINITY;
+		generation = 0;
+		failure = null;
+
+		output.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		output.write(String.format(
+				"<svg xmlns=\"http://www.w3.org/2000/svg\""
+						+ " xmlns:xlink=\"http://www.w3.org/1999/xlink\""
+						+ " version=\"1.1\" width=\"%s\" height=\"%s\">\n",
+				escape(width), escape(height)));
+		output.write("<style type=\"text/css\"><![CDATA[\n");
+		output.write(".edges line { stroke: #808080; stroke-width: 1px;"
+				+ " vector-effect: non-scaling-stroke; }\n");
+		output.write(".nodes circle { fill: #000000; }\n");
+		output.write("]]></style>\n");
+		output.write("<defs>\n");
+		output.write("<g id=\"edges-0\" class=\"edges\">\n");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#flush()
+	 */
+	public void flush() throws IOException {
+		if (output != null)
+			output.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#end()
+	 */
+	public void end() throws IOException {
+		if (output == null)
+			return;
+
+		if (failure != null) {
+			IOException e = failure;
+
+			output.close();
+			output = null;
+
+			throw e;
+		}
+
+		for (float[] p : positions.values())
+			extend(p);
+
+		if (minX > maxX) {
+			minX = minY = 0;
+			maxX = maxY = 1;
+		}
+
+		//
+		// A single position, or positions on a line, get a unit extent.
+		//
+		if (maxX - minX <= 0) {
+			minX -= 0.5f;
+			maxX += 0.5f;
+		}
+
+		if (maxY - minY <= 0) {
+			minY -= 0.5f;
+			maxY += 0.5f;
+		}
+
+		float w = maxX - minX;
+		float h = maxY - minY;
+		float r = (float) (nodeSize * Math.max(w, h));
+
+		output.write("</g>\n</defs>\n");
+		output.write(String.format(
+				"<svg width=\"100%%\" height=\"100%%\" viewBox=\"%s %s %s %s\""
+						+ " preserveAspectRatio=\"xMidYMid meet\">\n",
+				Float.toString(minX - r), Float.toString(minY - r),
+				Float.toString(w + 2 * r), Float.toString(h + 2 * r)));
+		output.write(String.format("<use xlink:href=\"#edges-%d\"/>\n",
+				generation));
+
+		if (pendingEdges.size() > 0) {
+			output.write("<g class=\"edges\">\n");
+
+			for (Map.Entry<String, String[]> e : pendingEdges.entrySet())
+				writeEdge(e.getKey(), e.getValue()[0], e.getValue()[1]);
+
+			output.write("</g>\n");
+		}
+
+		output.write("<g class=\"nodes\">\n");
+
+		for (Map.Entry<String, float[]> e : positions.entrySet()) {
+			float[] p = e.getValue();
+
+			if (!Float.isNaN(p[0]) && !Float.isNaN(p[1])) {
+				output.write("<circle id=\"n-");
+				output.write(escape(e.getKey()));
+				output.write("\" cx=\"");
+				output.write(Float.toString(p[0]));
+				output.write("\" cy=\"");
+				output.write(Float.toString(p[1]));
+				output.write("\" r=\"");
+				output.write(Float.toString(r));
+				output.write("\"/>\n");
+			}
+		}
+
+		output.write("</g>\n</svg>\n");
+
+		if (removedEdges.size() > 0 || removedNodes.size() > 0) {
+			output.write("<style type=\"text/css\"><![CDATA[\n");
+
+			for (Map.Entry<String, Integer> e : removedEdges.entrySet()) {
+				String id = cssString(e.getKey());
+
+				for (int v = 0; v < e.getValue(); v++)
+					output.write(String.format(
+							"[data-e=\"%s\"][data-v=\"%d\"] { display: none; }\n",
+							id, v));
+			}
+
+			for (Integer serial : removedNodes)
+				output.write(String.format(".n%d { display: none; }\n", serial));
+
+			output.write("]]></style>\n");
+		}
+
+		output.write("</svg>\n");
+		output.flush();
+		output.close();
+
+		output = null;
+		positions = null;
+		pendingEdges = null;
+		pendingByNode = null;
+		serials = null;
+		removedNodes = null;
+		removedEdges = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.lang.String)
+	 */
+	public void writeAll(Graph graph, String fileName) throws IOException {
+		begin(fileName);
+		replay(graph);
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.io.OutputStream)
+	 */
+	public void writeAll(Graph graph, OutputStream stream) throws IOException {
+		begin(stream);
+		replay(graph);
+		end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.file.FileSink#writeAll(org.graphstream.graph
+	 * .Graph, java.io.Writer)
+	 */
+	public void writeAll(Graph graph, Writer writer) throws IOException {
+		begin(writer);
+		replay(graph);
+		end();
+	}
+
+	protected void replay(Graph graph) {
+		String id = graph.getId();
+
+		for (Node n : graph.getEachNode()) {
+			nodeAdded(id, 0, n.getId());
+
+			for (String key : n.getAttributeKeySet())
+				nodeAttributeAdded(id, 0, n.getId(), key, n.getAttribute(key));
+		}
+
+		for (Edge e : graph.getEachEdge())
+			edgeAdded(id, 0, e.getId(), e.getNode0().getId(), e.getNode1()
+					.getId(), e.isDirected());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAdded(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		if (!positions.containsKey(nodeId)) {
+			positions.put(nodeId, new float[] { Float.NaN, Float.NaN });
+			serials.put(nodeId, nextSerial++);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		float[] p = positions.remove(nodeId);
+
+		if (p != null) {
+			extend(p);
+
+			//
+			// Edges of the node are removed with it, written ones are hidden
+			// by the class of the node.
+			//
+			removedNodes.add(serials.remove(nodeId));
+
+			HashSet<String> pending = pendingByNode.remove(nodeId);
+
+			if (pending != null) {
+				for (String edgeId : pending)
+					removePending(edgeId);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		float[] p = positions.get(nodeId);
+
+		if (p == null)
+			return;
+
+		if (attribute.equals("xyz") || attribute.equals("xy")) {
+			double[] v = toCoordinates(value);
+
+			if (v != null && v.length >= 2) {
+				p[0] = (float) v[0];
+				p[1] = (float) -v[1];
+			}
+		} else if (attribute.equals("x") || attribute.equals("y")) {
+			double[] v = toCoordinates(value);
+
+			if (v != null) {
+				if (attribute.equals("x"))
+					p[0] = (float) v[0];
+				else
+					p[1] = (float) -v[0];
+			}
+		} else
+			return;
+
+		if (hasPosition(nodeId))
+			writePending(nodeId);
+	}
+
+	/**
+	 * Write the pending edges of a node which has now a position, if their
+	 * other node has one too.
+	 */
+	protected void writePending(String nodeId) {
+		HashSet<String> pending = pendingByNode.get(nodeId);
+
+		if (pending == null)
+			return;
+
+		for (String edgeId : pending.toArray(new String[pending.size()])) {
+			String[] ends = pendingEdges.get(edgeId);
+
+			if (hasPosition(ends[0]) && hasPosition(ends[1])) {
+				removePending(edgeId);
+				addLine(edgeId, ends[0], ends[1]);
+			}
+		}
+	}
+
+	protected void addPending(String edgeId, String fromNodeId, String toNodeId) {
+		pendingEdges.put(edgeId, new String[] { fromNodeId, toNodeId });
+		edgesOf(pendingByNode, fromNodeId).add(edgeId);
+		edgesOf(pendingByNode, toNodeId).add(edgeId);
+	}
+
+	protected static HashSet<String> edgesOf(
+			HashMap<String, HashSet<String>> byNode, String nodeId) {
+		HashSet<String> edges = byNode.get(nodeId);
+
+		if (edges == null) {
+			edges = new HashSet<String>();
+			byNode.put(nodeId, edges);
+		}
+
+		return edges;
+	}
+
+	protected static void forget(HashMap<String, HashSet<String>> byNode,
+			String nodeId, String edgeId) {
+		HashSet<String> edges = byNode.get(nodeId);
+
+		if (edges != null) {
+			edges.remove(edgeId);
+
+			if (edges.isEmpty())
+				byNode.remove(nodeId);
+		}
+	}
+
+	/**
+	 * Forget a pending edge.
+	 *
+	 * @return false if the edge was not pending
+	 */
+	protected boolean removePending(String edgeId) {
+		String[] ends = pendingEdges.remove(edgeId);
+
+		if (ends == null)
+			return false;
+
+		for (String nodeId : ends)
+			forget(pendingByNode, nodeId, edgeId);
+
+		return true;
+	}
+
+	/**
+	 * Write an edge whose nodes have a position.
+	 */
+	protected void addLine(String edgeId, String fromNodeId, String toNodeId) {
+		try {
+			writeEdge(edgeId, fromNodeId, toNodeId);
+		} catch (IOException e) {
+			if (failure == null)
+				failure = e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		nodeAttributeAdded(sourceId, timeId, nodeId, attribute, newValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (hasPosition(fromNodeId) && hasPosition(toNodeId))
+			addLine(edgeId, fromNodeId, toNodeId);
+		else
+			addPending(edgeId, fromNodeId, toNodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		//
+		// Written edges are not kept, the lines written so far for this
+		// identifier are hidden at the end, if any.
+		//
+		if (!removePending(edgeId)) {
+			Integer count = removedEdges.get(edgeId);
+			removedEdges.put(edgeId, count == null ? 1 : count + 1);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphCleared(java.lang.String,
+	 * long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		positions.clear();
+		pendingEdges.clear();
+		pendingByNode.clear();
+		serials.clear();
+		removedNodes.clear();
+		removedEdges.clear();
+		minX = minY = Float.POSITIVE_INFINITY;
+		maxX = maxY = Float.NEGATIVE_INFINITY;
+		generation++;
+
+		try {
+			output.write(String.format(
+					"</g>\n<g id=\"edges-%d\" class=\"edges\">\n", generation));
+		} catch (IOException e) {
+			if (failure == null)
+				failure = e;
+		}
+	}
+
+	protected void writeEdge(String edgeId, String fromNodeId, String toNodeId)
+			throws IOException {
+		float[] from = positions.get(fromNodeId);
+		float[] to = positions.get(toNodeId);
+
+		if (from == null || to == null || Float.isNaN(from[0])
+				|| Float.isNaN(from[1]) || Float.isNaN(to[0])
+				|| Float.isNaN(to[1]))
+			return;
+
+		extend(from);
+		extend(to);
+
+		Integer removals = removedEdges.get(edgeId);
+
+		output.write("<line class=\"n");
+		output.write(Integer.toString(serials.get(fromNodeId)));
+		output.write(" n");
+		output.write(Integer.toString(serials.get(toNodeId)));
+		output.write("\" x1=\"");
+		output.write(Float.toString(from[0]));
+		output.write("\" y1=\"");
+		output.write(Float.toString(from[1]));
+		output.write("\" x2=\"");
+		output.write(Float.toString(to[0]));
+		output.write("\" y2=\"");
+		output.write(Float.toString(to[1]));
+		output.write("\" data-e=\"");
+		output.write(escape(edgeId));
+		output.write("\" data-v=\"");
+		output.write(removals == null ? "0" : removals.toString());
+		output.write("\"/>\n");
+	}
+
+	protected boolean hasPosition(String nodeId) {
+		float[] p = positions.get(nodeId);
+		return p != null && !Float.isNaN(p[0]) && !Float.isNaN(p[1]);
+	}
+
+	protected void extend(float[] p) {
+		if (Float.isNaN(p[0]) || Float.isNaN(p[1]))
+			return;
+
+		minX = Math.min(minX, p[0]);
+		minY = Math.min(minY, p[1]);
+		maxX = Math.max(maxX, p[0]);
+		maxY = Math.max(maxY, p[1]);
+	}
+
+	/**
+	 * Read coordinates from an attribute value, which can be a number, an
+	 * array of numbers or a string.
+	 *
+	 * @return the coordinates, or null if the value is not valid
+	 */
+	protected static double[] toCoordinates(Object value) {
+		if (value instanceof Number)
+			return new double[] { ((Number) value).doubleValue() };
+
+		if (value instanceof double[])
+			return ((double[]) value).length > 0 ? (double[]) value : null;
+
+		if (value instanceof float[]) {
+			float[] f = (float[]) value;
+			double[] d = new double[f.length];
+
+			for (int i = 0; i < f.length; i++)
+				d[i] = f[i];
+
+			return d.length > 0 ? d : null;
+		}
+
+		if (value instanceof Object[]) {
+			Object[] o = (Object[]) value;
+
+			if (o.length == 1 && !(o[0] instanceof Number))
+				return toCoordinates(o[0]);
+
+			double[] d = new double[o.length];
+
+			for (int i = 0; i < o.length; i++) {
+				if (o[i] instanceof Number)
+					d[i] = ((Number) o[i]).doubleValue();
+				else
+					return null;
+			}
+
+			return d.length > 0 ? d : null;
+		}
+
+		if (value instanceof CharSequence) {
+			String[] parts = value.toString().trim().split("\\s*[,\\s]\\s*");
+			double[] d = new double[parts.length];
+
+			try {
+				for (int i = 0; i < parts.length; i++)
+					d[i] = Double.parseDouble(parts[i]);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+
+			return d;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Escape a string to be written between double quotes in a style sheet.
+	 * Markup chars are escaped too, so the string can not end the CDATA
+	 * section holding the style sheet.
+	 */
+	protected static String cssString(String s) {
+		StringBuilder buffer = new StringBuilder(s.length() + 16);
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			if (c == '"' || c == '\\' || c == '<' || c == '>' || c == '&'
+					|| c < 0x20 || c == 0x7f) {
+				buffer.append('\\');
+				buffer.append(Integer.toHexString(c));
+				buffer.append(' ');
+			} else
+				buffer.append(c);
+		}
+
+		return buffer.toString();
+	}
+
+	protected static String escape(String s) {
+		StringBuilder buffer = null;
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			String r = null;
+
+			switch (c) {
+			case '&':
+				r = "&amp;";
+				break;
+			case '<':
+				r = "&lt;";
+				break;
+			case '>':
+				r = "&gt;";
+				break;
+			case '"':
+				r = "&quot;";
+				break;
+			case '\'':
+				r = "&apos;";
+				break;
+			}
+
+			if (r != null && buffer == null) {
+				buffer = new StringBuilder(s.length() + 16);
+				buffer.append(s, 0, i);
+			}
+
+			if (buffer != null) {
+				if (r != null)
+					buffer.append(r);
+				else
+					buffer.append(c);
+			}
+		}
+
+		return buffer == null ? s : buffer.toString();
+	}
+}
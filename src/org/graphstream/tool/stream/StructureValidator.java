@@ -0,0 +1,433 @@
+/*
+ * Copyright 2006 - 2011 
+ *     Stefan Balev 	<stefan.balev@graphstream-project.org>
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.tool.stream;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.graphstream.stream.SinkAdapter;
+
+/**
+ * A sink checking that a stream of events is consistent, without building a
+ * graph. It only tracks which nodes and edges exist: each identifier gets an
+ * index in an {@link IdIndex} and existence is kept in bit sets.
+ *
+ * When a node is removed, its edges are removed too. Rather than keeping the
+ * adjacency of each node, each edge records the generation of its nodes, which
+ * changes each time a node is removed. An edge exists if it has not been
+ * removed and its nodes still have the generation it recorded.
+ *
+ * Each problem is counted and the first ones are kept with the identifier of
+ * the element and the index of the event.
+ */
+public class StructureValidator extends SinkAdapter {
+	/**
+	 * Kinds of problems.
+	 */
+	public static enum Problem {
+		DUPLICATE_NODE, DUPLICATE_EDGE, DANGLING_EDGE, UNKNOWN_NODE, UNKNOWN_EDGE,
+		NON_MONOTONIC_STEP
+	}
+
+	/**
+	 * A problem found at an event.
+	 */
+	public static class Report {
+		public final Problem problem;
+		public final String id;
+		public final long event;
+
+		public Report(Problem problem, String id, long event) {
+			this.problem = problem;
+			this.id = id;
+			this.event = event;
+		}
+	}
+
+	/**
+	 * Max count of kept reports.
+	 */
+	protected final int maxReports;
+
+	protected final IdIndex nodes;
+	protected final BitSet nodeAlive;
+	protected int[] generations;
+
+	protected final IdIndex edges;
+	protected final BitSet edgeAlive;
+
+	/**
+	 * Nodes of each edge with their generation, four ints per edge.
+	 */
+	protected int[] ends;
+
+	protected double lastStep;
+	protected long events;
+
+	protected final long[] counts;
+	protected final ArrayList<Report> reports;
+
+	public StructureValidator(int maxReports) {
+		this.maxReports = maxReports;
+		this.nodes = new IdIndex();
+		this.nodeAlive = new BitSet();
+		this.edges = new IdIndex();
+		this.edgeAlive = new BitSet();
+		this.counts = new long[Problem.values().length];
+		this.reports = new ArrayList<Report>();
+
+		reset();
+	}
+
+	protected void reset() {
+		nodes.clear();
+		nodeAlive.clear();
+		generations = new int[64];
+		edges.clear();
+		edgeAlive.clear();
+		ends = new int[256];
+		lastStep = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Count of received events.
+	 */
+	public long getEventCount() {
+		return events;
+	}
+
+	/**
+	 * Count of problems of a kind.
+	 */
+	public long getCount(Problem problem) {
+		return counts[problem.ordinal()];
+	}
+
+	/**
+	 * Count of problems of all kinds.
+	 */
+	public long getProblemCount() {
+		long c = 0;
+
+		for (long count : counts)
+			c += count;
+
+		return c;
+	}
+
+	/**
+	 * First problems found, at most the max count given at creation.
+	 */
+	public List<Report> getReports() {
+		return reports;
+	}
+
+	protected void report(Problem problem, String id) {
+		counts[problem.ordinal()]++;
+
+		if (reports.size() < maxReports)
+			reports.add(new Report(problem, id, events));
+	}
+
+	protected boolean nodeExists(int node) {
+		return node >= 0 && nodeAlive.get(node);
+	}
+
+	protected boolean edgeExists(int edge) {
+		if (edge < 0 || !edgeAlive.get(edge))
+			return false;
+
+		int p = 4 * edge;
+
+		return nodeAlive.get(ends[p]) && generations[ends[p]] == ends[p + 1]
+				&& nodeAlive.get(ends[p + 2])
+				&& generations[ends[p + 2]] == ends[p + 3];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAdded(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		events++;
+
+		int node = nodes.add(nodeId);
+
+		if (nodeAlive.get(node)) {
+			report(Problem.DUPLICATE_NODE, nodeId);
+			return;
+		}
+
+		if (node == generations.length) {
+			int[] grown = new int[2 * node];
+			System.arraycopy(generations, 0, grown, 0, node);
+			generations = grown;
+		}
+
+		nodeAlive.set(node);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		events++;
+
+		int node = nodes.get(nodeId);
+
+		if (!nodeExists(node)) {
+			report(Problem.UNKNOWN_NODE, nodeId);
+			return;
+		}
+
+		nodeAlive.clear(node);
+		generations[node]++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAdded(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		events++;
+
+		int edge = edges.get(edgeId);
+
+		if (edgeExists(edge)) {
+			report(Problem.DUPLICATE_EDGE, edgeId);
+			return;
+		}
+
+		int from = nodes.get(fromNodeId);
+		int to = nodes.get(toNodeId);
+
+		if (!nodeExists(from) || !nodeExists(to)) {
+			report(Problem.DANGLING_EDGE, edgeId);
+			return;
+		}
+
+		edge = edges.add(edgeId);
+
+		if (4 * edge + 4 > ends.length) {
+			int[] grown = new int[2 * ends.length];
+			System.arraycopy(ends, 0, grown, 0, ends.length);
+			ends = grown;
+		}
+
+		int p = 4 * edge;
+
+		ends[p] = from;
+		ends[p + 1] = generations[from];
+		ends[p + 2] = to;
+		ends[p + 3] = generations[to];
+		edgeAlive.set(edge);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		events++;
+
+		int edge = edges.get(edgeId);
+
+		if (!edgeExists(edge)) {
+			report(Problem.UNKNOWN_EDGE, edgeId);
+			return;
+		}
+
+		edgeAlive.clear(edge);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphCleared(java.lang.String,
+	 * long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		events++;
+
+		double step = lastStep;
+
+		reset();
+		lastStep = step;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#stepBegins(java.lang.String,
+	 * long, double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		events++;
+
+		if (step < lastStep)
+			report(Problem.NON_MONOTONIC_STEP, Double.toString(step));
+		else
+			lastStep = step;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#graphAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.Object)
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		events++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.Object, java.lang.Object)
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		events++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#graphAttributeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		events++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#nodeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		checkNode(nodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		checkNode(nodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#nodeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		checkNode(nodeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.graphstream.stream.SinkAdapter#edgeAttributeAdded(java.lang.String
+	 * , long, java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		checkEdge(edgeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeChanged(java.lang.String,
+	 * long, java.lang.String, java.lang.String, java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		checkEdge(edgeId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.graphstream.stream.SinkAdapter#edgeAttributeRemoved(java.lang.String,
+	 * long, java.lang.String, java.lang.String)
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		checkEdge(edgeId);
+	}
+
+	protected void checkNode(String nodeId) {
+		events++;
+
+		if (!nodeExists(nodes.get(nodeId)))
+			report(Problem.UNKNOWN_NODE, nodeId);
+	}
+
+	protected void checkEdge(String edgeId) {
+		events++;
+
+		if (!edgeExists(edges.get(edgeId)))
+			report(Problem.UNKNOWN_EDGE, edgeId);
+	}
+}